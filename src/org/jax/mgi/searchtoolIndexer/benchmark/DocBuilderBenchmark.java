@@ -0,0 +1,414 @@
+package org.jax.mgi.searchtoolIndexer.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.AbstractLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.DocumentPool;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureAccIDLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureDisplayLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureExactLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureInexactLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureSymbolLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureVocabAccIDLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureVocabDagLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.GenomeFeatureVocabExactLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.NonIDTokenLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.OtherDisplayLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.OtherExactLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.VocabAccIDLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.VocabDisplayLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.VocabExactLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.VocabInexactLuceneDocBuilder;
+
+/**
+ * Measures the cost of turning a row into a Lucene document, for each of
+ * the LuceneDocBuilders. This will accept command line arguments as follows:
+ *
+ * <br>
+ * DocBuilderBenchmark [--reuse] [iterations] [builder ...]
+ *
+ * <br>
+ * --reuse = Recycle documents through the DocumentPool, handing each one
+ * back as soon as it is built, the way the Indexers do. iterations = How
+ * many documents to build per measurement, by default 1,000,000. builder =
+ * The builders to measure, by the start of their class name (for example
+ * VocabExact), by default all of them.
+ *
+ * Each builder is fed rows shaped like the ones its gatherer reads, the same
+ * way its gatherer feeds it: set the fields, getDocument(), clear(). Every
+ * builder is warmed up before it is measured, and is measured several times.
+ * The report gives the best time per document in nanoseconds, and the bytes
+ * allocated per document, as counted by the JVM for this thread.
+ *
+ * @author mhall
+ *
+ * @has A fixture for each LuceneDocBuilder.
+ *
+ * @does Builds documents in a tight loop, and reports the time and memory
+ *       each one costs.
+ *
+ */
+
+public class DocBuilderBenchmark {
+
+	private static final int		ROUNDS		= 5;
+
+	private static final String[]	SYMBOLS		= {"Pax6", "Kit", "Shh",
+			"Trp53", "Tg(CAG-cre)1Nagy", "Brca1", "Gt(ROSA)26Sor", "Cd4",
+			"Hoxa1", "Mir155hg"};
+
+	private static final String[]	NAMES		= {"paired box 6",
+			"KIT proto-oncogene receptor tyrosine kinase", "sonic hedgehog",
+			"transformation related protein 53", "transgene insertion 1, Andras Nagy",
+			"breast cancer 1, early onset",
+			"gene trap ROSA 26, Philippe Soriano", "CD4 antigen",
+			"homeobox A1", "Mir155 host gene (non-protein coding)"};
+
+	private static final String[]	TERMS		= {
+			"regulation of transcription, DNA-templated",
+			"abnormal eye morphology", "Wnt signaling pathway",
+			"embryonic neural tube", "heart", "Homeobox domain",
+			"increased circulating cholesterol level",
+			"type 2 diabetes mellitus", "TS12: embryo ectoderm",
+			"positive regulation of apoptotic process"};
+
+	private static final String[]	NOTES		= {
+			"The orderly movement of an organelle along microtubules.",
+			"Any process that modulates the frequency, rate or extent of "
+					+ "cellular DNA-templated transcription.",
+			"A heritable disease of the retina; characterized by <i>progressive</i> "
+					+ "loss of photoreceptors."};
+
+	private static final String[]	IDS			= {"MGI:97490", "GO:0006355",
+			"MP:0002092", "ENSMUSG00000027168", "NM_013627", "Q02548",
+			"DOID:9352", "EMAPA:16894", "IPR001356", "PIRSF000512"};
+
+	private static final String[]	LABEL_TYPES	= {"MS", "MN", "MY", "OS",
+			"OY", "AS", "AN", "AY"};
+
+	private static Logger			log			= Logger.getLogger(DocBuilderBenchmark.class.getName());
+
+	public static void main(String[] args) {
+		int iterations = 1000000;
+		List<String> names = new ArrayList<String>(Arrays.asList(args));
+
+		if (!names.isEmpty() && names.get(0).equals("--reuse")) {
+			DocumentPool.setCurrent(new DocumentPool(1000));
+			names.remove(0);
+		}
+		if (!names.isEmpty() && names.get(0).matches("\\d+")) {
+			iterations = Integer.parseInt(names.remove(0));
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocation = null;
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			allocation = (com.sun.management.ThreadMXBean) threads;
+			allocation.setThreadAllocatedMemoryEnabled(true);
+		}
+		long thread = Thread.currentThread().getId();
+
+		log.info(String.format("%-40s %12s %12s", "builder", "ns/doc",
+				"bytes/doc"));
+
+		for (Fixture fixture : fixtures()) {
+			if (!names.isEmpty() && !matches(fixture, names)) {
+				continue;
+			}
+
+			// Warm up, so the measured rounds run compiled code.
+
+			fixture.build(iterations);
+
+			long bestTime = Long.MAX_VALUE;
+			long bestBytes = Long.MAX_VALUE;
+
+			for (int round = 0; round < ROUNDS; round++) {
+				long bytes = allocation == null ? 0 : allocation
+						.getThreadAllocatedBytes(thread);
+				long start = System.nanoTime();
+				fixture.build(iterations);
+				long time = System.nanoTime() - start;
+				if (allocation != null) {
+					bytes = allocation.getThreadAllocatedBytes(thread) - bytes;
+				}
+				bestTime = Math.min(bestTime, time);
+				bestBytes = Math.min(bestBytes, bytes);
+			}
+
+			log.info(String.format("%-40s %12.1f %12s", fixture.getName(),
+					(double) bestTime / iterations, allocation == null ? "n/a"
+							: String.format("%.1f", (double) bestBytes
+									/ iterations)));
+		}
+	}
+
+	private static boolean matches(Fixture fixture, List<String> names) {
+		for (String name : names) {
+			if (fixture.getName().startsWith(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String pick(String[] values, int i) {
+		return values[i % values.length];
+	}
+
+	/*
+	 * A builder, and how to fill it with the i'th row.
+	 */
+
+	private abstract static class Fixture {
+
+		private AbstractLuceneDocBuilder	builder;
+
+		// Keeps the documents reachable, so the work can't be skipped.
+		int									fields	= 0;
+
+		Fixture(AbstractLuceneDocBuilder builder) {
+			this.builder = builder;
+		}
+
+		String getName() {
+			String name = builder.getClass().getName();
+			return name.substring(name.lastIndexOf('.') + 1);
+		}
+
+		abstract void fill(int i);
+
+		void build(int iterations) {
+			DocumentPool pool = DocumentPool.current();
+			List<Document> built = new ArrayList<Document>(1);
+			built.add(null);
+			for (int i = 0; i < iterations; i++) {
+				fill(i);
+				Document doc = builder.getDocument();
+				fields += doc.getFields().size();
+				builder.clear();
+				built.set(0, doc);
+				if (pool != null) {
+					pool.release(built);
+				}
+			}
+		}
+	}
+
+	/*
+	 * A fixture for every builder.
+	 */
+
+	private static List<Fixture> fixtures() {
+		List<Fixture> fixtures = new ArrayList<Fixture>();
+
+		final GenomeFeatureAccIDLuceneDocBuilder accID = new GenomeFeatureAccIDLuceneDocBuilder();
+		fixtures.add(new Fixture(accID) {
+			void fill(int i) {
+				accID.setDb_key(String.valueOf(i));
+				accID.setData(pick(IDS, i));
+				accID.setDataType("MARKER");
+				accID.setProvider("MGI");
+				accID.setDisplay_type("Genome Feature");
+				accID.setObject_type("MARKER");
+			}
+		});
+
+		final GenomeFeatureDisplayLuceneDocBuilder display = new GenomeFeatureDisplayLuceneDocBuilder();
+		fixtures.add(new Fixture(display) {
+			void fill(int i) {
+				display.setDb_key(String.valueOf(i));
+				display.setSymbol(pick(SYMBOLS, i));
+				display.setName(pick(NAMES, i));
+				display.setChr(String.valueOf(1 + i % 19));
+				display.setMarker_type("Gene");
+				display.setBatchValue(pick(SYMBOLS, i));
+				display.setAcc_id(pick(IDS, i));
+				display.setStrand(i % 2 == 0 ? "+" : "-");
+				display.setLocDisplay("Chr" + (1 + i % 19) + ":" + (i * 131)
+						+ "-" + (i * 131 + 5000) + " bp");
+				display.setObjectType("MARKER");
+			}
+		});
+
+		final GenomeFeatureExactLuceneDocBuilder exact = new GenomeFeatureExactLuceneDocBuilder();
+		fixtures.add(new Fixture(exact) {
+			void fill(int i) {
+				exact.setDb_key(String.valueOf(i));
+				exact.setData(pick(NAMES, i));
+				exact.setDataType(pick(LABEL_TYPES, i));
+				exact.setDisplay_type("Name");
+				exact.setUnique_key(i + "MARKER");
+				exact.setObject_type("MARKER");
+			}
+		});
+
+		final GenomeFeatureInexactLuceneDocBuilder inexact = new GenomeFeatureInexactLuceneDocBuilder();
+		fixtures.add(new Fixture(inexact) {
+			void fill(int i) {
+				inexact.setDb_key(String.valueOf(i));
+				inexact.setData(pick(NAMES, i));
+				inexact.setRaw_data(pick(NAMES, i));
+				inexact.setDataType(pick(LABEL_TYPES, i));
+				inexact.setVocabulary("MARKER");
+				inexact.setDisplay_type("Current Name");
+				inexact.setUnique_key(i + "MARKER");
+			}
+		});
+
+		final GenomeFeatureSymbolLuceneDocBuilder symbol = new GenomeFeatureSymbolLuceneDocBuilder();
+		fixtures.add(new Fixture(symbol) {
+			void fill(int i) {
+				symbol.setDb_key(String.valueOf(i));
+				symbol.setData(pick(SYMBOLS, i));
+				symbol.setRaw_data(pick(SYMBOLS, i));
+				symbol.setDataType("MS");
+				symbol.setDisplay_type("Symbol");
+				symbol.setUnique_key(i + "MARKER");
+				symbol.setObject_type("MARKER");
+			}
+		});
+
+		final GenomeFeatureVocabAccIDLuceneDocBuilder vocabAccID = new GenomeFeatureVocabAccIDLuceneDocBuilder();
+		fixtures.add(new Fixture(vocabAccID) {
+			void fill(int i) {
+				vocabAccID.setDb_key(String.valueOf(i));
+				vocabAccID.setData(pick(IDS, i));
+				vocabAccID.setRaw_data(pick(IDS, i));
+				vocabAccID.setDataType("acc_id");
+				vocabAccID.setDisplay_type("ID");
+				vocabAccID.setVocabulary("GO");
+				vocabAccID.setProvider("Gene Ontology");
+				vocabAccID.setUnique_key(i + pick(IDS, i) + "GO");
+			}
+		});
+
+		final GenomeFeatureVocabDagLuceneDocBuilder vocabDag = new GenomeFeatureVocabDagLuceneDocBuilder();
+		fixtures.add(new Fixture(vocabDag) {
+			void fill(int i) {
+				vocabDag.setDb_key(String.valueOf(i));
+				vocabDag.setVocabulary("GO");
+				vocabDag.setAcc_id(pick(IDS, i));
+				vocabDag.setUnique_key(i + "GO");
+				vocabDag.setObject_type("MARKER");
+				for (int j = 0; j < 10; j++) {
+					vocabDag.appendGene_ids(String.valueOf(i + j * 7));
+					vocabDag.appendChild_ids(String.valueOf(1000000 + i + j));
+				}
+			}
+		});
+
+		final GenomeFeatureVocabExactLuceneDocBuilder vocabExact = new GenomeFeatureVocabExactLuceneDocBuilder();
+		fixtures.add(new Fixture(vocabExact) {
+			void fill(int i) {
+				vocabExact.setDb_key(String.valueOf(i));
+				vocabExact.setData(pick(TERMS, i));
+				vocabExact.setRaw_data(pick(TERMS, i));
+				vocabExact.setDataType("term");
+				vocabExact.setDisplay_type("Term");
+				vocabExact.setVocabulary("GO");
+				vocabExact.setProvider("Function");
+				vocabExact.setUnique_key(i + "GO");
+			}
+		});
+
+		final NonIDTokenLuceneDocBuilder token = new NonIDTokenLuceneDocBuilder();
+		fixtures.add(new Fixture(token) {
+			void fill(int i) {
+				token.setData(pick(TERMS, i));
+			}
+		});
+
+		final OtherDisplayLuceneDocBuilder otherDisplay = new OtherDisplayLuceneDocBuilder();
+		fixtures.add(new Fixture(otherDisplay) {
+			void fill(int i) {
+				otherDisplay.setDb_key(String.valueOf(i));
+				otherDisplay.setDataType("REFERENCE");
+				otherDisplay.setQualifier("Journal Article");
+				otherDisplay.setName(pick(NOTES, i));
+			}
+		});
+
+		final OtherExactLuceneDocBuilder otherExact = new OtherExactLuceneDocBuilder();
+		fixtures.add(new Fixture(otherExact) {
+			void fill(int i) {
+				otherExact.setDb_key(String.valueOf(i));
+				otherExact.setData(pick(IDS, i));
+				otherExact.setAccessionKey(String.valueOf(i * 3));
+				otherExact.setType("SEQUENCE");
+				otherExact.setOrganism("1");
+				otherExact.setPreferred("1");
+				otherExact.setProvider("GenBank");
+				otherExact.setDisplay_type("Sequence");
+			}
+		});
+
+		final VocabAccIDLuceneDocBuilder vocabAccIDOnly = new VocabAccIDLuceneDocBuilder();
+		fixtures.add(new Fixture(vocabAccIDOnly) {
+			void fill(int i) {
+				vocabAccIDOnly.setDb_key(String.valueOf(i));
+				vocabAccIDOnly.setData(pick(IDS, i));
+				vocabAccIDOnly.setRaw_data(pick(IDS, i));
+				vocabAccIDOnly.setDataType("acc_id");
+				vocabAccIDOnly.setDisplay_type("ID");
+				vocabAccIDOnly.setVocabulary("Mammalian Phenotype");
+				vocabAccIDOnly.setProvider("Phenotype");
+				vocabAccIDOnly.setUnique_key(i + pick(IDS, i));
+			}
+		});
+
+		final VocabDisplayLuceneDocBuilder vocabDisplay = new VocabDisplayLuceneDocBuilder();
+		fixtures.add(new Fixture(vocabDisplay) {
+			void fill(int i) {
+				vocabDisplay.setDb_key(String.valueOf(i));
+				vocabDisplay.setVocabulary("GO");
+				vocabDisplay.setTypeDisplay("Function");
+				vocabDisplay.setAcc_id(pick(IDS, i));
+				vocabDisplay.setData(pick(TERMS, i));
+				for (int j = 0; j < 10; j++) {
+					vocabDisplay.appendGene_ids(i + j * 7);
+					vocabDisplay.appendChild_ids(1000000 + i + j);
+				}
+				vocabDisplay.setAnnotation_object_type("2");
+				vocabDisplay.setAnnotation_objects(String.valueOf(i % 50));
+				vocabDisplay.setAnnotation_count(String.valueOf(i % 120));
+			}
+		});
+
+		final VocabExactLuceneDocBuilder vocabExactOnly = new VocabExactLuceneDocBuilder();
+		fixtures.add(new Fixture(vocabExactOnly) {
+			void fill(int i) {
+				vocabExactOnly.setDb_key(String.valueOf(i));
+				vocabExactOnly.setData(pick(TERMS, i));
+				vocabExactOnly.setRaw_data(pick(TERMS, i));
+				vocabExactOnly.setDataType("term");
+				vocabExactOnly.setDisplay_type("Term");
+				vocabExactOnly.setVocabulary("GO");
+				vocabExactOnly.setProvider("Function");
+				vocabExactOnly.setUnique_key(i + "term");
+			}
+		});
+
+		final VocabInexactLuceneDocBuilder vocabInexact = new VocabInexactLuceneDocBuilder();
+		fixtures.add(new Fixture(vocabInexact) {
+			void fill(int i) {
+				vocabInexact.setDb_key(String.valueOf(i));
+				vocabInexact.setData(i % 3 == 0 ? pick(NOTES, i) : pick(
+						TERMS, i));
+				vocabInexact.setRaw_data(pick(TERMS, i));
+				vocabInexact.setVocabulary("GO");
+				vocabInexact.setDataType(i % 3 == 0 ? "note" : "term");
+				vocabInexact.setDisplay_type("Term");
+				vocabInexact.setUnique_key(i + "term");
+			}
+		});
+
+		return fixtures;
+	}
+}
@@ -0,0 +1,342 @@
+package org.jax.mgi.searchtoolIndexer.benchmark;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.jax.mgi.searchtoolIndexer.index.IndexBuild;
+import org.jax.mgi.searchtoolIndexer.util.ConnectionPool;
+import org.jax.mgi.shr.config.IndexCfg;
+
+/**
+ * Runs index builds against the synthetic database loaded by SyntheticMGD,
+ * and reports how each one performed. This will accept command line
+ * arguments as follows:
+ *
+ * <br>
+ * IndexBenchmark [--load] [--merge strategy,...] buildDirectory [indexCode
+ * ...]
+ *
+ * <br>
+ * --load = (Re)load the synthetic data first, at BENCH_SCALE. --merge =
+ * Build each index once for each of the given FINAL_MERGE strategies, for
+ * example optimize,segments:8,none, and compare them. buildDirectory
+ * = Directory the indexes are created under, as for MultiIndexMaker.
+ * indexCode = The indexes to build, by default every index the synthetic
+ * data covers.
+ *
+ * The builds are run one at a time, so that their measurements don't
+ * overlap. For each index this reports the documents written, the documents
+ * per second, the time spent gathering and the time spent finishing the
+ * index once gathering was done, and the peak heap used during the build.
+ *
+ * When comparing final merge strategies, each resulting index is also
+ * searched with a sample of its own terms, so the time saved by merging
+ * less can be weighed against the slower queries on the extra segments.
+ *
+ * @author mhall
+ *
+ * @has A IndexCfg Object, which points the gatherers at the synthetic
+ *      database.
+ *
+ * @does Optionally loads the synthetic database, then builds the requested
+ *       indexes one after another and prints a report for them.
+ *
+ */
+
+public class IndexBenchmark {
+
+	// The indexes whose tables SyntheticMGD creates.
+	public static final String[]	DEFAULT_CODES	= {"g", "ge", "gs", "v",
+			"vd", "ve", "va", "t"};
+
+	// Terms sampled from each index, and how many times each is searched.
+	private static final int		QUERY_TERMS		= 1000;
+	private static final int		QUERY_ROUNDS	= 5;
+
+	private static Logger			log				= Logger.getLogger(IndexBenchmark.class.getName());
+
+	public static void main(String[] args) {
+
+		List<String> argList = new ArrayList<String>(Arrays.asList(args));
+		boolean load = false;
+
+		if (!argList.isEmpty() && argList.get(0).equals("--load")) {
+			load = true;
+			argList.remove(0);
+		}
+
+		List<String> strategies = new ArrayList<String>();
+
+		if (argList.size() > 1 && argList.get(0).equals("--merge")) {
+			argList.remove(0);
+			strategies.addAll(Arrays.asList(argList.remove(0).split(",")));
+		}
+
+		if (argList.isEmpty()) {
+			log.error("Usage: IndexBenchmark [--load] [--merge strategy,...] buildDir [indexCode ...]");
+			System.exit(1);
+		}
+
+		File buildDir = new File(argList.remove(0));
+		List<String> codes = argList.isEmpty() ? Arrays.asList(DEFAULT_CODES)
+				: argList;
+
+		for (String code : codes) {
+			if (!IndexBuild.isIndexCode(code)) {
+				log.error("Unknown index code: " + code);
+				System.exit(1);
+			}
+		}
+
+		List<Result> results = new ArrayList<Result>();
+
+		try {
+			IndexCfg config = new IndexCfg();
+
+			if (load) {
+				SyntheticMGD mgd = new SyntheticMGD(config);
+				try {
+					mgd.load();
+				} finally {
+					mgd.close();
+				}
+			}
+
+			for (String code : codes) {
+				if (strategies.isEmpty()) {
+					results.add(run(config, buildDir, code));
+					continue;
+				}
+
+				// The index controller reads its configuration when the
+				// build is set up, so a system property switches strategy.
+
+				for (String strategy : strategies) {
+					System.setProperty("FINAL_MERGE", strategy);
+					Result result = run(config, buildDir, code);
+					result.strategy = strategy;
+					measureIndex(result, IndexBuild.getIndexDir(buildDir,
+							code));
+					results.add(result);
+				}
+			}
+		} catch (Exception e) {
+			log.error("Benchmark failed.", e);
+			System.exit(1);
+		}
+
+		ConnectionPool.closeAll();
+
+		report(results);
+
+		if (!strategies.isEmpty()) {
+			mergeReport(results);
+		}
+	}
+
+	/*
+	 * Build one index, measuring it as we go.
+	 */
+
+	private static Result run(IndexCfg config, File buildDir, String code)
+			throws Exception {
+
+		// Start every build from a clean heap, so the peaks are its own.
+
+		System.gc();
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+
+		File indexDir = IndexBuild.getIndexDir(buildDir, code);
+		IndexBuild build = new IndexBuild(config, indexDir, code);
+		build.run();
+
+		Result result = new Result();
+		result.code = code;
+		result.time = build.getTime();
+		result.gatherTime = build.getGatherTime();
+
+		// The pools peak at different times, so their sum is an upper bound
+		// on the heap actually in use at once.
+
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				result.peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		IndexReader reader = IndexReader.open(indexDir);
+		result.docs = reader.numDocs();
+		reader.close();
+
+		return result;
+	}
+
+	/*
+	 * Measure the size of a finished index, and how quickly it answers term
+	 * queries for a sample of its own terms.
+	 */
+
+	private static void measureIndex(Result result, File indexDir)
+			throws Exception {
+
+		// Count the segments from their file names.
+
+		Set<String> segments = new HashSet<String>();
+		File files[] = indexDir.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			result.indexBytes += files[i].length();
+			if (!name.startsWith("segments") && name.indexOf('.') > 0) {
+				segments.add(name.substring(0, name.indexOf('.')));
+			}
+		}
+		result.segments = segments.size();
+
+		IndexReader reader = IndexReader.open(indexDir);
+		try {
+
+			// Take terms evenly spread through the whole term dictionary.
+
+			int termCount = 0;
+			TermEnum terms = reader.terms();
+			while (terms.next()) {
+				termCount++;
+			}
+			terms.close();
+
+			List<Term> sample = new ArrayList<Term>();
+			int step = Math.max(1, termCount / QUERY_TERMS);
+			terms = reader.terms();
+			for (int i = 0; terms.next(); i++) {
+				if (i % step == 0) {
+					sample.add(terms.term());
+				}
+			}
+			terms.close();
+
+			// One round to warm up, then time every query.
+
+			IndexSearcher searcher = new IndexSearcher(reader);
+			long times[] = new long[sample.size() * QUERY_ROUNDS];
+			int n = 0;
+			for (int round = 0; round <= QUERY_ROUNDS; round++) {
+				for (Term term : sample) {
+					long start = System.nanoTime();
+					searcher.search(new TermQuery(term), null, 10);
+					if (round > 0) {
+						times[n++] = System.nanoTime() - start;
+					}
+				}
+			}
+
+			if (n > 0) {
+				long total = 0;
+				for (int i = 0; i < n; i++) {
+					total += times[i];
+				}
+				Arrays.sort(times, 0, n);
+				result.queryMean = total / n / 1000.0;
+				result.queryP90 = times[(int) (n * 0.9)] / 1000.0;
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/*
+	 * Print out the build time against query time of each final merge
+	 * strategy.
+	 */
+
+	private static void mergeReport(List<Result> results) {
+		log.info("=================================================");
+		log.info("Final Merge Comparison");
+		log.info(String.format("%-6s %-12s %10s %10s %8s %8s %10s %10s",
+				"index", "strategy", "ms", "finish ms", "segments", "MB",
+				"query us", "p90 us"));
+
+		for (Result result : results) {
+			log.info(String.format(
+					"%-6s %-12s %10d %10d %8d %8.1f %10.1f %10.1f",
+					result.code, result.strategy, result.time, result.time
+							- result.gatherTime, result.segments,
+					result.indexBytes / (1024.0 * 1024.0), result.queryMean,
+					result.queryP90));
+		}
+		log.info("=================================================");
+	}
+
+	/*
+	 * Print out the measurements for each index, and the totals.
+	 */
+
+	private static void report(List<Result> results) {
+		long docs = 0;
+		long time = 0;
+		long gatherTime = 0;
+		long peakHeap = 0;
+
+		log.info("=================================================");
+		log.info("Benchmark Results");
+		log.info(String.format("%-6s %10s %10s %10s %10s %10s %10s", "index",
+				"docs", "ms", "gather ms", "finish ms", "docs/sec",
+				"heap MB"));
+
+		for (Result result : results) {
+			log.info(format(result.code, result.docs, result.time,
+					result.gatherTime, result.peakHeap));
+			docs += result.docs;
+			time += result.time;
+			gatherTime += result.gatherTime;
+			peakHeap = Math.max(peakHeap, result.peakHeap);
+		}
+
+		log.info(format("total", docs, time, gatherTime, peakHeap));
+		log.info("=================================================");
+	}
+
+	private static String format(String code, long docs, long time,
+			long gatherTime, long peakHeap) {
+		double docsPerSecond = time > 0 ? docs * 1000.0 / time : 0;
+		return String.format("%-6s %10d %10d %10d %10d %10.0f %10d", code,
+				docs, time, gatherTime, time - gatherTime, docsPerSecond,
+				peakHeap / (1024 * 1024));
+	}
+
+	/*
+	 * The measurements of a single build.
+	 */
+
+	private static class Result {
+		String	code;
+		long	docs;
+		long	time;
+		long	gatherTime;
+		long	peakHeap;
+
+		// Only measured when comparing final merge strategies.
+		String	strategy;
+		int		segments;
+		long	indexBytes;
+		double	queryMean;
+		double	queryP90;
+	}
+}
@@ -0,0 +1,503 @@
+package org.jax.mgi.searchtoolIndexer.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.jax.mgi.shr.config.IndexCfg;
+
+/**
+ * Loads a synthetic subset of MGD into a scratch database, so that indexing
+ * changes can be measured without the production database. Only the tables
+ * and columns the benchmarked gatherers read are created, views such as
+ * VOC_Term_View are created as plain tables.
+ *
+ * The amount of data is controlled by BENCH_SCALE, a scale of 1 has 20,000
+ * markers and about 12,700 vocabulary terms. The data is generated from a
+ * fixed seed, so every load at the same scale is identical.
+ *
+ * The database is found through the same DB_DRIVER, MGD_JDBC_URL,
+ * MGI_PUBLICUSER and MGI_PUBLICPASSWORD items the SQLExecutor uses, so the
+ * gatherers read whatever was loaded here. The SQL the gatherers use is
+ * PostgreSQL's, so the scratch database should be PostgreSQL, or something
+ * that speaks its dialect.
+ *
+ * As a safety check the load refuses to run against a database that has an
+ * MRK_Marker table it didn't create itself.
+ *
+ * @author mhall
+ *
+ * @has A connection to the scratch database.
+ *
+ * @does Drops and recreates the benchmark tables, and fills them with
+ *       generated markers, alleles, vocabulary terms, dags, annotations and
+ *       strains.
+ *
+ */
+
+public class SyntheticMGD {
+
+	// The table that marks a database as one of ours.
+	private static final String	BENCH_INFO		= "bench_info";
+
+	private static final String[]	SYLLABLES	= {"ab", "ac", "ad", "al",
+			"an", "ar", "ba", "ce", "di", "do", "el", "en", "er", "fi", "ga",
+			"ge", "in", "ka", "la", "le", "li", "lo", "ma", "me", "mi", "mo",
+			"na", "ne", "ni", "no", "or", "pa", "pe", "ra", "re", "ri", "ro",
+			"sa", "se", "si", "so", "ta", "te", "ti", "to", "ul", "un", "ur",
+			"va", "ve", "vi", "xo", "yl", "za", "ze"};
+
+	// _Vocab_key, vocabName, annotType, annotated MGI type, terms per scale.
+	private static final Object[][]	VOCABS		= {
+			{4, "GO", "GO/Marker", 2, 4000},
+			{5, "Mammalian Phenotype", "Mammalian Phenotype/Genotype", 12, 2000},
+			{8, "InterPro Domains", "InterPro/Marker", 2, 1000},
+			{46, "PIR Superfamily", "PIRSF/Marker", 2, 500},
+			{125, "Disease Ontology", "DO/Genotype", 12, 1000},
+			{90, "EMAPA", "EMAPA", 2, 1000},
+			{91, "EMAPS", "EMAPS", 2, 3000},
+			{112, "Proteoform", "Proteoform/Marker", 2, 200}};
+
+	private static final String[][]	TABLES		= {
+			{"mrk_marker", "_marker_key int, _organism_key int, "
+					+ "_marker_status_key int, _marker_type_key int, "
+					+ "symbol varchar(255), name varchar(255)"},
+			{"mrk_label", "_label_key int, _marker_key int, _organism_key int, "
+					+ "_orthologorganism_key int, _label_status_key int, "
+					+ "labeltype varchar(10), labeltypename varchar(255), "
+					+ "label varchar(255)"},
+			{"all_allele", "_allele_key int, _marker_key int, iswildtype int"},
+			{"all_label", "_allele_key int, _label_status_key int, "
+					+ "labeltype varchar(10), labeltypename varchar(255), "
+					+ "label varchar(255)"},
+			{"gxd_allelegenotype", "_genotype_key int, _marker_key int, "
+					+ "_allele_key int"},
+			{"voc_term", "_term_key int, _vocab_key int, term varchar(255), "
+					+ "isobsolete int"},
+			{"voc_term_view", "_term_key int, _vocab_key int, "
+					+ "term varchar(255), vocabname varchar(255), "
+					+ "accid varchar(50), _logicaldb_key int, isobsolete int, "
+					+ "note text"},
+			{"voc_annot", "_annottype_key int, _term_key int, _object_key int"},
+			{"voc_marker_cache", "_term_key int, _marker_key int, "
+					+ "annottype varchar(255)"},
+			{"voc_annot_count_cache", "_term_key int, _mgitype_key int, "
+					+ "objectcount int, annotcount int, annottype varchar(255)"},
+			{"dag_closure", "_ancestorobject_key int, "
+					+ "_descendentobject_key int, _mgitype_key int"},
+			{"voc_term_emapa", "_term_key int, startstage int, endstage int"},
+			{"voc_term_emaps", "_term_key int, _stage_key int"},
+			{"gxd_theilerstage", "_stage_key int, stage int"},
+			{"mgi_synonym", "_synonym_key int, _object_key int, "
+					+ "_mgitype_key int, _synonymtype_key int, "
+					+ "synonym varchar(255)"},
+			{"mgi_synonymtype", "_synonymtype_key int, _mgitype_key int"},
+			{"prb_strain", "_strain_key int, strain varchar(255), private int"},
+			{"acc_accession", "_accession_key int, accid varchar(50), "
+					+ "numericpart int, _logicaldb_key int, _object_key int, "
+					+ "_mgitype_key int, preferred int"},
+			{BENCH_INFO, "scale int, loaded varchar(50)"}};
+
+	private static final int	TERM_KEY_BASE	= 1000000;
+	private static final int	STRAIN_KEY_BASE	= 2000000;
+	private static final int	ALLELE_KEY_BASE	= 3000000;
+
+	private Connection			con;
+	private int					scale;
+	private Random				random			= new Random(42);
+
+	private int					labelKey		= 0;
+	private int					accessionKey	= 0;
+	private int					synonymKey		= 0;
+
+	private Logger				log				= Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Connect to the scratch database.
+	 *
+	 * @param config
+	 * @throws Exception
+	 */
+
+	public SyntheticMGD(IndexCfg config) throws Exception {
+		Class.forName(config.get("DB_DRIVER"));
+		con = DriverManager.getConnection(config.get("MGD_JDBC_URL"), config
+				.get("MGI_PUBLICUSER"), config.get("MGI_PUBLICPASSWORD"));
+		scale = config.getInt("BENCH_SCALE", 1);
+	}
+
+	/**
+	 * Drop and recreate the benchmark tables, and fill them.
+	 *
+	 * @throws Exception
+	 */
+
+	public void load() throws Exception {
+		Date start = new Date();
+
+		if (tableExists("mrk_marker") && !tableExists(BENCH_INFO)) {
+			throw new IllegalStateException("Refusing to load synthetic data"
+					+ " into a database with an MRK_Marker table the benchmark"
+					+ " didn't create, check MGD_JDBC_URL.");
+		}
+
+		log.info("Loading synthetic MGD data at scale " + scale);
+
+		Statement stmt = con.createStatement();
+		for (int i = 0; i < TABLES.length; i++) {
+			if (tableExists(TABLES[i][0])) {
+				stmt.executeUpdate("drop table " + TABLES[i][0]);
+			}
+			stmt.executeUpdate("create table " + TABLES[i][0] + " ("
+					+ TABLES[i][1] + ")");
+		}
+		stmt.close();
+
+		con.setAutoCommit(false);
+
+		int markers = 20000 * scale;
+		loadMarkers(markers);
+		loadAlleles(markers);
+		loadVocabs(markers);
+		loadStrains(1000 * scale);
+
+		Table info = new Table(BENCH_INFO);
+		info.add(scale, new Date().toString());
+		info.close();
+
+		con.commit();
+		con.setAutoCommit(true);
+
+		log.info("Loaded synthetic MGD data in "
+				+ (new Date().getTime() - start.getTime()) + " ms.");
+	}
+
+	public void close() throws SQLException {
+		con.close();
+	}
+
+	/*
+	 * Markers, with a symbol, name and synonyms each, and human orthologs
+	 * for a third of them. One in twenty is a transgene (type 12), and one in
+	 * ten has an old symbol.
+	 */
+
+	private void loadMarkers(int markers) throws SQLException {
+		Table marker = new Table("mrk_marker");
+		Table label = new Table("mrk_label");
+		Table acc = new Table("acc_accession");
+
+		for (int key = 1; key <= markers; key++) {
+			String symbol = symbol();
+			String name = phrase(2, 5);
+			int type = key % 20 == 0 ? 12 : 1 + random.nextInt(3);
+
+			marker.add(key, 1, 1, type, symbol, name);
+
+			label.add(++labelKey, key, 1, null, 1, "MS", "current symbol",
+					symbol);
+			label.add(++labelKey, key, 1, null, 1, "MN", "current name", name);
+			for (int i = random.nextInt(3); i > 0; i--) {
+				label.add(++labelKey, key, 1, null, 1, "MY", "synonym",
+						symbol());
+			}
+			if (key % 10 == 0) {
+				label.add(++labelKey, key, 1, null, 2, "MS", "current symbol",
+						symbol());
+			}
+			if (key % 3 == 0) {
+				label.add(++labelKey, key, 1, 2, 1, "OS", "human symbol",
+						symbol.toUpperCase());
+				label.add(++labelKey, key, 1, 2, 1, "MY", "human synonym",
+						symbol());
+			}
+
+			acc.add(++accessionKey, "MGI:" + key, key, 1, key, 2, 1);
+		}
+
+		marker.close();
+		label.close();
+		acc.close();
+	}
+
+	/*
+	 * One allele for each marker, with a symbol, name and sometimes a
+	 * synonym, each in a genotype of its own.
+	 */
+
+	private void loadAlleles(int markers) throws SQLException {
+		Table allele = new Table("all_allele");
+		Table label = new Table("all_label");
+		Table genotype = new Table("gxd_allelegenotype");
+
+		for (int marker = 1; marker <= markers; marker++) {
+			int key = ALLELE_KEY_BASE + marker;
+			String symbol = "Sym" + marker + "<" + word() + ">";
+
+			allele.add(key, marker, 0);
+			label.add(key, 1, "AS", "allele symbol", symbol);
+			label.add(key, 1, "AN", "allele name", phrase(2, 4));
+			if (marker % 4 == 0) {
+				label.add(key, 1, "AY", "synonym", symbol());
+			}
+			genotype.add(marker, marker, key);
+		}
+
+		allele.close();
+		label.close();
+		genotype.close();
+	}
+
+	/*
+	 * The vocabularies. The terms of each vocabulary form a dag, where every
+	 * term after the first has a parent earlier in the vocabulary and one in
+	 * five has a second parent. The closure of that dag is loaded, along with
+	 * annotations of the markers (or their genotypes) to about half of the
+	 * terms.
+	 */
+
+	private void loadVocabs(int markers) throws SQLException {
+		Table term = new Table("voc_term");
+		Table view = new Table("voc_term_view");
+		Table closure = new Table("dag_closure");
+		Table markerCache = new Table("voc_marker_cache");
+		Table counts = new Table("voc_annot_count_cache");
+		Table synonym = new Table("mgi_synonym");
+		Table acc = new Table("acc_accession");
+		Table emapa = new Table("voc_term_emapa");
+		Table emaps = new Table("voc_term_emaps");
+
+		int termKey = TERM_KEY_BASE;
+
+		for (int v = 0; v < VOCABS.length; v++) {
+			int vocabKey = ((Integer) VOCABS[v][0]).intValue();
+			String vocabName = (String) VOCABS[v][1];
+			String annotType = (String) VOCABS[v][2];
+			int mgiType = ((Integer) VOCABS[v][3]).intValue();
+			int terms = ((Integer) VOCABS[v][4]).intValue() * scale;
+
+			int first = termKey + 1;
+			List<int[]> ancestors = new ArrayList<int[]>();
+
+			for (int i = 0; i < terms; i++) {
+				int key = ++termKey;
+				String text = phrase(1, 6);
+				String accID = vocabName.replace(' ', '_').toUpperCase() + ":"
+						+ (i + 1);
+				String note = random.nextInt(3) == 0 ? phrase(8, 30) : null;
+
+				term.add(key, vocabKey, text, 0);
+				view.add(key, vocabKey, text, vocabName, accID, 1, 0, note);
+				acc.add(++accessionKey, accID, i + 1, 1, key, 13, 1);
+				if (random.nextInt(4) == 0) {
+					acc.add(++accessionKey, "ALT:" + key, key, 15, key, 13, 0);
+				}
+				for (int j = random.nextInt(3); j > 0; j--) {
+					synonym.add(++synonymKey, key, 13, 1, phrase(1, 4));
+				}
+
+				if (vocabKey == 90) {
+					int startStage = 1 + random.nextInt(20);
+					emapa.add(key, startStage, startStage + random.nextInt(8));
+				} else if (vocabKey == 91) {
+					emaps.add(key, 1 + random.nextInt(28));
+				}
+
+				// The ancestors of this term are its parents, and all of
+				// their ancestors.
+
+				HashSet<Integer> set = new HashSet<Integer>();
+				if (i > 0) {
+					int parents = random.nextInt(5) == 0 && i > 1 ? 2 : 1;
+					for (int p = 0; p < parents; p++) {
+						int parent = random.nextInt(i);
+						set.add(Integer.valueOf(first + parent));
+						int[] up = ancestors.get(parent);
+						for (int a = 0; a < up.length; a++) {
+							set.add(Integer.valueOf(up[a]));
+						}
+					}
+				}
+				int[] up = new int[set.size()];
+				int a = 0;
+				for (Integer ancestor : set) {
+					up[a++] = ancestor.intValue();
+					closure.add(ancestor, key, 13);
+				}
+				ancestors.add(up);
+
+				// Annotate about half of the terms.
+
+				if (random.nextInt(2) == 0) {
+					int objects = 1 + random.nextInt(20);
+					for (int o = 0; o < objects; o++) {
+						markerCache.add(key, 1 + random.nextInt(markers),
+								annotType);
+					}
+					counts.add(key, mgiType, objects, objects
+							+ random.nextInt(objects * 2), annotType);
+					if (vocabKey == 125 && random.nextInt(2) == 0) {
+						counts.add(key, 2, objects, objects, "DO/Human Marker");
+					}
+				}
+			}
+		}
+
+		Table stage = new Table("gxd_theilerstage");
+		for (int i = 1; i <= 28; i++) {
+			stage.add(i, i);
+		}
+
+		term.close();
+		view.close();
+		closure.close();
+		markerCache.close();
+		counts.close();
+		synonym.close();
+		acc.close();
+		emapa.close();
+		emaps.close();
+		stage.close();
+	}
+
+	/*
+	 * Strains, each with a strain attribute annotation so that they pass the
+	 * StrainUtils filter, an MGI id, and sometimes a synonym.
+	 */
+
+	private void loadStrains(int strains) throws SQLException {
+		Table strain = new Table("prb_strain");
+		Table annot = new Table("voc_annot");
+		Table term = new Table("voc_term");
+		Table synonym = new Table("mgi_synonym");
+		Table synonymType = new Table("mgi_synonymtype");
+		Table acc = new Table("acc_accession");
+
+		int attributeKey = STRAIN_KEY_BASE;
+		term.add(attributeKey, 55, "inbred strain", 0);
+		synonymType.add(1000, 10);
+
+		for (int i = 1; i <= strains; i++) {
+			int key = STRAIN_KEY_BASE + i;
+			strain.add(key, word().toUpperCase() + "/" + random.nextInt(10)
+					+ word(), 0);
+			annot.add(1009, attributeKey, key);
+			acc.add(++accessionKey, "MGI:" + key, key, 1, key, 10, 1);
+			if (random.nextInt(3) == 0) {
+				synonym.add(++synonymKey, key, 10, 1000, symbol());
+			}
+		}
+
+		strain.close();
+		annot.close();
+		term.close();
+		synonym.close();
+		synonymType.close();
+		acc.close();
+	}
+
+	private String word() {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 2 + random.nextInt(3); i > 0; i--) {
+			sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		return sb.toString();
+	}
+
+	private String phrase(int min, int max) {
+		StringBuffer sb = new StringBuffer(word());
+		for (int i = min + random.nextInt(max - min + 1) - 1; i > 0; i--) {
+			sb.append(" ").append(word());
+		}
+		return sb.toString();
+	}
+
+	private String symbol() {
+		String word = word();
+		return Character.toUpperCase(word.charAt(0)) + word.substring(1, 3)
+				+ random.nextInt(100);
+	}
+
+	private boolean tableExists(String table) throws SQLException {
+		ResultSet rs = con.getMetaData().getTables(null, null, table, null);
+		boolean exists = rs.next();
+		rs.close();
+		if (!exists) {
+			rs = con.getMetaData().getTables(null, null, table.toUpperCase(),
+					null);
+			exists = rs.next();
+			rs.close();
+		}
+		return exists;
+	}
+
+	/*
+	 * Batches up the inserts into one of the tables.
+	 */
+
+	private class Table {
+
+		private PreparedStatement	insert;
+		private int[]				types;
+		private int					pending	= 0;
+
+		Table(String name) throws SQLException {
+			String columns = null;
+			for (int i = 0; i < TABLES.length; i++) {
+				if (TABLES[i][0].equals(name)) {
+					columns = TABLES[i][1];
+				}
+			}
+
+			String[] defs = columns.split(",");
+			types = new int[defs.length];
+			StringBuffer names = new StringBuffer();
+			StringBuffer marks = new StringBuffer();
+			for (int i = 0; i < defs.length; i++) {
+				String[] parts = defs[i].trim().split(" ");
+				types[i] = parts[1].equals("int") ? Types.INTEGER
+						: Types.VARCHAR;
+				if (i > 0) {
+					names.append(", ");
+					marks.append(", ");
+				}
+				names.append(parts[0]);
+				marks.append("?");
+			}
+			insert = con.prepareStatement("insert into " + name + " ("
+					+ names + ") values (" + marks + ")");
+		}
+
+		void add(Object... values) throws SQLException {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null) {
+					insert.setNull(i + 1, types[i]);
+				} else {
+					insert.setObject(i + 1, values[i], types[i]);
+				}
+			}
+			insert.addBatch();
+			if (++pending == 1000) {
+				insert.executeBatch();
+				pending = 0;
+			}
+		}
+
+		void close() throws SQLException {
+			if (pending > 0) {
+				insert.executeBatch();
+			}
+			insert.close();
+		}
+	}
+}
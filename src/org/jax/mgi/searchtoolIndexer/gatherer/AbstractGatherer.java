@@ -1,8 +1,12 @@
 package org.jax.mgi.searchtoolIndexer.gatherer;
 
+import java.io.File;
 import java.sql.Connection;
 
 import org.apache.log4j.Logger;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.DocumentPool;
+import org.jax.mgi.searchtoolIndexer.util.BuildCheckpoint;
+import org.jax.mgi.searchtoolIndexer.util.Metrics;
 import org.jax.mgi.searchtoolIndexer.util.SharedDocumentStack;
 import org.jax.mgi.shr.config.IndexCfg;
 
@@ -10,11 +14,14 @@ import org.jax.mgi.shr.config.IndexCfg;
  * The AbstractGatherer class is the superclass for all the gatherers in the
  * indexing software.
  * 
- * It provides a templated run method, and a default constructor.
+ * It provides a templated run method, and a default constructor. While it
+ * runs the gatherer reports to a Metrics section named after its class.
+ * When the build is checkpointed, the gatherer records each subsection it
+ * finishes, and skips the ones an earlier build already finished.
  * 
  * @author mhall
  * 
- * @has A single instance of the SharedDocumentStack, which is used to hold the
+ * @has An instance of the SharedDocumentStack, which is used to hold the
  *      Lucene documents that implementing objects produce. A IndexCfg Object,
  *      used to configure this object and any of its children.
  * 
@@ -25,43 +32,156 @@ import org.jax.mgi.shr.config.IndexCfg;
 
 public abstract class AbstractGatherer implements Runnable {
 
+	protected IndexCfg config;
 	protected SharedDocumentStack documentStore;
 	protected Connection con;
 	protected Integer stack_max;
+	protected int batch_size;
+	protected int queue_memory_budget;
+	protected String queue_spill_dir = "";
+	protected Metrics metrics;
+	protected BuildCheckpoint checkpoint;
+	private volatile boolean finished = false;
 	protected Logger log = Logger.getLogger(this.getClass().getName());
 
 	/**
 	 * Superclass constructor, this pulls in a configuration object for any
-	 * implementing class to use, as well as setting up the stack max and the
-	 * shared document stack.
+	 * implementing class to use, as well as setting up the stack max, the
+	 * batch size and a document stack for this gatherer.
 	 * 
 	 * @param config
 	 */
 
 	protected AbstractGatherer(IndexCfg config) {
+		this.config = config;
 		try {
 			stack_max = new Integer(config.get("STACK_MAX"));
+			batch_size = config.getInt("BATCH_SIZE", 1000);
+			queue_memory_budget = config.getInt("QUEUE_MEMORY_BUDGET", 0);
+			queue_spill_dir = config.get("QUEUE_SPILL_DIR", "").trim();
 		} catch (Exception e) {
 			log.error(e);
 		}
-		documentStore = SharedDocumentStack.getSharedDocumentStack();
+		setDocumentStore(new SharedDocumentStack());
+	}
+
+	/**
+	 * Replace the stack this gatherer places its documents on, configuring it
+	 * with this gatherer's stack max, batch size and spill settings.
+	 * 
+	 * @param stack
+	 */
+
+	public void setDocumentStore(SharedDocumentStack stack) {
+		documentStore = stack;
 		documentStore.setMaxSize(stack_max.intValue());
+		documentStore.setBatchSize(batch_size);
+		documentStore.setSpill(queue_memory_budget * 1024L * 1024L,
+				queue_spill_dir.equals("") ? null : new File(queue_spill_dir));
+	}
+
+	/**
+	 * Return the stack this gatherer places its documents on, which the
+	 * Indexers for the same build consume from.
+	 * 
+	 * @return SharedDocumentStack
+	 */
+
+	public SharedDocumentStack getDocumentStore() {
+		return documentStore;
+	}
+
+	/**
+	 * Set the metrics this gatherer reports to, or null for none.
+	 * 
+	 * @param metrics
+	 */
+
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Set the checkpoint this gatherer records its finished subsections in,
+	 * or null to not checkpoint.
+	 * 
+	 * @param checkpoint
+	 */
+
+	public void setCheckpoint(BuildCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Did the gatherer run to the end without failing?
+	 * 
+	 * @return boolean
+	 */
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Make the named metrics section the current one for this thread, if
+	 * this gatherer has metrics.
+	 * 
+	 * @param name
+	 * @return The previous section, to hand to leaveSection.
+	 */
+
+	protected Metrics.Section enterSection(String name) {
+		if (metrics == null) {
+			return null;
+		}
+		return Metrics.setCurrent(metrics.section(name));
+	}
+
+	/**
+	 * Record how long the current metrics section ran for, and go back to
+	 * the previous one.
+	 * 
+	 * @param previous
+	 * @param start
+	 *            When the section was entered, in milliseconds.
+	 */
+
+	protected void leaveSection(Metrics.Section previous, long start) {
+		if (metrics == null) {
+			return;
+		}
+		Metrics.current().add(Metrics.ELAPSED_MS,
+				System.currentTimeMillis() - start);
+		Metrics.setCurrent(previous);
 	}
 
 	/**
 	 * This method provides the template for run methods, ensuring that the
-	 * local run method is called, and that cleanup is called upon thread death.
+	 * local run method is called, that the last partial batch of documents is
+	 * handed over, and that cleanup is called upon thread death.
 	 */
 
 	public void run() {
+		long start = System.currentTimeMillis();
+		Metrics.Section previous = enterSection(getClass().getSimpleName());
+		DocumentPool previousPool = DocumentPool.setCurrent(documentStore
+				.getDocumentPool());
 		try {
 			runLocal();
+			finished = true;
 		} catch (Exception e) {
 			log.error("Exception caught in Abstract Gatherer run()");
 			log.error(e);
 		} finally {
+			try {
+				documentStore.flush();
+			} catch (Exception e) {
+				log.error(e);
+			}
 			documentStore.setComplete();
 			cleanup();
+			DocumentPool.setCurrent(previousPool);
+			leaveSection(previous, start);
 		}
 	}
 
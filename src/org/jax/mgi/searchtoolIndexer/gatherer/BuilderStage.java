@@ -0,0 +1,339 @@
+package org.jax.mgi.searchtoolIndexer.gatherer;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.AbstractLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.DocumentPool;
+import org.jax.mgi.searchtoolIndexer.util.Metrics;
+import org.jax.mgi.searchtoolIndexer.util.SharedDocumentStack;
+import org.jax.mgi.shr.config.IndexCfg;
+
+/**
+ * Turns the rows of a result set into documents on a pool of builder
+ * threads, so that reading rows from the database doesn't wait on building
+ * documents.
+ *
+ * The thread calling run only copies each row's column values into a Row,
+ * and hands them over in batches. Each of the BUILDER_THREADS workers has a
+ * doc builder of its own, which a RowBuilder fills from each Row before the
+ * document is pushed onto the stack. With BUILDER_THREADS at 0, the default,
+ * the rows are built on the calling thread as they are read.
+ *
+ * The documents of a result set can reach the stack in a different order
+ * than its rows when more than one worker is used, so the rows are always
+ * built inline with a fifo or sorted ORDERING.
+ *
+ * @author mhall
+ *
+ * @has The document stack, and how many builder threads to use.
+ *
+ * @does Reads result sets, and builds and pushes their documents in
+ *       parallel.
+ *
+ */
+
+public class BuilderStage {
+
+	// Rows handed to a worker at a time.
+	private static final int		BATCH_ROWS	= 256;
+
+	// Tells a worker there are no more rows.
+	private static final Row[]		END			= new Row[0];
+
+	private static Logger			log			= Logger.getLogger(BuilderStage.class.getName());
+
+	private SharedDocumentStack		stack;
+	private int						threads		= 0;
+
+	public BuilderStage(IndexCfg config, SharedDocumentStack stack) {
+		this.stack = stack;
+		try {
+			threads = config.getInt("BUILDER_THREADS", 0);
+
+			// The ordered modes need the documents in the order of the rows.
+
+			if (!config.get("ORDERING", "lifo").trim().equalsIgnoreCase(
+					"lifo")) {
+				threads = 0;
+			}
+		} catch (Exception e) {
+			log.error(e);
+		}
+	}
+
+	/**
+	 * Build and push a document for each row of a result set. The result set
+	 * is read to the end, but is left for the caller to close.
+	 *
+	 * @param rs
+	 * @param rowBuilder
+	 * @return The number of documents pushed.
+	 * @throws Exception
+	 */
+
+	public <B extends AbstractLuceneDocBuilder> int run(ResultSet rs,
+			RowBuilder<B> rowBuilder) throws Exception {
+		Columns columns = new Columns(rs.getMetaData());
+
+		if (threads <= 0) {
+			return runInline(rs, columns, rowBuilder);
+		}
+
+		BlockingQueue<Row[]> queue = new ArrayBlockingQueue<Row[]>(threads * 4);
+		AtomicInteger count = new AtomicInteger();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(new Worker<B>(queue, rowBuilder, count,
+					failure, Metrics.current(), DocumentPool.current()), Thread
+					.currentThread()
+					.getName()
+					+ "-builder-" + i);
+			workers[i].start();
+		}
+
+		boolean interrupted = false;
+		try {
+			Row[] batch = new Row[BATCH_ROWS];
+			int size = 0;
+			while (failure.get() == null && rs.next()) {
+				batch[size++] = columns.copy(rs);
+				if (size == BATCH_ROWS) {
+					queue.put(batch);
+					batch = new Row[BATCH_ROWS];
+					size = 0;
+				}
+			}
+			if (size > 0) {
+				Row[] last = new Row[size];
+				System.arraycopy(batch, 0, last, 0, size);
+				queue.put(last);
+			}
+		} catch (InterruptedException e) {
+			interrupted = true;
+			for (int i = 0; i < threads; i++) {
+				workers[i].interrupt();
+			}
+			throw e;
+		} catch (Exception e) {
+			failure.compareAndSet(null, e);
+		} finally {
+			if (!interrupted) {
+				for (int i = 0; i < threads; i++) {
+					queue.put(END);
+				}
+				for (int i = 0; i < threads; i++) {
+					workers[i].join();
+				}
+			}
+		}
+
+		Throwable t = failure.get();
+		if (t instanceof Exception) {
+			throw (Exception) t;
+		} else if (t != null) {
+			throw new RuntimeException(t);
+		}
+		return count.get();
+	}
+
+	/*
+	 * Build every row on the calling thread.
+	 */
+
+	private <B extends AbstractLuceneDocBuilder> int runInline(ResultSet rs,
+			Columns columns, RowBuilder<B> rowBuilder) throws Exception {
+		B builder = rowBuilder.newBuilder();
+		int count = 0;
+		while (rs.next()) {
+			if (rowBuilder.build(columns.copy(rs), builder)) {
+				stack.push(builder.getDocument());
+				count++;
+			}
+			builder.clear();
+		}
+		return count;
+	}
+
+	/*
+	 * Builds the batches of rows it takes off the queue, until it is told
+	 * there are no more.
+	 */
+
+	private class Worker<B extends AbstractLuceneDocBuilder> implements
+			Runnable {
+
+		private BlockingQueue<Row[]>		queue;
+		private RowBuilder<B>				rowBuilder;
+		private AtomicInteger				count;
+		private AtomicReference<Throwable>	failure;
+		private Metrics.Section				section;
+		private DocumentPool				pool;
+
+		Worker(BlockingQueue<Row[]> queue, RowBuilder<B> rowBuilder,
+				AtomicInteger count, AtomicReference<Throwable> failure,
+				Metrics.Section section, DocumentPool pool) {
+			this.queue = queue;
+			this.rowBuilder = rowBuilder;
+			this.count = count;
+			this.failure = failure;
+			this.section = section;
+			this.pool = pool;
+		}
+
+		public void run() {
+
+			// Report the documents to the section the rows are read for, and
+			// build them from the same pool.
+
+			Metrics.setCurrent(section);
+			DocumentPool.setCurrent(pool);
+			B builder = null;
+
+			try {
+				Row[] batch;
+				while ((batch = queue.take()) != END) {
+
+					// After a failure, keep taking batches so the reader
+					// is never left waiting on a full queue.
+
+					if (failure.get() != null) {
+						continue;
+					}
+					try {
+						if (builder == null) {
+							builder = rowBuilder.newBuilder();
+						}
+						for (int i = 0; i < batch.length; i++) {
+							if (rowBuilder.build(batch[i], builder)) {
+								stack.push(builder.getDocument());
+								count.incrementAndGet();
+							}
+							builder.clear();
+						}
+					} catch (InterruptedException e) {
+						failure.compareAndSet(null, e);
+						return;
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+				stack.flush();
+			} catch (InterruptedException e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				Metrics.setCurrent(null);
+			}
+		}
+	}
+
+	/**
+	 * Fills a doc builder from a row. A RowBuilder is shared by every worker,
+	 * so it must not keep any state of its own between rows.
+	 */
+
+	public static abstract class RowBuilder<B extends AbstractLuceneDocBuilder> {
+
+		/**
+		 * Create a doc builder for a worker.
+		 *
+		 * @return B
+		 */
+
+		public abstract B newBuilder();
+
+		/**
+		 * Fill the builder from a row.
+		 *
+		 * @param row
+		 * @param builder
+		 *            A cleared builder.
+		 * @return false to skip the row, rather than push a document for it.
+		 * @throws Exception
+		 */
+
+		public abstract boolean build(Row row, B builder) throws Exception;
+	}
+
+	/**
+	 * The column values of a single row.
+	 */
+
+	public static class Row {
+
+		private Columns		columns;
+		private String[]	values;
+
+		private Row(Columns columns, String[] values) {
+			this.columns = columns;
+			this.values = values;
+		}
+
+		/**
+		 * The value of a column, found by name without regard to case.
+		 *
+		 * @param column
+		 * @return String
+		 */
+
+		public String getString(String column) {
+			return values[columns.indexOf(column)];
+		}
+
+		public int getInt(String column) {
+			String value = getString(column);
+			return value == null ? 0 : Integer.parseInt(value);
+		}
+	}
+
+	/*
+	 * The column names of a result set, shared by all of its rows.
+	 */
+
+	private static class Columns {
+
+		private int									count;
+		private ConcurrentHashMap<String, Integer>	index	= new ConcurrentHashMap<String, Integer>();
+
+		Columns(ResultSetMetaData meta) throws Exception {
+			count = meta.getColumnCount();
+			for (int i = count; i >= 1; i--) {
+				index.put(meta.getColumnLabel(i).toLowerCase(), Integer.valueOf(i - 1));
+			}
+		}
+
+		Row copy(ResultSet rs) throws Exception {
+			String[] values = new String[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = rs.getString(i + 1);
+			}
+			return new Row(this, values);
+		}
+
+		/*
+		 * Each spelling of a name is remembered once it has been looked up,
+		 * so most lookups don't lower case the name.
+		 */
+
+		int indexOf(String column) {
+			Integer i = index.get(column);
+			if (i == null) {
+				i = index.get(column.toLowerCase());
+				if (i == null) {
+					throw new IllegalArgumentException("No column named "
+							+ column);
+				}
+				index.putIfAbsent(column, i);
+			}
+			return i.intValue();
+		}
+	}
+}
@@ -1,23 +1,386 @@
 package org.jax.mgi.searchtoolIndexer.gatherer;
 
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.AbstractLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.DocumentPool;
+import org.jax.mgi.searchtoolIndexer.util.Metrics;
 import org.jax.mgi.searchtoolIndexer.util.SQLExecutor;
 import org.jax.mgi.shr.config.IndexCfg;
 
 /**
  * The DatabaseGatherer - parent class for gatherers in the searchtool
- * 
+ *
+ * Gatherers describe their work as a list of independent subsections, each
+ * of which is a query followed by document building. When SUBSECTION_THREADS
+ * is greater than one the subsections are run as parallel tasks. Each task
+ * runs on a worker, which is a fresh instance of the same gatherer with its
+ * own SQLExecutor connection and its own doc builder, sharing this
+ * gatherer's document stack. The stack is only marked complete once every
+ * subsection has finished.
+ *
+ * Each subsection reports to its own Metrics section, named after it.
+ *
+ * A single large scan can be split into several subsections, one for each of
+ * the SCAN_PARTITIONS key ranges returned by keyRanges.
+ *
+ * With a fifo or sorted ORDERING the subsections always run in order on
+ * this gatherer, so their documents keep the order they are listed in.
+ *
+ * When the build is checkpointed the subsections always run in order, so
+ * that each one's documents can be committed to the index before the next
+ * one starts, and the subsections an earlier build finished are skipped.
+ * The key ranges are recorded with the checkpoint, and a resumed build
+ * reuses them, so its subsections have the same names as before.
+ *
  * @has An instance of the IndexCfg object, which is used to setup this object.
  * @does Provides common services and a consistent API for all child gatherers
- *       to implement.
+ *       to implement, and runs their subsections either in sequence or in
+ *       parallel.
  */
 
 public abstract class DatabaseGatherer extends AbstractGatherer {
 
 	protected SQLExecutor executor;
+	protected int subsection_threads = 1;
+	protected int scan_partitions = 1;
 
 	public DatabaseGatherer(IndexCfg config) {
 		super(config);
 		executor = new SQLExecutor(config);
+		try {
+			subsection_threads = config.getInt("SUBSECTION_THREADS", 1);
+			scan_partitions = config.getInt("SCAN_PARTITIONS", 1);
+
+			// The ordered modes need the documents in the order the
+			// subsections are listed.
+
+			if (!config.get("ORDERING", "lifo").trim().equalsIgnoreCase(
+					"lifo")) {
+				subsection_threads = 1;
+			}
+		} catch (Exception e) {
+			log.error(e);
+		}
+	}
+
+	/**
+	 * A single independent unit of work for a gatherer. It is handed the
+	 * gatherer it should run against, which is either this gatherer or one
+	 * of its workers, and is usually an anonymous class calling one of the
+	 * gatherer's do* methods on it.
+	 */
+
+	protected abstract static class Subsection {
+
+		private String name;
+
+		public Subsection(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		protected abstract void run(DatabaseGatherer worker) throws Exception;
+	}
+
+	/**
+	 * Run the given subsections, as runSubsections(List) does.
+	 *
+	 * @param subsections
+	 * @throws Exception
+	 */
+
+	protected void runSubsections(Subsection... subsections) throws Exception {
+		runSubsections(Arrays.asList(subsections));
+	}
+
+	/**
+	 * Run the given subsections, returning once all of them have finished.
+	 * With a single subsection thread they run in order on this gatherer,
+	 * otherwise each one runs on its own worker. The first failure is
+	 * rethrown once the rest of the tasks have stopped.
+	 *
+	 * @param subsections
+	 * @throws Exception
+	 */
+
+	protected void runSubsections(List<Subsection> subsections)
+			throws Exception {
+
+		if (checkpoint != null) {
+			runCheckpointed(subsections);
+			return;
+		}
+
+		if (subsection_threads <= 1 || subsections.size() <= 1) {
+			for (Subsection subsection : subsections) {
+				long start = System.currentTimeMillis();
+				Metrics.Section previous = enterSection(subsection.getName());
+				try {
+					subsection.run(this);
+				} finally {
+					leaveSection(previous, start);
+				}
+			}
+			return;
+		}
+
+		int threads = Math.min(subsection_threads, subsections.size());
+		log.info("Running " + subsections.size() + " subsections on "
+				+ threads + " threads.");
+
+		// Hand this gatherer's connection back while the workers run, so it
+		// isn't held idle when DB_MAX_OPEN has the workers waiting for one.
+		// Each worker only borrows one once its subsection runs a query.
+
+		executor.cleanup();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+
+		for (final Subsection subsection : subsections) {
+			results.add(pool.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					long start = System.currentTimeMillis();
+					Metrics.Section previous = enterSection(subsection
+							.getName());
+					DocumentPool.setCurrent(documentStore.getDocumentPool());
+					DatabaseGatherer worker = newWorker();
+					try {
+						subsection.run(worker);
+					} finally {
+						try {
+							documentStore.flush();
+						} finally {
+							worker.cleanup();
+							leaveSection(previous, start);
+						}
+					}
+					return null;
+				}
+			}));
+		}
+		pool.shutdown();
+
+		Throwable failure = null;
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				results.get(i).get();
+			} catch (CancellationException e) {
+				// Cancelled after an earlier failure.
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+					log.error("Subsection " + subsections.get(i).getName()
+							+ " failed, cancelling the rest.");
+					pool.shutdownNow();
+				}
+			}
+		}
+
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		} else if (failure != null) {
+			throw new Exception(failure);
+		}
+	}
+
+	/*
+	 * Run the subsections one at a time, checkpointing after each. Their
+	 * documents would be mixed together in the index if they ran at once,
+	 * and a failed subsection's documents couldn't be told apart from the
+	 * others when rolling back.
+	 */
+
+	private void runCheckpointed(List<Subsection> subsections)
+			throws Exception {
+		List<String> names = new ArrayList<String>();
+		for (Subsection subsection : subsections) {
+			names.add(subsection.getName());
+		}
+		checkpoint.checkSubsections(names);
+
+		if (subsection_threads > 1) {
+			log.info("Running the subsections one at a time, since the build"
+					+ " is checkpointed.");
+		}
+
+		for (Subsection subsection : subsections) {
+			if (checkpoint.isComplete(subsection.getName())) {
+				log.info("Skipping " + subsection.getName()
+						+ ", it was finished by an earlier build.");
+				continue;
+			}
+			long start = System.currentTimeMillis();
+			Metrics.Section previous = enterSection(subsection.getName());
+			try {
+				subsection.run(this);
+				documentStore.flush();
+				checkpoint.complete(subsection.getName());
+			} finally {
+				leaveSection(previous, start);
+			}
+		}
+	}
+
+	/**
+	 * A range of key values, used to split one large scan into several
+	 * subsections. The ranges returned by keyRanges are open at each end, so
+	 * between them they cover every key, including keys added after the
+	 * bounds were found.
+	 */
+
+	protected static class KeyRange {
+
+		// Every key, for scans that aren't split.
+		public static final KeyRange ALL = new KeyRange(null, null);
+
+		private Long low;
+		private Long high;
+
+		private KeyRange(Long low, Long high) {
+			this.low = low;
+			this.high = high;
+		}
+
+		/**
+		 * Return the condition restricting a key column to this range, as
+		 * an " and ..." clause, or an empty string for the whole table.
+		 *
+		 * @param column
+		 * @return String
+		 */
+
+		public String toSql(String column) {
+			StringBuilder sql = new StringBuilder();
+			if (low != null) {
+				sql.append(" and ").append(column).append(" > ").append(low);
+			}
+			if (high != null) {
+				sql.append(" and ").append(column).append(" <= ").append(high);
+			}
+			return sql.toString();
+		}
+
+		public String toString() {
+			return "(" + (low == null ? "" : low.toString()) + ", "
+					+ (high == null ? "" : high.toString()) + "]";
+		}
+	}
+
+	/**
+	 * Split the keys of a table into SCAN_PARTITIONS ranges of equal width,
+	 * so that a large scan can be run as one subsection per range. With a
+	 * single partition, or an empty table, there is one range covering
+	 * everything. A resumed build uses the ranges of the build it carries
+	 * on from.
+	 *
+	 * @param table
+	 * @param column
+	 *            A numeric key column, ideally indexed so its bounds are
+	 *            cheap to find.
+	 * @return The ranges, in key order.
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+
+	protected List<KeyRange> keyRanges(String table, String column)
+			throws SQLException, IOException {
+		List<KeyRange> ranges = new ArrayList<KeyRange>();
+		String key = table + "." + column;
+
+		if (checkpoint != null && checkpoint.getBounds(key) != null) {
+			Long previous = null;
+			for (long bound : checkpoint.getBounds(key)) {
+				ranges.add(new KeyRange(previous, Long.valueOf(bound)));
+				previous = Long.valueOf(bound);
+			}
+			ranges.add(previous == null ? KeyRange.ALL : new KeyRange(
+					previous, null));
+			log.info("Using the " + ranges.size() + " ranges of " + key
+					+ " from the checkpoint.");
+			return ranges;
+		}
+
+		if (scan_partitions > 1) {
+			ResultSet rs = executor.executeMGD("select min(" + column
+					+ "), max(" + column + ") from " + table);
+			rs.next();
+			long min = rs.getLong(1);
+			boolean empty = rs.wasNull();
+			long max = rs.getLong(2);
+			rs.close();
+
+			int parts = (int) Math.min(scan_partitions, empty ? 1 : max - min
+					+ 1);
+			Long previous = null;
+			for (int i = 1; i < parts; i++) {
+				Long bound = Long.valueOf(min + (max - min + 1) * i / parts
+						- 1);
+				ranges.add(new KeyRange(previous, bound));
+				previous = bound;
+			}
+			ranges.add(previous == null ? KeyRange.ALL : new KeyRange(
+					previous, null));
+		} else {
+			ranges.add(KeyRange.ALL);
+		}
+
+		if (checkpoint != null) {
+			long bounds[] = new long[ranges.size() - 1];
+			for (int i = 0; i < bounds.length; i++) {
+				bounds[i] = ranges.get(i).high.longValue();
+			}
+			checkpoint.recordBounds(key, bounds);
+		}
+		return ranges;
+	}
+
+	/**
+	 * Create a worker for running a subsection. This is a new instance of
+	 * the implementing class, so it has its own SQLExecutor and doc builder,
+	 * but it places its documents on this gatherer's stack.
+	 *
+	 * @return A new gatherer of the same type.
+	 * @throws Exception
+	 */
+
+	protected DatabaseGatherer newWorker() throws Exception {
+		DatabaseGatherer worker = getClass().getConstructor(IndexCfg.class)
+				.newInstance(config);
+		worker.documentStore = documentStore;
+		worker.metrics = metrics;
+		return worker;
+	}
+
+	/**
+	 * Build and push a document for each row of a result set, on the
+	 * BUILDER_THREADS builder threads.  The result set is left for the caller
+	 * to close.
+	 * 
+	 * @param rs
+	 * @param rowBuilder
+	 * @return The number of documents pushed.
+	 * @throws Exception
+	 */
+
+	protected <B extends AbstractLuceneDocBuilder> int buildRows(ResultSet rs,
+			BuilderStage.RowBuilder<B> rowBuilder) throws Exception {
+		return new BuilderStage(config, documentStore).run(rs, rowBuilder);
 	}
 
 	/**
@@ -46,7 +46,7 @@ public class GenomeFeatureAccIDGatherer extends DatabaseGatherer {
 
 		super(config);
 
-		phmg = new ProviderHashMap(config);
+		phmg = ProviderHashMap.getInstance(config);
 
 	}
 
@@ -57,13 +57,35 @@ public class GenomeFeatureAccIDGatherer extends DatabaseGatherer {
 	 */
 
 	public void runLocal() throws Exception {
-		doMarkerAccession();
-		doAlleleAccession();
-		doOrthologAccession();
-		doAllelesByESCellLines();
-		doAllelesBySequence();
-		doAllelesByESCellLineNames();
-		doAllelesByMarkerTransgene();
+		runSubsections(new Subsection("doMarkerAccession") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureAccIDGatherer) worker).doMarkerAccession();
+			}
+		}, new Subsection("doAlleleAccession") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureAccIDGatherer) worker).doAlleleAccession();
+			}
+		}, new Subsection("doOrthologAccession") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureAccIDGatherer) worker).doOrthologAccession();
+			}
+		}, new Subsection("doAllelesByESCellLines") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureAccIDGatherer) worker).doAllelesByESCellLines();
+			}
+		}, new Subsection("doAllelesBySequence") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureAccIDGatherer) worker).doAllelesBySequence();
+			}
+		}, new Subsection("doAllelesByESCellLineNames") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureAccIDGatherer) worker).doAllelesByESCellLineNames();
+			}
+		}, new Subsection("doAllelesByMarkerTransgene") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureAccIDGatherer) worker).doAllelesByMarkerTransgene();
+			}
+		});
 	}
 
 	/**
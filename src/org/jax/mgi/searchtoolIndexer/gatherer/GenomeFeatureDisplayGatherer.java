@@ -47,8 +47,15 @@ public class GenomeFeatureDisplayGatherer extends DatabaseGatherer {
 	 */
 
 	public void runLocal() throws Exception {
-		doMarkerDisplay();
-		doAlleleDisplay();
+		runSubsections(new Subsection("doMarkerDisplay") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureDisplayGatherer) worker).doMarkerDisplay();
+			}
+		}, new Subsection("doAlleleDisplay") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureDisplayGatherer) worker).doAlleleDisplay();
+			}
+		});
 	}
 
 	/**
@@ -51,8 +51,15 @@ public class GenomeFeatureExactGatherer extends DatabaseGatherer {
 	 */
 
 	public void runLocal() throws Exception {
-		doMarkerLabels();
-		doAlleleLabels();
+		runSubsections(new Subsection("doMarkerLabels") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureExactGatherer) worker).doMarkerLabels();
+			}
+		}, new Subsection("doAlleleLabels") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureExactGatherer) worker).doAlleleLabels();
+			}
+		});
 	}
 
 	/**
@@ -63,7 +70,7 @@ public class GenomeFeatureExactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doMarkerLabels() throws SQLException, InterruptedException {
+	private void doMarkerLabels() throws Exception {
 
 		// Grab marker key, label, label type and the type name for all
 		// marker, alleles and orthologs, but not the symbols.
@@ -79,22 +86,11 @@ public class GenomeFeatureExactGatherer extends DatabaseGatherer {
 		// all data for withdrawn markers
 		// all data for transgene markers
 
-		String GENE_LABEL_EXACT = "select ml._Marker_key, "
-				+ "ml.label, ml.labelType,  ml.labelTypeName, "
-				+ "ml._OrthologOrganism_key, "
-				+ "ml._Label_Status_key, ml._Label_key"
-				+ " from MRK_Label ml, MRK_Marker m"
-				+ " where  ml._Organism_key = 1 and ml._Marker_key = "
-				+ "m._Marker_key and m._Marker_Status_key = 1 "
-				+ "and ml.labelType not in ('MS', 'AS', 'OS', 'AN') "
-				+ "and m._Marker_Type_key != 12";
+		// The rows come from the shared marker label scan, the exclusions
+		// are applied here.
 
-		// Gather the data
-
-		ResultSet rs_label = executor.executeMGD(GENE_LABEL_EXACT);
-
-		log.info("Time taken to gather label's result set: "
-				+ executor.getTiming());
+		ResultSet rs_label = ScanCache.open(config, executor,
+				ScanCache.MARKER_LABELS);
 
 		// Parse it
 
@@ -104,6 +100,12 @@ public class GenomeFeatureExactGatherer extends DatabaseGatherer {
 
 			dataType = rs_label.getString("labelType");
 
+			if (dataType.equals("MS") || dataType.equals("AS")
+					|| dataType.equals("OS") || dataType.equals("AN")
+					|| rs_label.getString("_Marker_Type_key").equals("12")) {
+				continue;
+			}
+
 			if (dataType.equals(IndexConstants.MARKER_SYNOYNM)
 					&& rs_label.getString("_OrthologOrganism_key") != null) {
 				builder.setDataType(IndexConstants.ORTHOLOG_SYNONYM);
@@ -39,7 +39,7 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 
 	private GenomeFeatureInexactLuceneDocBuilder builder = new GenomeFeatureInexactLuceneDocBuilder();
 
-	public static HashMap<String, String> providerMap = new HashMap<String, String>();
+	private HashMap<String, String> providerMap = new HashMap<String, String>();
 
 	public GenomeFeatureInexactGatherer(IndexCfg config) {
 		super(config);
@@ -73,11 +73,27 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 	}
 
 	public void runLocal() throws Exception {
-		doMarkerLabels();
-		doVocabTerms();
-		doVocabSynonyms();
-		doVocabNotes();
-		doAlleleNomen();
+		runSubsections(new Subsection("doMarkerLabels") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureInexactGatherer) worker).doMarkerLabels();
+			}
+		}, new Subsection("doVocabTerms") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureInexactGatherer) worker).doVocabTerms();
+			}
+		}, new Subsection("doVocabSynonyms") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureInexactGatherer) worker).doVocabSynonyms();
+			}
+		}, new Subsection("doVocabNotes") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureInexactGatherer) worker).doVocabNotes();
+			}
+		}, new Subsection("doAlleleNomen") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureInexactGatherer) worker).doAlleleNomen();
+			}
+		});
 	}
 
 	/**
@@ -87,7 +103,7 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doMarkerLabels() throws SQLException, InterruptedException {
+	private void doMarkerLabels() throws Exception {
 
 		// SQL for this Subsection
 
@@ -102,111 +118,111 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 		// allele names
 		// all data for transgene markers
 
-		String MARKER_LABEL_KEY = "select ml._Marker_key, ml.label, "
-				+ "ml.labelType, ml._OrthologOrganism_key, "
-				+ "ml._Label_Status_key, ml.labelTypeName, ml._Label_key"
-				+ " from MRK_Label ml, MRK_Marker m"
-				+ " where ml._Organism_key = 1 and ml._Marker_key = "
-				+ "m._Marker_key and m._Marker_Status_key = 1 "
-				+ " and labelType not in ('AS','AN') "
-				+ " and m._Marker_Type_key != 12";
-
-		// Gather the data
+		// The rows come from the shared marker label scan, the exclusions
+		// are applied here.
 
-		ResultSet rs = executor.executeMGD(MARKER_LABEL_KEY);
-
-		log.info("Time taken gather marker label result set "
-				+ executor.getTiming());
+		ResultSet rs = ScanCache.open(config, executor,
+				ScanCache.MARKER_LABELS);
 
 		// Parse it
 
-		String displayType = "";
+		buildRows(rs, new BuilderStage.RowBuilder<GenomeFeatureInexactLuceneDocBuilder>() {
+			public GenomeFeatureInexactLuceneDocBuilder newBuilder() {
+				return new GenomeFeatureInexactLuceneDocBuilder();
+			}
 
-		while (rs.next()) {
+			public boolean build(BuilderStage.Row row,
+					GenomeFeatureInexactLuceneDocBuilder builder) {
 
-			displayType = InitCap.initCap(rs.getString("labelTypeName"));
+				if (row.getString("labelType").equals("AS")
+						|| row.getString("labelType").equals("AN")
+						|| row.getString("_Marker_Type_key").equals("12")) {
+					return false;
+				}
 
-			builder.setData(rs.getString("label"));
-			builder.setRaw_data(rs.getString("label"));
-			builder.setDb_key(rs.getString("_Marker_key"));
-			builder.setVocabulary(IndexConstants.MARKER_TYPE_NAME);
-			builder.setUnique_key(rs.getString("_Label_key")
-					+ IndexConstants.MARKER_TYPE_NAME);
+				String displayType = InitCap.initCap(row.getString("labelTypeName"));
 
-			// Check for Marker Ortholog Synonyms
+				builder.setData(row.getString("label"));
+				builder.setRaw_data(row.getString("label"));
+				builder.setDb_key(row.getString("_Marker_key"));
+				builder.setVocabulary(IndexConstants.MARKER_TYPE_NAME);
+				builder.setUnique_key(row.getString("_Label_key")
+						+ IndexConstants.MARKER_TYPE_NAME);
 
-			if (rs.getString("labelType").equals(IndexConstants.MARKER_SYNOYNM)
-					&& rs.getString("_OrthologOrganism_key") != null) {
-				if (!rs.getString("_Label_Status_key").equals("1")) {
-					builder.setIsCurrent("0");
+				// Check for Marker Ortholog Synonyms
 
-					/*
-					 * Putting this in for the future, currently in the database
-					 * this case doesn't exist, but it IS perfectly legal, so
-					 * may as well cover it now.
-					 */
+				if (row.getString("labelType").equals(IndexConstants.MARKER_SYNOYNM)
+						&& row.getString("_OrthologOrganism_key") != null) {
+					if (!row.getString("_Label_Status_key").equals("1")) {
+						builder.setIsCurrent("0");
 
-					builder.setDataType(builder.getDataType() + "O");
-				}
+						/*
+						 * Putting this in for the future, currently in the database
+						 * this case doesn't exist, but it IS perfectly legal, so
+						 * may as well cover it now.
+						 */
 
-				builder.setDataType(IndexConstants.ORTHOLOG_SYNONYM);
-				builder.setDisplay_type(displayType);
+						builder.setDataType(builder.getDataType() + "O");
+					}
 
-				builder.setOrganism(rs.getString("_OrthologOrganism_key"));
-			}
+					builder.setDataType(IndexConstants.ORTHOLOG_SYNONYM);
+					builder.setDisplay_type(displayType);
 
-			// We want to specially label Human and Rat Ortholog Symbols
-
-			else if (rs.getString("labelType").equals(
-					IndexConstants.ORTHOLOG_SYMBOL)) {
-				String organism = rs.getString("_OrthologOrganism_key");
-				if (organism != null && organism.equals("2")) {
-					builder.setDataType(IndexConstants.ORTHOLOG_SYMBOL_HUMAN);
-				} else if (organism != null && organism.equals("40")) {
-					builder.setDataType(IndexConstants.ORTHOLOG_SYMBOL_RAT);
-				} else {
-					builder.setDataType(rs.getString("labelType"));
+					builder.setOrganism(row.getString("_OrthologOrganism_key"));
 				}
-				builder.setDisplay_type(displayType);
-			}
-
-			// If we have an ortholog symbol or name, set its organism
-			else {
 
-				if (rs.getString("labelType").equals(IndexConstants.ORTHOLOG_SYMBOL) || rs.getString("labelType").equals(IndexConstants.ORTHOLOG_NAME)) {
-					builder.setOrganism(rs.getString("_OrthologOrganism_key"));
+				// We want to specially label Human and Rat Ortholog Symbols
+
+				else if (row.getString("labelType").equals(
+						IndexConstants.ORTHOLOG_SYMBOL)) {
+					String organism = row.getString("_OrthologOrganism_key");
+					if (organism != null && organism.equals("2")) {
+						builder.setDataType(IndexConstants.ORTHOLOG_SYMBOL_HUMAN);
+					} else if (organism != null && organism.equals("40")) {
+						builder.setDataType(IndexConstants.ORTHOLOG_SYMBOL_RAT);
+					} else {
+						builder.setDataType(row.getString("labelType"));
+					}
+					builder.setDisplay_type(displayType);
 				}
 
-				builder.setDataType(rs.getString("labelType"));
+				// If we have an ortholog symbol or name, set its organism
+				else {
 
-				if (!rs.getString("_Label_Status_key").equals("1")) {
-					builder.setIsCurrent("0");
+					if (row.getString("labelType").equals(IndexConstants.ORTHOLOG_SYMBOL) || row.getString("labelType").equals(IndexConstants.ORTHOLOG_NAME)) {
+						builder.setOrganism(row.getString("_OrthologOrganism_key"));
+					}
 
-					// We want to manufacture new label types, if the status
-					// shows that they are old. Looking at the database
-					// the only possibly things that this can hit at the moment
-					// are Marker Name and Marker Symbol
+					builder.setDataType(row.getString("labelType"));
 
-					builder.setDataType(builder.getDataType() + "O");
-				}
+					if (!row.getString("_Label_Status_key").equals("1")) {
+						builder.setIsCurrent("0");
 
-				// Manually remove the word current from two special cases.
+						// We want to manufacture new label types, if the status
+						// shows that they are old. Looking at the database
+						// the only possibly things that this can hit at the moment
+						// are Marker Name and Marker Symbol
 
-				if (displayType.equals("Current Symbol")) {
-					displayType = "Symbol";
-				}
-				if (displayType.equals("Current Name")) {
-					displayType = "Name";
-				}
-				builder.setDisplay_type(displayType);
+						builder.setDataType(builder.getDataType() + "O");
+					}
 
-			}
+					// Manually remove the word current from two special cases.
 
-			// Add the document to the stack
+					if (displayType.equals("Current Symbol")) {
+						displayType = "Symbol";
+					}
+					if (displayType.equals("Current Name")) {
+						displayType = "Name";
+					}
+					builder.setDisplay_type(displayType);
 
-			documentStore.push(builder.getDocument());
-			builder.clear();
-		}
+				}
+
+				// Add the document to the stack
+
+				return true;
+			}
+		});
 
 		// Clean up
 
@@ -224,7 +240,7 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabTerms() throws SQLException, InterruptedException {
+	private void doVocabTerms() throws Exception {
 
 		// SQL for this Subsection
 
@@ -330,7 +346,7 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabSynonyms() throws SQLException, InterruptedException {
+	private void doVocabSynonyms() throws Exception {
 
 		// SQL for this Subsection
 		// Since this is a marker related index, only bring back vocab items
@@ -496,7 +512,7 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doAlleleNomen() throws SQLException, InterruptedException {
+	private void doAlleleNomen() throws Exception {
 
 		// SQL for this Subsection
 
@@ -534,21 +550,26 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 
 		// Parse it
 
-		while (rs.next()) {
+		buildRows(rs, new BuilderStage.RowBuilder<GenomeFeatureInexactLuceneDocBuilder>() {
+			public GenomeFeatureInexactLuceneDocBuilder newBuilder() {
+				return new GenomeFeatureInexactLuceneDocBuilder();
+			}
 
-			builder.setData(rs.getString("label"));
-			builder.setRaw_data(rs.getString("label"));
-			builder.setDb_key(rs.getString("_Allele_key"));
-			builder.setUnique_key(rs.getString("_Allele_key") + rs.getString("label") + rs.getString("labelType") + IndexConstants.ALLELE_TYPE_NAME);
-			builder.setVocabulary(IndexConstants.ALLELE_TYPE_NAME);
-			builder.setDataType(rs.getString("labelType"));
-			builder.setDisplay_type(providerMap.get(rs.getString("labelType")));
+			public boolean build(BuilderStage.Row row,
+					GenomeFeatureInexactLuceneDocBuilder builder) {
+				builder.setData(row.getString("label"));
+				builder.setRaw_data(row.getString("label"));
+				builder.setDb_key(row.getString("_Allele_key"));
+				builder.setUnique_key(row.getString("_Allele_key") + row.getString("label") + row.getString("labelType") + IndexConstants.ALLELE_TYPE_NAME);
+				builder.setVocabulary(IndexConstants.ALLELE_TYPE_NAME);
+				builder.setDataType(row.getString("labelType"));
+				builder.setDisplay_type(providerMap.get(row.getString("labelType")));
 
-			// Place the document on the stack.
+				// Place the document on the stack.
 
-			documentStore.push(builder.getDocument());
-			builder.clear();
-		}
+				return true;
+			}
+		});
 
 		// Clean up
 
@@ -565,7 +586,7 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabTerm(String sql, String vocab) throws SQLException, InterruptedException {
+	private void doVocabTerm(String sql, final String vocab) throws Exception {
 
 		// Gather the data
 
@@ -575,28 +596,32 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 		log.info(" - Time taken gather " + vocab + " vocab term result set: " + executor.getTiming());
 
 		// Parse it
-		int i = 0;
 
-		while (rs_term.next()) {
-			builder.setData(rs_term.getString("term"));
-			builder.setRaw_data(rs_term.getString("term"));
-			builder.setDb_key(rs_term.getString("_Term_key"));
-			
-			String uniqueKey = rs_term.getString("_Term_key") + rs_term.getString("vocabName");
-			if (vocab.startsWith("DO")) {
-				uniqueKey = uniqueKey + "_" + vocab;
+		int i = buildRows(rs_term, new BuilderStage.RowBuilder<GenomeFeatureInexactLuceneDocBuilder>() {
+			public GenomeFeatureInexactLuceneDocBuilder newBuilder() {
+				return new GenomeFeatureInexactLuceneDocBuilder();
 			}
-			builder.setUnique_key(uniqueKey);
-			builder.setVocabulary(rs_term.getString("vocabName"));
-			builder.setDisplay_type(providerMap.get(rs_term.getString("vocabName")));
-			builder.setDataType(IndexConstants.VOCAB_TERM);
 
-			// Place the document on the stack.
+			public boolean build(BuilderStage.Row row,
+					GenomeFeatureInexactLuceneDocBuilder builder) {
+				builder.setData(row.getString("term"));
+				builder.setRaw_data(row.getString("term"));
+				builder.setDb_key(row.getString("_Term_key"));
 
-			documentStore.push(builder.getDocument());
-			builder.clear();
-			i++;
-		}
+				String uniqueKey = row.getString("_Term_key") + row.getString("vocabName");
+				if (vocab.startsWith("DO")) {
+					uniqueKey = uniqueKey + "_" + vocab;
+				}
+				builder.setUnique_key(uniqueKey);
+				builder.setVocabulary(row.getString("vocabName"));
+				builder.setDisplay_type(providerMap.get(row.getString("vocabName")));
+				builder.setDataType(IndexConstants.VOCAB_TERM);
+
+				// Place the document on the stack.
+
+				return true;
+			}
+		});
 		log.info(" - Added " + i + " documents for " + vocab);
 
 		// Clean up
@@ -611,7 +636,7 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabSynonym(String sql, String vocab) throws SQLException, InterruptedException {
+	private void doVocabSynonym(String sql, String vocab) throws Exception {
 
 		// Gather the data
 
@@ -622,22 +647,26 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 
 		// Parse it
 
-		int i = 0;
-		while (rs_syn.next()) {
-			builder.setData(rs_syn.getString("synonym"));
-			builder.setRaw_data(rs_syn.getString("synonym"));
-			builder.setDb_key(rs_syn.getString("_Term_key"));
-			builder.setUnique_key(rs_syn.getString("_Synonym_key") + IndexConstants.VOCAB_SYNONYM + rs_syn.getString("vocabName"));
-			builder.setVocabulary(rs_syn.getString("vocabName"));
-			builder.setDisplay_type(providerMap.get(rs_syn.getString("vocabName")));
-			builder.setDataType(IndexConstants.VOCAB_SYNONYM);
+		int i = buildRows(rs_syn, new BuilderStage.RowBuilder<GenomeFeatureInexactLuceneDocBuilder>() {
+			public GenomeFeatureInexactLuceneDocBuilder newBuilder() {
+				return new GenomeFeatureInexactLuceneDocBuilder();
+			}
 
-			// Place the document on the stock.
+			public boolean build(BuilderStage.Row row,
+					GenomeFeatureInexactLuceneDocBuilder builder) {
+				builder.setData(row.getString("synonym"));
+				builder.setRaw_data(row.getString("synonym"));
+				builder.setDb_key(row.getString("_Term_key"));
+				builder.setUnique_key(row.getString("_Synonym_key") + IndexConstants.VOCAB_SYNONYM + row.getString("vocabName"));
+				builder.setVocabulary(row.getString("vocabName"));
+				builder.setDisplay_type(providerMap.get(row.getString("vocabName")));
+				builder.setDataType(IndexConstants.VOCAB_SYNONYM);
 
-			documentStore.push(builder.getDocument());
-			builder.clear();
-			i++;
-		}
+				// Place the document on the stock.
+
+				return true;
+			}
+		});
 		log.info(" - Added " + i + " documents for " + vocab);
 
 		// Clean up
@@ -660,34 +689,34 @@ public class GenomeFeatureInexactGatherer extends DatabaseGatherer {
 
 		// Parse it
 
-		int place = -1;
-
 		// Since notes are compound rows in the database, we have to
-		// construct the searchable field.
+		// construct the searchable field, from each term's rows in turn.
+
+		SortedMergeJoin join = new SortedMergeJoin();
+		SortedMergeJoin.Cursor notes = join.add(rs_note, "_Term_key");
 
 		int i = 0;
-		while (rs_note.next()) {
-			if (place != rs_note.getInt(1)) {
-				if (place != -1) {
+		while (join.next()) {
+			notes.next();
+			builder.setDb_key(notes.getString("_Term_key"));
+			builder.setUnique_key(notes.getString("_Term_key") + IndexConstants.VOCAB_NOTE + notes.getString("vocabName"));
+			builder.setVocabulary(notes.getString("vocabName"));
+			builder.setDisplay_type(providerMap.get(notes.getString("vocabName")));
+			builder.setDataType(IndexConstants.VOCAB_NOTE);
+
+			do {
+				builder.appendData(notes.getString("note"));
+				builder.appendRaw_data(notes.getString("note"));
+			} while (notes.next());
 
-					// Place the document on the stack.
+			// Place the document on the stack.
 
-					documentStore.push(builder.getDocument());
-					builder.clear();
-					i++;
-				}
-				builder.setDb_key(rs_note.getString("_Term_key"));
-				builder.setUnique_key(rs_note.getString("_Term_key") + IndexConstants.VOCAB_NOTE + rs_note.getString("vocabName"));
-				builder.setVocabulary(rs_note.getString("vocabName"));
-				builder.setDisplay_type(providerMap.get(rs_note.getString("vocabName")));
-				builder.setDataType(IndexConstants.VOCAB_NOTE);
-				place = rs_note.getInt("_Term_key");
-			}
-			builder.appendData(rs_note.getString("note"));
-			builder.appendRaw_data(rs_note.getString("note"));
-			rs_note.next();
+			documentStore.push(builder.getDocument());
+			builder.clear();
+			i++;
 		}
 
+		join.close();
 		log.info(" - Added " + i + " documents for " + vocab);
 	}
 }
@@ -51,8 +51,15 @@ public class GenomeFeatureSymbolGatherer extends DatabaseGatherer {
 	 */
 
 	public void runLocal() throws Exception {
-		doMarkerSymbols();
-		doAlleleSymbols();
+		runSubsections(new Subsection("doMarkerSymbols") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureSymbolGatherer) worker).doMarkerSymbols();
+			}
+		}, new Subsection("doAlleleSymbols") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureSymbolGatherer) worker).doAlleleSymbols();
+			}
+		});
 	}
 
 	/**
@@ -62,7 +69,7 @@ public class GenomeFeatureSymbolGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doMarkerSymbols() throws SQLException, InterruptedException {
+	private void doMarkerSymbols() throws Exception {
 
 		// Gather up all the marker, allele and ortholog symbols, where the
 		// symbol is for mouse, and the marker has not been withdrawn.
@@ -76,21 +83,11 @@ public class GenomeFeatureSymbolGatherer extends DatabaseGatherer {
 		// marker symbols
 		// ortholog symbols
 
-		String GENE_LABEL_EXACT = "select ml._Marker_key, "
-				+ "ml.label, ml._OrthologOrganism_key, ml.labelType,"
-				+ " ml.labelTypeName, ml._Label_Status_key," + " ml._Label_key"
-				+ " from MRK_Label ml, MRK_Marker m"
-				+ " where  ml._Organism_key = 1 and ml._Marker_key = "
-				+ "m._Marker_key and m._Marker_Status_key = 1 "
-				+ "and ml.labelType in ('MS', 'OS') "
-				+ " and m._Marker_Type_key != 12";
+		// The rows come from the shared marker label scan, only the symbols
+		// are kept here.
 
-		// Gather the data
-
-		ResultSet rs_label = executor.executeMGD(GENE_LABEL_EXACT);
-
-
-		log.info("Time taken to gather label's result set: " + executor.getTiming());
+		ResultSet rs_label = ScanCache.open(config, executor,
+				ScanCache.MARKER_LABELS);
 
 		// Parse it
 
@@ -98,6 +95,12 @@ public class GenomeFeatureSymbolGatherer extends DatabaseGatherer {
 
 		while (rs_label.next()) {
 
+			if (!(rs_label.getString("labelType").equals("MS")
+					|| rs_label.getString("labelType").equals("OS"))
+					|| rs_label.getString("_Marker_Type_key").equals("12")) {
+				continue;
+			}
+
 			if (rs_label.getString("labelType").equals(
 					IndexConstants.ORTHOLOG_SYMBOL)) {
 				String organism = rs_label.getString("_OrthologOrganism_key");
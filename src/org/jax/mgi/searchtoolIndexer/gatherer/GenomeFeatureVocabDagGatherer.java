@@ -527,20 +527,21 @@ public class GenomeFeatureVocabDagGatherer extends DatabaseGatherer {
 	 */
 
 	private void doSingleVocab(VocabSpec vs, String vocab) throws SQLException, InterruptedException {
-		ResultSet rs_vocabTerm = executor.executeMGD(vs.getVoc_key());
 
-		ResultSet marker_display_rs = executor.executeMGD(vs.getDisplay_key());
-		marker_display_rs.next();
+		// The terms drive a merge join with the markers annotated to them
+		// and their children, all in term key order.
 
-		ResultSet child_rs = null;
+		SortedMergeJoin join = new SortedMergeJoin();
+		SortedMergeJoin.Cursor terms = join.add(executor.executeMGD(vs.getVoc_key()), "_Term_key");
+		SortedMergeJoin.Cursor markers = join.add(executor.executeMGD(vs.getDisplay_key()), "_Term_key");
+
+		SortedMergeJoin.Cursor children = null;
 
 		if (vs.getDag_key() != null) {
-			child_rs = executor.executeMGD(vs.getDag_key());
-			child_rs.next();
+			children = join.add(executor.executeMGD(vs.getDag_key()), "_AncestorObject_key");
 		}
 
 		log.info(" - Time taken gather " + vocab + " result set: " + executor.getTiming());
-		int place = -1;
 		Set<String> markerKeys = new HashSet<String>();
 
 		/*
@@ -551,85 +552,52 @@ public class GenomeFeatureVocabDagGatherer extends DatabaseGatherer {
 		 */
 
 		int count = 0;
-		while (rs_vocabTerm.next()) {
-			// Have we found a new document?
-
-			if (place != rs_vocabTerm.getInt(1)) {
-				if (place != -1) {
-
-					// We have, try to put it on the stack, waiting if
-					// the stack is busy.
-					//while (documentStore.size() > 100000) {
-					//	Thread.sleep(1);
-					//}
+		while (join.next()) {
 
-					// Place the current document on the stack.
+			// Populate the document with information pertaining
+			// specifically to the vocab term we are now on, from its first
+			// row.
 
-					documentStore.push(builder.getDocument());
-					count++;
+			terms.next();
 
-					// Clear the document creation object, to ready it for the
-					// next doc.
+			String uniqueKey = terms.getString("_Term_key") + terms.getString("vocabName");
+			if (vocab.startsWith("DO")) {
+			    uniqueKey = uniqueKey + "_" + vocab;
+			}
 
-					builder.clear();
-				}
+			builder.setDb_key(terms.getString("_Term_key"));
+			builder.setVocabulary(terms.getString("vocabName"));
+			builder.setAcc_id(terms.getString("accID"));
+			builder.setUnique_key(uniqueKey);
+			builder.setObject_type(vs.getObject_type());
 
-				// Populate the document with information pertaining
-				// specifically to the vocab term we are now on.
+			// Find all of the genes that are directly annotated to this
+			// vocabulary term, and append them into this document
 
-				String uniqueKey = rs_vocabTerm.getString("_Term_key") + rs_vocabTerm.getString("vocabName");
-				if (vocab.startsWith("DO")) {
-				    uniqueKey = uniqueKey + "_" + vocab;
-				}
-				
-				builder.setDb_key(rs_vocabTerm.getString("_Term_key"));
-				builder.setVocabulary(rs_vocabTerm.getString("vocabName"));
-				builder.setAcc_id(rs_vocabTerm.getString("accID"));
-				builder.setUnique_key(uniqueKey);
-				builder.setObject_type(vs.getObject_type());
-
-				// Set the place to be the current terms object key, when this
-				// changes we know we are on a new document.
-
-				place = (int) rs_vocabTerm.getInt("_Term_key");
-
-				// Find all of the genes that are directly annotated to this
-				// vocabulary term, and append them into this document
-				while (!marker_display_rs.isAfterLast() && marker_display_rs.getInt("_Term_key") <= place) {
-					if (marker_display_rs.getInt("_Term_key") == place) {
-						builder.appendGene_ids(marker_display_rs.getString("_Marker_key"));
-						markerKeys.add(marker_display_rs.getString("_Marker_key"));
-					}
-					marker_display_rs.next();
-				}
+			while (markers.next()) {
+				builder.appendGene_ids(markers.getString("_Marker_key"));
+				markerKeys.add(markers.getString("_Marker_key"));
+			}
 
-				// Add in all the other vocabulary terms that are children
-				// on this term in term_key order.
-				if (child_rs != null) {
-					while (!child_rs.isAfterLast() && child_rs.getInt("_AncestorObject_key") <= place) {
-						if (child_rs.getInt("_AncestorObject_key") == place) {
-							builder.appendChild_ids(child_rs.getString("_DescendentObject_key"));
-						}
-						child_rs.next();
+			// Add in all the other vocabulary terms that are children
+			// on this term in term_key order.
 
-					}
+			if (children != null) {
+				while (children.next()) {
+					builder.appendChild_ids(children.getString("_DescendentObject_key"));
 				}
 			}
-		}
 
-		// Add the Final Document, that the loop kicked out on.
+			// Place the current document on the stack.
 
-		documentStore.push(builder.getDocument());
-		builder.clear();
-		count++;
+			documentStore.push(builder.getDocument());
+			builder.clear();
+			count++;
+		}
 
 		// Clean up
 
-		rs_vocabTerm.close();
-		marker_display_rs.close();
-		if (child_rs != null) {
-			child_rs.close();
-		}
+		join.close();
 		log.info(" - Processed " + count + " " + vocab + " terms for " + markerKeys.size() + " markers");
 	}
 
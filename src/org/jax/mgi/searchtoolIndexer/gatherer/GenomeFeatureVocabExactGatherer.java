@@ -53,9 +53,19 @@ public class GenomeFeatureVocabExactGatherer extends DatabaseGatherer {
 	}
 
 	public void runLocal() throws Exception {
-		doVocabTerms();
-		doVocabSynonyms();
-		doVocabNotes();
+		runSubsections(new Subsection("doVocabTerms") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureVocabExactGatherer) worker).doVocabTerms();
+			}
+		}, new Subsection("doVocabSynonyms") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureVocabExactGatherer) worker).doVocabSynonyms();
+			}
+		}, new Subsection("doVocabNotes") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((GenomeFeatureVocabExactGatherer) worker).doVocabNotes();
+			}
+		});
 	}
 
 	/**
@@ -436,34 +446,34 @@ public class GenomeFeatureVocabExactGatherer extends DatabaseGatherer {
 
 		// Parse it
 
-		int place = -1;
+		SortedMergeJoin join = new SortedMergeJoin();
+		SortedMergeJoin.Cursor notes = join.add(rs_note, "_Term_key");
 		int count = 0;
 
-		while (rs_note.next()) {
-			count++;
-			if (place != rs_note.getInt("_Term_key")) {
-				if (place != -1) {
-					builder.setRaw_data(builder.getData());
-
-					// Place the document on the stack.
-
-					documentStore.push(builder.getDocument());
-					builder.clear();
-				}
-
-				builder.setDb_key(rs_note.getString("_Term_key"));
-				builder.setVocabulary(rs_note.getString("vocabName"));
-				builder.setDataType(IndexConstants.VOCAB_NOTE);
-				builder.setUnique_key(rs_note.getString("_Term_key") + IndexConstants.VOCAB_NOTE + rs_note.getString("vocabName"));
-				builder.setDisplay_type(providerMap.get(rs_note.getString("vocabName")));
-				place = rs_note.getInt("_Term_key");
-			}
-			builder.appendData(rs_note.getString("note"));
+		while (join.next()) {
+			notes.next();
+			builder.setDb_key(notes.getString("_Term_key"));
+			builder.setVocabulary(notes.getString("vocabName"));
+			builder.setDataType(IndexConstants.VOCAB_NOTE);
+			builder.setUnique_key(notes.getString("_Term_key") + IndexConstants.VOCAB_NOTE + notes.getString("vocabName"));
+			builder.setDisplay_type(providerMap.get(notes.getString("vocabName")));
+
+			do {
+				count++;
+				builder.appendData(notes.getString("note"));
+			} while (notes.next());
+
+			builder.setRaw_data(builder.getData());
+
+			// Place the document on the stack.
+
+			documentStore.push(builder.getDocument());
+			builder.clear();
 		}
 
 		// Clean up
 
-		rs_note.close();
+		join.close();
 		log.info("Processed " + count + " " + vocab + " notes");
 	}
 }
@@ -1,10 +1,18 @@
 package org.jax.mgi.searchtoolIndexer.gatherer;
 
+import java.io.StringReader;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.index.IndexReader;
 import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.NonIDTokenLuceneDocBuilder;
+import org.jax.mgi.searchtoolIndexer.util.TextNormalizer;
+import org.jax.mgi.searchtoolIndexer.util.TokenSet;
 import org.jax.mgi.shr.config.IndexCfg;
+import org.jax.mgi.shr.searchtool.IndexConstants;
+import org.jax.mgi.shr.searchtool.MGITokenAnalyzer;
 
 /**
  * This class is responsible for gathering up every unique token that we have in
@@ -14,6 +22,14 @@ import org.jax.mgi.shr.config.IndexCfg;
  * 
  * This information is then used to build the nonIDToken index.
  * 
+ * When NONID_TOKEN_DEDUP is set, which it is by default, each piece of text
+ * is split into tokens by the index's own analyzer as it is gathered, and
+ * a document is only pushed for tokens that haven't been seen before. The
+ * tokens seen so far are kept in a TokenSet shared by every subsection, so
+ * the index ends up with one document per distinct token, rather than one
+ * for every label, term, synonym and note. A build resumed from a checkpoint
+ * starts the set off with the tokens already in the index.
+ * 
  * @author mhall
  * 
  * @has An instance of the IndexCfg object, which is used to setup this object.
@@ -36,18 +52,134 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 	// Class Variables
 	// Instantiate the single doc builder that this object will use.
 
-	private NonIDTokenLuceneDocBuilder	builder	= new NonIDTokenLuceneDocBuilder();
+	private NonIDTokenLuceneDocBuilder	builder		= new NonIDTokenLuceneDocBuilder();
+
+	// Strips the allele markup from labels.
+	private TextNormalizer				normalizer	= new TextNormalizer();
+
+	// Whether to push each distinct token once, rather than every text.
+	private boolean						dedup		= false;
+
+	// The tokens already pushed, shared by every subsection.
+	private TokenSet					tokens		= null;
+
+	private MGITokenAnalyzer			analyzer	= new MGITokenAnalyzer();
+	private Token						token		= new Token();
 
 	public NonIDTokenGatherer(IndexCfg config) {
 		super(config);
+		try {
+			if (config.get("NONID_TOKEN_DEDUP", "true").equals("true")) {
+				dedup = true;
+				builder.setPreAnalyzed(true);
+			}
+		} catch (Exception e) {
+			log.error(e);
+		}
+	}
+
+	/*
+	 * Add the tokens already written to the index being resumed. The stored
+	 * values are read, rather than the terms, since the documents rolled
+	 * back to the checkpoint still have their terms until the index is
+	 * optimized.
+	 */
+
+	private void loadIndexedTokens() throws Exception {
+		IndexReader reader = IndexReader.open(checkpoint.getIndexDir());
+		try {
+			for (int i = 0; i < reader.maxDoc(); i++) {
+				if (!reader.isDeleted(i)) {
+					tokens.add(reader.document(i).get(IndexConstants.COL_DATA));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		log.info("Loaded " + tokens.size() + " tokens from the index.");
+	}
+
+	/**
+	 * Share the tokens already pushed with the subsection workers.
+	 */
+
+	protected DatabaseGatherer newWorker() throws Exception {
+		NonIDTokenGatherer worker = (NonIDTokenGatherer) super.newWorker();
+		worker.tokens = tokens;
+		return worker;
 	}
 
 	public void runLocal() throws Exception {
-		doMarkerLabels();
-		doVocabTerm();
-		doVocabSynonym();
-		doVocabNotes();
-		doAlleleSynonym();
+		if (dedup) {
+			tokens = new TokenSet(1 << 20);
+			if (checkpoint != null && checkpoint.isResumed()) {
+				loadIndexedTokens();
+			}
+		}
+
+		runSubsections(new Subsection("doMarkerLabels") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((NonIDTokenGatherer) worker).doMarkerLabels();
+			}
+		}, new Subsection("doVocabTerm") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((NonIDTokenGatherer) worker).doVocabTerm();
+			}
+		}, new Subsection("doVocabSynonym") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((NonIDTokenGatherer) worker).doVocabSynonym();
+			}
+		}, new Subsection("doVocabNotes") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((NonIDTokenGatherer) worker).doVocabNotes();
+			}
+		}, new Subsection("doAlleleSynonym") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((NonIDTokenGatherer) worker).doAlleleSynonym();
+			}
+		});
+
+		if (dedup) {
+			log.info("Pushed " + tokens.size() + " distinct tokens, using "
+					+ tokens.getMemoryUsed() / 1024 + " KB.");
+		}
+	}
+
+	/**
+	 * Push a piece of text, either as a document of its own, or as a
+	 * document for each of its tokens that hasn't been pushed yet.
+	 * 
+	 * @param text
+	 * @throws Exception
+	 */
+
+	private void addText(String text) throws Exception {
+		if (!dedup) {
+			builder.setData(text);
+			documentStore.push(builder.getDocument());
+			builder.clear();
+			return;
+		}
+
+		if (text == null) {
+			return;
+		}
+
+		TokenStream stream = analyzer.tokenStream(IndexConstants.COL_DATA,
+				new StringReader(text));
+		try {
+			for (Token t = stream.next(token); t != null; t = stream
+					.next(token)) {
+				if (tokens.add(t.termBuffer(), 0, t.termLength())) {
+					builder.setData(new String(t.termBuffer(), 0, t
+							.termLength()));
+					documentStore.push(builder.getDocument());
+					builder.clear();
+				}
+			}
+		} finally {
+			stream.close();
+		}
 	}
 
 	/**
@@ -57,43 +189,28 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doMarkerLabels() throws SQLException, InterruptedException {
+	private void doMarkerLabels() throws Exception {
 
 		// SQL for this Subsection
 
 		// Gather up marker key, label, label type, organism key, label status
 		// and label type name where the marker is not withdrawn and the
-		// organism is mouse.
-
-		String GEN_MARKER_LABEL = "select ml._Marker_key, ml.label, "
-				+ "ml.labelType, ml._OrthologOrganism_key, "
-				+ "ml._Label_Status_key, ml.labelTypeName"
-				+ " from MRK_Label ml, MRK_Marker m"
-				+ " where ml._Organism_key = 1 and ml._Marker_key = "
-				+ "m._Marker_key and m._Marker_Status_key = 1 ";
-
-		// Gather the data
+		// organism is mouse.  These come from the shared marker label scan.
 
-		ResultSet rs = executor.executeMGD(GEN_MARKER_LABEL);
-
-		log.info("Time taken gather marker label result set "
-				+ executor.getTiming());
+		ResultSet rs = ScanCache.open(config, executor,
+				ScanCache.MARKER_LABELS);
 
 		// Parse it
 
 		while (rs.next()) {
 
-			builder.setData(rs.getString("label"));
-
 			// Place the document on the stack.
 
-			documentStore.push(builder.getDocument());
+			addText(rs.getString("label"));
 
 			if (rs.getString("labelType").equals("AS")) {
-				builder.setData(rs.getString("label").replaceAll("<", "").replaceAll(">", ""));
-				documentStore.push(builder.getDocument());
+				addText(normalizer.stripAngleBrackets(rs.getString("label")));
 			}
-			builder.clear();
 		}
 
 		// Clean up
@@ -110,34 +227,30 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabTerm() throws SQLException, InterruptedException {
+	private void doVocabTerm() throws Exception {
 
 		// SQL for this Subsection
 
 		// Gather up the vocabulary terms in all vocabularies but AD
 		// This includes GO, MP, PIRSF, Interpro and DO (Disease Ontology).
 
-		String VOC_TERM_KEY = "select _Term_key, term, vocabName"
-				+ " from VOC_Term_View"
-				+ " where isObsolete != 1 and _Vocab_key in (125, 4, 5, 8, 46, 90, 91)";
+		// Gather the data, from the shared scan.
 
-		// Gather the data
-
-		ResultSet rs_term = executor.executeMGD(VOC_TERM_KEY);
-
-		log.info("Time taken gather vocab term result set: "
-				+ executor.getTiming());
+		ResultSet rs_term = ScanCache.open(config, executor,
+				ScanCache.VOCAB_TERMS);
 
 		// Parse it
 
 		while (rs_term.next()) {
 
-			builder.setData(rs_term.getString("term"));
+			// Strains are not tokenized.
+			if (rs_term.getString("_Vocab_key").equals("-1")) {
+				continue;
+			}
 
 			// Place the document on the stack.
 
-			documentStore.push(builder.getDocument());
-			builder.clear();
+			addText(rs_term.getString("term"));
 		}
 
 		// Clean up
@@ -154,7 +267,7 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabSynonym() throws SQLException, InterruptedException {
+	private void doVocabSynonym() throws Exception {
 
 		// SQL for this Subsection
 
@@ -162,29 +275,23 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 		// This list currently includes GO, MP, Disease Ontology (DO), PIRSF, InterPro, EMAPA and
 		// EMAPS
 
-		String VOC_SYN_KEY = "select tv._Term_key, s.synonym, tv.vocabName"
-				+ " from VOC_Term_View tv, MGI_Synonym s"
-				+ " where tv._Term_key = s._Object_key and tv.isObsolete != 1"
-				+ " and tv._Vocab_key in (125, 4, 5, 8, 46, 90, 91)"
-				+ " and s._MGIType_key = 13 ";
-
-		// Gather the data
+		// Gather the data, from the shared scan.
 
-		ResultSet rs_syn = executor.executeMGD(VOC_SYN_KEY);
-
-		log.info("Time taken gather vocab synonym result set: "
-				+ executor.getTiming());
+		ResultSet rs_syn = ScanCache.open(config, executor,
+				ScanCache.VOCAB_SYNONYMS);
 
 		// Parse it
 
 		while (rs_syn.next()) {
 
-			builder.setData(rs_syn.getString("synonym"));
+			// Strains are not tokenized.
+			if (rs_syn.getString("_Vocab_key").equals("-1")) {
+				continue;
+			}
 
 			// Place the document on the stack.
 
-			documentStore.push(builder.getDocument());
-			builder.clear();
+			addText(rs_syn.getString("synonym"));
 		}
 
 		// Clean up
@@ -200,7 +307,7 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabNotes() throws SQLException, InterruptedException {
+	private void doVocabNotes() throws Exception {
 
 		// SQL for this subsection, please note that the order by clause is
 		// important for this sql statement.
@@ -210,41 +317,47 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 		// This list currently includes GO, MP, PIRSF, InterPro, Disease Ontology (DO), EMAPA,
 		// and EMAPS
 
-		String VOC_NOTE_KEY = "select tv._Term_key, tv.note, tv.vocabName "
-				+ " from VOC_Term_View tv "
-				+ " where tv.note is not null"
-				+ " and tv.isObsolete != 1 "
-				+ " and tv._Vocab_key in (125, 4, 5, 8, 46, 90, 91)"
-				+ " order by tv._Term_key";
+		// Gather the data, from the shared scan.
 
-		// Gather the data
-
-		ResultSet rs_note = executor.executeMGD(VOC_NOTE_KEY);
-
-		log.info("Time taken gather vocab notes/definition result set: "
-				+ executor.getTiming());
+		ResultSet rs_note = ScanCache.open(config, executor,
+				ScanCache.VOCAB_NOTES);
 
 		// Parse it
 
-		int place = -1;
+		StringBuilder note = new StringBuilder();
 
 		// Since notes are compound rows in the database, we have to
-		// contruct the searchable field.
+		// contruct the searchable field.  A word can be split across two
+		// rows, so the whole note is put together before it is tokenized.
 
-		while (rs_note.next()) {
-			if (place != rs_note.getInt(1)) {
-				if (place != -1) {
+		SortedMergeJoin join = new SortedMergeJoin();
+		SortedMergeJoin.Cursor notes = join.add(rs_note, "_Term_key");
 
-					// Place the document on the stack.
+		while (join.next()) {
+			boolean found = false;
 
-					documentStore.push(builder.getDocument());
-					builder.clear();
+			while (notes.next()) {
+
+				// Strains are not tokenized.
+				if (notes.getString("_Vocab_key").equals("-1")) {
+					continue;
 				}
-				place = rs_note.getInt("_Term_key");
+
+				found = true;
+				if (notes.getString("note") != null) {
+					note.append(notes.getString("note"));
+				}
+			}
+
+			// Place the document on the stack.
+
+			if (found) {
+				addText(note.toString());
+				note.setLength(0);
 			}
-			builder.appendData(rs_note.getString("note"));
 		}
 
+		join.close();
 		log.info("Done Vocab Notes/Definitions!");
 	}
 
@@ -255,8 +368,7 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doAlleleSynonym()
-			throws SQLException, InterruptedException {
+	private void doAlleleSynonym() throws Exception {
 
 		// SQL for this Subsection
 
@@ -282,18 +394,13 @@ public class NonIDTokenGatherer extends DatabaseGatherer {
 
 		while (rs.next()) {
 
-			builder.setData(rs.getString("label"));
-
 			// Place the document on the stack.
 
-			documentStore.push(builder.getDocument());
+			addText(rs.getString("label"));
 
 			// Place another copy of the label w/o the allele markups.
 
-			builder.setData(rs.getString("label").replaceAll("<", "").replaceAll(">", ""));
-			documentStore.push(builder.getDocument());
-
-			builder.clear();
+			addText(normalizer.stripAngleBrackets(rs.getString("label")));
 		}
 
 		// Clean up
@@ -67,22 +67,53 @@ public class OtherDisplayGatherer extends DatabaseGatherer {
 	/**
 	 * This method encapsulates the list of tasks that need to be completed in
 	 * order to gather the information for the OtherDisplay index. Once it is
-	 * invoked, each object type will be collected in sequence, until all the
-	 * indexes information is gathered, at which point it sets the gathering
-	 * state to complete in the shared document stack, and exits.
+	 * invoked, each object type will be collected as its own subsection, until
+	 * all the indexes information is gathered, at which point it sets the
+	 * gathering state to complete in the shared document stack, and exits.
 	 */
 
 	public void runLocal() throws Exception {
-		doOrthologs();
-		doProbes();
-		doAssays();
-		doReferences();
-		doSequences();
-		doGenotypes();
-		doAntibodies();
-		doExperiments();
-		doImages();
-		doAMA();
+		runSubsections(new Subsection("doOrthologs") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doOrthologs();
+			}
+		}, new Subsection("doProbes") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doProbes();
+			}
+		}, new Subsection("doAssays") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doAssays();
+			}
+		}, new Subsection("doReferences") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doReferences();
+			}
+		}, new Subsection("doSequences") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doSequences();
+			}
+		}, new Subsection("doGenotypes") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doGenotypes();
+			}
+		}, new Subsection("doAntibodies") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doAntibodies();
+			}
+		}, new Subsection("doExperiments") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doExperiments();
+			}
+		}, new Subsection("doImages") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doImages();
+			}
+		}, new Subsection("doAMA") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherDisplayGatherer) worker).doAMA();
+			}
+		});
 	}
 
 	// get a mapping from each (String) genotype key to a String with the
@@ -4,6 +4,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
 
@@ -58,7 +59,7 @@ public class OtherExactGatherer extends DatabaseGatherer {
 
 	public OtherExactGatherer(IndexCfg config) {
 		super(config);
-		phm = new ProviderHashMap(config);
+		phm = ProviderHashMap.getInstance(config);
 	}
 
 	/**
@@ -69,23 +70,101 @@ public class OtherExactGatherer extends DatabaseGatherer {
 
 	public void runLocal() throws Exception {
 
+		List<Subsection> subsections = new ArrayList<Subsection>();
+
+		// The reference and sequence scans return millions of rows, so they
+		// are split by accession key into SCAN_PARTITIONS subsections.
+		List<KeyRange> ranges = keyRanges("ACC_Accession", "_Accession_key");
+
 		//Generic Searches
-		doAccessionByType(IndexConstants.OTHER_REFERENCE, "1", true);
-		doAccessionByType(IndexConstants.OTHER_PROBE, "3", true);
-		doAccessionByType(IndexConstants.OTHER_ASSAY, "8", false);
-		doAccessionByType(IndexConstants.OTHER_ANTIBODY, "6", false);
-		doAccessionByType(IndexConstants.OTHER_EXPERIMENT, "4", false);
-		doAccessionByType(IndexConstants.OTHER_IMAGE, "9", false);		
+		for (KeyRange range : ranges) {
+			subsections.add(new AccessionSubsection(IndexConstants.OTHER_REFERENCE, "1", true, range));
+		}
+		subsections.add(new AccessionSubsection(IndexConstants.OTHER_PROBE, "3", true, KeyRange.ALL));
+		subsections.add(new AccessionSubsection(IndexConstants.OTHER_ASSAY, "8", false, KeyRange.ALL));
+		subsections.add(new AccessionSubsection(IndexConstants.OTHER_ANTIBODY, "6", false, KeyRange.ALL));
+		subsections.add(new AccessionSubsection(IndexConstants.OTHER_EXPERIMENT, "4", false, KeyRange.ALL));
+		subsections.add(new AccessionSubsection(IndexConstants.OTHER_IMAGE, "9", false, KeyRange.ALL));
 
 		// Custom Searches
-		doOrthologs();
-		doSequences();
-		doSequencesByProbe();
-		doAMA();
-		doGenotypes();
+		subsections.add(new Subsection("doOrthologs") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherExactGatherer) worker).doOrthologs();
+			}
+		});
+		for (KeyRange range : ranges) {
+			subsections.add(new SequenceSubsection(range));
+		}
+		subsections.add(new Subsection("doSequencesByProbe") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherExactGatherer) worker).doSequencesByProbe();
+			}
+		});
+		subsections.add(new Subsection("doAMA") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherExactGatherer) worker).doAMA();
+			}
+		});
+		subsections.add(new Subsection("doGenotypes") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((OtherExactGatherer) worker).doGenotypes();
+			}
+		});
+
+		runSubsections(subsections);
+	}
+
+	/**
+	 * Runs doAccessionByType for a single MGI type, over one range of
+	 * accession keys.
+	 */
+
+	private static class AccessionSubsection extends Subsection {
+
+		private String mgiTypeKey;
+		private String mgiTypeKeyId;
+		private boolean setProvider;
+		private KeyRange range;
+
+		public AccessionSubsection(String mgiTypeKey, String mgiTypeKeyId,
+				boolean setProvider, KeyRange range) {
+			super("doAccessionByType " + mgiTypeKey
+					+ (range == KeyRange.ALL ? "" : " " + range));
+			this.mgiTypeKey = mgiTypeKey;
+			this.mgiTypeKeyId = mgiTypeKeyId;
+			this.setProvider = setProvider;
+			this.range = range;
+		}
+
+		protected void run(DatabaseGatherer worker) throws Exception {
+			((OtherExactGatherer) worker).doAccessionByType(mgiTypeKey,
+					mgiTypeKeyId, setProvider, range);
+		}
+	}
+
+	/**
+	 * Runs doSequences over one range of accession keys.
+	 */
+
+	private static class SequenceSubsection extends Subsection {
+
+		private KeyRange range;
+
+		public SequenceSubsection(KeyRange range) {
+			super("doSequences" + (range == KeyRange.ALL ? "" : " " + range));
+			this.range = range;
+		}
+
+		protected void run(DatabaseGatherer worker) throws Exception {
+			((OtherExactGatherer) worker).doSequences(range);
+		}
+	}
+
+	public void doAccessionByType(String mgiTypeKey, String mgiTypeKeyId, boolean setProvider) throws Exception {
+		doAccessionByType(mgiTypeKey, mgiTypeKeyId, setProvider, KeyRange.ALL);
 	}
 
-	public void doAccessionByType(String mgiTypeKey, String mgiTypeKeyId, boolean setProvider) throws SQLException, InterruptedException {
+	public void doAccessionByType(String mgiTypeKey, String mgiTypeKeyId, boolean setProvider, KeyRange range) throws Exception {
 
 		// If this query does not suit your needs create a custom query.
 		String OTHER_GENERIC_SEARCH = "SELECT a._Accession_key, "
@@ -93,7 +172,8 @@ public class OtherExactGatherer extends DatabaseGatherer {
 			+ "' as _MGIType_key, a.preferred, a._LogicalDB_key"
 			+ " FROM ACC_Accession a"
 			+ " where a.private != 1 "
-			+ " and a._MGIType_key = " + mgiTypeKeyId;
+			+ " and a._MGIType_key = " + mgiTypeKeyId
+			+ range.toSql("a._Accession_key");
 
 		ResultSet rs_ref = executor.executeMGD(OTHER_GENERIC_SEARCH);
 		
@@ -102,25 +182,7 @@ public class OtherExactGatherer extends DatabaseGatherer {
 
 		// Parse it
 
-		while (rs_ref.next()) {
-
-			builder.setType(rs_ref.getString("_MGIType_key"));
-			builder.setData(rs_ref.getString("accID"));
-			builder.setDb_key(rs_ref.getString("_Object_key"));
-			builder.setAccessionKey(rs_ref.getString("_Accession_key"));
-			builder.setPreferred(rs_ref.getString("preferred"));
-			if(setProvider) builder.setProvider(phm.get(rs_ref.getString("_LogicalDB_key")));
-
-			// Place the document on the stack.
-
-			documentStore.push(builder.getDocument());
-			total++;
-			if (total >= output_threshold) {
-				log.debug("We have now gathered " + total + " documents!");
-				output_threshold += output_incrementer;
-			}
-			builder.clear();
-		}
+		addToTotal(buildRows(rs_ref, accessionRows(setProvider)));
 
 		// Clean up
 
@@ -132,6 +194,56 @@ public class OtherExactGatherer extends DatabaseGatherer {
 
 
 
+	/**
+	 * Builds a document from each row of an accession id query, which must
+	 * return the _Accession_key, accID, _Object_key, _MGIType_key, preferred
+	 * and _LogicalDB_key columns.
+	 * 
+	 * @param setProvider
+	 *            Whether to set the provider from the logical database.
+	 * @return RowBuilder
+	 */
+
+	private BuilderStage.RowBuilder<OtherExactLuceneDocBuilder> accessionRows(
+			final boolean setProvider) {
+		return new BuilderStage.RowBuilder<OtherExactLuceneDocBuilder>() {
+			public OtherExactLuceneDocBuilder newBuilder() {
+				return new OtherExactLuceneDocBuilder();
+			}
+
+			public boolean build(BuilderStage.Row row,
+					OtherExactLuceneDocBuilder builder) {
+				builder.setType(row.getString("_MGIType_key"));
+				builder.setData(row.getString("accID"));
+				builder.setDb_key(row.getString("_Object_key"));
+				builder.setAccessionKey(row.getString("_Accession_key"));
+				builder.setPreferred(row.getString("preferred"));
+				if (setProvider) {
+					builder.setProvider(phm.get(row.getString("_LogicalDB_key")));
+				}
+
+				// Place the document on the stack.
+
+				return true;
+			}
+		};
+	}
+
+	/*
+	 * Count documents towards the running total, logging each time it passes
+	 * another output_incrementer of them.
+	 */
+
+	private synchronized void addToTotal(int count) {
+		total += count;
+		if (total >= output_threshold) {
+			log.debug("We have now gathered " + total + " documents!");
+			while (output_threshold <= total) {
+				output_threshold += output_incrementer;
+			}
+		}
+	}
+
 	/**
 	 * Gather the genotype data.
 	 * 
@@ -139,7 +251,7 @@ public class OtherExactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doGenotypes() throws SQLException, InterruptedException {
+	private void doGenotypes() throws Exception {
 
 		// SQL for this Subsection
 
@@ -167,46 +279,26 @@ public class OtherExactGatherer extends DatabaseGatherer {
 
 		log.info("Time taken gather genotype data set: " + executor.getTiming());
 
-		double startCount = total;
-
 		// Parse it
 
-		while (rs_geno.next()) {
-
-			builder.setType(rs_geno.getString("_MGIType_key"));
-			builder.setData(rs_geno.getString("accID"));
-			builder.setDb_key(rs_geno.getString("_Object_key"));
-			builder.setAccessionKey(rs_geno.getString("_Accession_key"));
-			builder.setPreferred(rs_geno.getString("preferred"));
-			builder.setProvider(phm.get(rs_geno.getString("_LogicalDB_key")));
-
-			// Place the document on the stack.
-
-			documentStore.push(builder.getDocument());
-			builder.clear();
-			total++;
-			if (total >= output_threshold) {
-				log.debug("We have now gathered " + total + " documents!");
-				output_threshold += output_incrementer;
-			}
-
-		}
+		int count = buildRows(rs_geno, accessionRows(true));
+		addToTotal(count);
 
 		// Clean up
 
-		log.info("Done creating " + (total - startCount)
-			+ " documents for genotypes!");
+		log.info("Done creating " + count + " documents for genotypes!");
 		rs_geno.close();
 	}
 
 	/**
-	 * Gather the sequence data.
+	 * Gather the sequence data, for one range of accession keys.
 	 * 
+	 * @param range
 	 * @throws SQLException
 	 * @throws InterruptedException
 	 */
 
-	private void doSequences() throws SQLException, InterruptedException {
+	private void doSequences(KeyRange range) throws Exception {
 
 		// SQL for this Subsection
 
@@ -219,7 +311,8 @@ public class OtherExactGatherer extends DatabaseGatherer {
 				+ " FROM ACC_Accession a, SEQ_Sequence s"
 				+ " where a.private != 1 and a._MGIType_key = 19 and"
 				+ " a._Object_key = s._Sequence_key and"
-				+ " s._Organism_key = 1";
+				+ " s._Organism_key = 1"
+				+ range.toSql("a._Accession_key");
 
 		// Gather the data.
 
@@ -230,26 +323,7 @@ public class OtherExactGatherer extends DatabaseGatherer {
 
 		// Parse it
 
-		while (rs_seq.next()) {
-
-			builder.setType(rs_seq.getString("_MGIType_key"));
-			builder.setData(rs_seq.getString("accID"));
-			builder.setDb_key(rs_seq.getString("_Object_key"));
-			builder.setAccessionKey(rs_seq.getString("_Accession_key"));
-			builder.setPreferred(rs_seq.getString("preferred"));
-			builder.setProvider(phm.get(rs_seq.getString("_LogicalDB_key")));
-
-			// Place the document on the stack.
-
-			documentStore.push(builder.getDocument());
-			builder.clear();
-			total++;
-			if (total >= output_threshold) {
-				log.debug("We have now gathered " + total + " documents!");
-				output_threshold += output_incrementer;
-			}
-
-		}
+		addToTotal(buildRows(rs_seq, accessionRows(true)));
 
 		// Clean up
 
@@ -265,8 +339,7 @@ public class OtherExactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doSequencesByProbe()
-			throws SQLException, InterruptedException {
+	private void doSequencesByProbe() throws Exception {
 
 		// SQL for this Subsection
 
@@ -295,27 +368,7 @@ public class OtherExactGatherer extends DatabaseGatherer {
 
 		// Parse it
 
-		while (rs_seq_by_probe.next()) {
-
-			builder.setType(rs_seq_by_probe.getString("_MGIType_key"));
-			builder.setData(rs_seq_by_probe.getString("accID"));
-			builder.setDb_key(rs_seq_by_probe.getString("_Object_key"));
-			builder.setAccessionKey(rs_seq_by_probe.getString("_Accession_key"));
-			builder.setPreferred(rs_seq_by_probe.getString("preferred"));
-			builder.setProvider(phm.get(rs_seq_by_probe.getString("_LogicalDB_key")));
-
-			// Place the document on the stack.
-
-			documentStore.push(builder.getDocument());
-			builder.clear();
-
-			total++;
-			if (total >= output_threshold) {
-				log.debug("We have now gathered " + total + " documents!");
-				output_threshold += output_incrementer;
-			}
-
-		}
+		addToTotal(buildRows(rs_seq_by_probe, accessionRows(true)));
 
 		// Clean up
 
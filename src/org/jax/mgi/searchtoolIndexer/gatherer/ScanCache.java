@@ -0,0 +1,212 @@
+package org.jax.mgi.searchtoolIndexer.gatherer;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+import org.jax.mgi.searchtoolIndexer.util.RowFile;
+import org.jax.mgi.searchtoolIndexer.util.RowResultSet;
+import org.jax.mgi.searchtoolIndexer.util.SQLExecutor;
+import org.jax.mgi.searchtoolIndexer.util.StrainUtils;
+import org.jax.mgi.shr.config.IndexCfg;
+
+/**
+ * The ScanCache holds the base queries that several gatherers read from.
+ * Each scan is a superset of the rows its gatherers need, with enough
+ * columns for them to filter out the rest themselves.
+ *
+ * When SCAN_CACHE_DIR is configured, the first gatherer to ask for a scan
+ * runs its query once and saves the rows to a RowFile in that directory.
+ * Every later request in the same JVM, including from other index builds,
+ * replays the rows from that file. Gatherers that ask while the scan is
+ * still being saved wait for it to finish. The files are removed when the
+ * JVM exits.
+ *
+ * Without SCAN_CACHE_DIR every request simply runs the query.
+ *
+ * @author mhall
+ *
+ * @has A map of scan name -> SQL, and of scan name -> the saved rows.
+ *
+ * @does Runs each base query at most once per JVM, and hands out its rows
+ *       as a ResultSet.
+ *
+ */
+
+public class ScanCache {
+
+	/**
+	 * Labels for current mouse markers, transgenes included, along with the
+	 * marker type so that callers can leave them out.
+	 */
+
+	public static final String	MARKER_LABELS	= "markerLabels";
+
+	/**
+	 * Terms for the non AD vocabularies, along with the strains. Strains
+	 * have a _Vocab_key of -1.
+	 */
+
+	public static final String	VOCAB_TERMS		= "vocabTerms";
+
+	/**
+	 * Synonyms for the non AD vocabularies, along with the strain synonyms.
+	 * Strains have a _Vocab_key of -1.
+	 */
+
+	public static final String	VOCAB_SYNONYMS	= "vocabSynonyms";
+
+	/**
+	 * Notes for the non AD vocabularies, ordered by _Term_key.
+	 */
+
+	public static final String	VOCAB_NOTES		= "vocabNotes";
+
+	// The vocabularies in the vocab scans. The vocab indexes leave out
+	// vocabulary 91, only the token index uses it.
+	private static final String	VOCABS			= "(125, 4, 5, 8, 46, 90, 91)";
+
+	private static HashMap<String, String>	scans	= new HashMap<String, String>();
+
+	private static HashMap<String, FutureTask<RowFile>>	saved	= new HashMap<String, FutureTask<RowFile>>();
+
+	private static Logger		log				= Logger.getLogger(ScanCache.class.getName());
+
+	static {
+		scans.put(MARKER_LABELS, "select ml._Marker_key, ml.label, "
+				+ "ml.labelType, ml._OrthologOrganism_key, "
+				+ "ml._Label_Status_key, ml.labelTypeName, ml._Label_key, "
+				+ "m._Marker_Type_key"
+				+ " from MRK_Label ml, MRK_Marker m"
+				+ " where ml._Organism_key = 1 and ml._Marker_key = "
+				+ "m._Marker_key and m._Marker_Status_key = 1");
+
+		scans.put(VOCAB_TERMS, StrainUtils.withStrains
+				+ " select _Term_key, term, vocabName, _Vocab_key"
+				+ " from VOC_Term_View"
+				+ " where isObsolete != 1 and _Vocab_key in " + VOCABS
+				+ " union "
+				+ "select t._Strain_key, s.strain, 'Strain', -1 "
+				+ "from " + StrainUtils.strainTempTable + " t, prb_strain s "
+				+ "where t._Strain_key = s._Strain_key");
+
+		scans.put(VOCAB_SYNONYMS, StrainUtils.withStrains
+				+ " select tv._Term_key, s.synonym, tv.vocabName, tv._Vocab_key"
+				+ " from VOC_Term_View tv, MGI_Synonym s"
+				+ " where tv._Term_key = s._Object_key and tv.isObsolete != 1"
+				+ " and tv._Vocab_key in " + VOCABS
+				+ " and s._MGIType_key = 13 "
+				+ "union "
+				+ "select s._Object_key, s.synonym, 'Strain', -1 "
+				+ "from mgi_synonym s "
+				+ "inner join mgi_synonymtype t on (s._SynonymType_key = t._SynonymType_key and t._MGIType_key = 10) "
+				+ "inner join " + StrainUtils.strainTempTable + " ps on (s._Object_key = ps._Strain_key)");
+
+		scans.put(VOCAB_NOTES, "select tv._Term_key, tv.note, tv.vocabName,"
+				+ " tv._Vocab_key"
+				+ " from VOC_Term_View tv "
+				+ " where tv.note is not null"
+				+ " and tv.isObsolete != 1"
+				+ " and tv._Vocab_key in " + VOCABS
+				+ " order by tv._Term_key");
+	}
+
+	/**
+	 * Get the rows of a scan, running its query through the given executor
+	 * if nobody has yet.
+	 *
+	 * @param config
+	 * @param executor
+	 * @param scan
+	 *            One of the scan names defined in this class.
+	 * @return ResultSet
+	 * @throws Exception
+	 */
+
+	public static ResultSet open(IndexCfg config, final SQLExecutor executor,
+			final String scan) throws Exception {
+
+		final String sql = scans.get(scan);
+		if (sql == null) {
+			throw new IllegalArgumentException("Unknown scan " + scan);
+		}
+
+		String dir = config.get("SCAN_CACHE_DIR", "");
+		if (dir.equals("")) {
+			ResultSet rs = executor.executeMGD(sql);
+			log.info("Time taken to gather the " + scan + " scan: "
+					+ executor.getTiming());
+			return rs;
+		}
+
+		final File cacheDir = new File(dir);
+		FutureTask<RowFile> task;
+		boolean owner = false;
+
+		synchronized (saved) {
+			task = saved.get(scan);
+			if (task == null) {
+				task = new FutureTask<RowFile>(new Callable<RowFile>() {
+					public RowFile call() throws Exception {
+						return save(executor, scan, sql, cacheDir);
+					}
+				});
+				saved.put(scan, task);
+				owner = true;
+			}
+		}
+
+		// The first caller saves the rows, everyone else waits for them.
+
+		if (owner) {
+			task.run();
+		}
+
+		RowFile rows;
+		try {
+			rows = task.get();
+		} catch (ExecutionException e) {
+			synchronized (saved) {
+				if (saved.get(scan) == task) {
+					saved.remove(scan);
+				}
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+
+		if (!owner) {
+			log.info("Replaying the " + scan + " scan from "
+					+ rows.getFile());
+		}
+		return RowResultSet.open(rows);
+	}
+
+	/*
+	 * Run a scan's query and save its rows.
+	 */
+
+	private static RowFile save(SQLExecutor executor, String scan, String sql,
+			File cacheDir) throws Exception {
+		Date start = new Date();
+
+		cacheDir.mkdirs();
+		File file = File.createTempFile(scan + "_", ".rows", cacheDir);
+		file.deleteOnExit();
+
+		RowFile rows = new RowFile(file);
+		int count = rows.write(sql, executor.executeMGD(sql));
+
+		log.info("Saved " + count + " rows of the " + scan + " scan to "
+				+ file + " in " + (new Date().getTime() - start.getTime())
+				+ " ms.");
+		return rows;
+	}
+}
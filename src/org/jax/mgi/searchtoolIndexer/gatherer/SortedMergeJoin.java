@@ -0,0 +1,207 @@
+package org.jax.mgi.searchtoolIndexer.gatherer;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Joins any number of result sets that are each ordered by an integer key,
+ * such as a vocabulary's terms, the markers annotated to them and their DAG
+ * children, all ordered by _Term_key.
+ *
+ * The first stream added drives the join. Each call to next moves on to the
+ * next key found in it, and positions every other stream at the rows with
+ * that same key, skipping any rows whose keys the driving stream doesn't
+ * have. The rows for the current key are then read through each stream's
+ * Cursor. Only the current row of each result set is ever held, so the join
+ * takes the same memory however large its inputs are.
+ *
+ * Rows with a null key never match anything, and are skipped. A stream whose
+ * keys go backwards, most likely because its query is missing its order by,
+ * causes a SQLException.
+ *
+ * @author mhall
+ *
+ * @has A cursor over each of the ordered result sets.
+ *
+ * @does Walks the result sets together, a key at a time.
+ *
+ */
+
+public class SortedMergeJoin {
+
+	private ArrayList<Cursor>	cursors	= new ArrayList<Cursor>();
+	private int					key;
+	private boolean				started	= false;
+
+	/**
+	 * Add a result set to the join. The first one added drives it.
+	 *
+	 * @param rs
+	 *            Rows in ascending order of keyColumn.
+	 * @param keyColumn
+	 * @return The Cursor to read this result set's rows through.
+	 */
+
+	public Cursor add(ResultSet rs, String keyColumn) {
+		if (started) {
+			throw new IllegalStateException("Streams must be added before"
+					+ " the join is started.");
+		}
+		Cursor cursor = new Cursor(rs, keyColumn);
+		cursors.add(cursor);
+		return cursor;
+	}
+
+	/**
+	 * Move on to the next key of the driving stream.
+	 *
+	 * @return false once the driving stream has no more rows.
+	 * @throws SQLException
+	 */
+
+	public boolean next() throws SQLException {
+		Cursor driver = cursors.get(0);
+
+		// Pass over whatever is left of the current key.
+
+		if (started) {
+			driver.skipPast(key);
+		}
+		started = true;
+
+		if (!driver.fill()) {
+			return false;
+		}
+		key = driver.rowKey;
+
+		for (int i = 1; i < cursors.size(); i++) {
+			cursors.get(i).skipTo(key);
+		}
+		return true;
+	}
+
+	/**
+	 * The key the streams are on.
+	 *
+	 * @return int
+	 */
+
+	public int getKey() {
+		return key;
+	}
+
+	/**
+	 * Close every result set in the join.
+	 *
+	 * @throws SQLException
+	 */
+
+	public void close() throws SQLException {
+		for (Cursor cursor : cursors) {
+			cursor.rs.close();
+		}
+	}
+
+	/**
+	 * Reads the rows of one stream that have the current key.
+	 */
+
+	public class Cursor {
+
+		private ResultSet	rs;
+		private String		keyColumn;
+
+		// Whether rs is on a row that hasn't been handed out yet.
+		private boolean		hasRow	= false;
+		private boolean		done	= false;
+		private boolean		seen	= false;
+		private int			rowKey;
+
+		private Cursor(ResultSet rs, String keyColumn) {
+			this.rs = rs;
+			this.keyColumn = keyColumn;
+		}
+
+		/**
+		 * Move to this stream's next row with the current key.
+		 *
+		 * @return false once there are no more rows with the current key.
+		 * @throws SQLException
+		 */
+
+		public boolean next() throws SQLException {
+			if (!started) {
+				throw new IllegalStateException("The join hasn't been started.");
+			}
+			if (fill() && rowKey == key) {
+				hasRow = false;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * The result set, on the row next last moved it to.
+		 *
+		 * @return ResultSet
+		 */
+
+		public ResultSet getRow() {
+			return rs;
+		}
+
+		public String getString(String column) throws SQLException {
+			return rs.getString(column);
+		}
+
+		public int getInt(String column) throws SQLException {
+			return rs.getInt(column);
+		}
+
+		/*
+		 * Read ahead a row, if the last one has been handed out.
+		 */
+
+		private boolean fill() throws SQLException {
+			while (!hasRow && !done) {
+				if (!rs.next()) {
+					done = true;
+					break;
+				}
+				int next = rs.getInt(keyColumn);
+				if (rs.wasNull()) {
+					continue;
+				}
+				if (seen && next < rowKey) {
+					throw new SQLException("The rows are not in " + keyColumn
+							+ " order, " + next + " came after " + rowKey);
+				}
+				rowKey = next;
+				seen = true;
+				hasRow = true;
+			}
+			return hasRow;
+		}
+
+		/*
+		 * Pass over the rows with keys lower than the given one.
+		 */
+
+		private void skipTo(int target) throws SQLException {
+			while (fill() && rowKey < target) {
+				hasRow = false;
+			}
+		}
+
+		/*
+		 * Pass over the rows with keys up to and including the given one.
+		 */
+
+		private void skipPast(int target) throws SQLException {
+			while (fill() && rowKey <= target) {
+				hasRow = false;
+			}
+		}
+	}
+}
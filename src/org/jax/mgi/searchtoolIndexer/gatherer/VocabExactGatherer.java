@@ -51,9 +51,19 @@ public class VocabExactGatherer extends DatabaseGatherer {
 	}
 
 	public void runLocal() throws Exception {
-		doVocabTerm();
-		doVocabSynonym();
-		doVocabNote();
+		runSubsections(new Subsection("doVocabTerm") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((VocabExactGatherer) worker).doVocabTerm();
+			}
+		}, new Subsection("doVocabSynonym") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((VocabExactGatherer) worker).doVocabSynonym();
+			}
+		}, new Subsection("doVocabNote") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((VocabExactGatherer) worker).doVocabNote();
+			}
+		});
 	}
 
 	/**
@@ -63,7 +73,7 @@ public class VocabExactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabTerm() throws SQLException, InterruptedException {
+	private void doVocabTerm() throws Exception {
 
 		// SQL for this Subsection
 
@@ -71,25 +81,20 @@ public class VocabExactGatherer extends DatabaseGatherer {
 		// Currently this list includes: GO, MP, Disease Ontology (DO), InterPro, and PIRSF
 		// Lower part of the union brings in Strain synonyms, as we want to treat strains as a vocab for now.
 
-		String VOC_TERM_KEY = StrainUtils.withStrains
-				+ " select _Term_key, term, vocabName"
-				+ " from VOC_Term_View"
-				+ " where isObsolete != 1 and _Vocab_key in (125, 4, 5, 8, 46, 90)"
-				+ " union "
-				+ "select t._Strain_key, s.strain, 'Strain' "
-				+ "from " + StrainUtils.strainTempTable + " t, prb_strain s "
-				+ "where t._Strain_key = s._Strain_key";
+		// Gather the data, from the shared scan.
 
-		// Gather the data
-
-		ResultSet rs_non_ad_term = executor.executeMGD(VOC_TERM_KEY);
-		
-		log.info("Time taken gather result set: " + executor.getTiming());
+		ResultSet rs_non_ad_term = ScanCache.open(config, executor,
+				ScanCache.VOCAB_TERMS);
 
 		// Parse it
 
 		while (rs_non_ad_term.next()) {
 
+			// Vocabulary 91 is only used by the token index.
+			if (rs_non_ad_term.getString("_Vocab_key").equals("91")) {
+				continue;
+			}
+
 			builder.setVocabulary(rs_non_ad_term.getString("vocabName"));
 			builder.setData(rs_non_ad_term.getString("term"));
 			builder.setRaw_data(rs_non_ad_term.getString("term"));
@@ -117,7 +122,7 @@ public class VocabExactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabSynonym() throws SQLException, InterruptedException {
+	private void doVocabSynonym() throws Exception {
 
 		// SQL for this Subsection
 
@@ -127,27 +132,20 @@ public class VocabExactGatherer extends DatabaseGatherer {
 		// Currently this list includes: GO, MP, Disease Ontology (DO), Interpro and PIRSF.
 		// Lower part of the union brings in Strain synonyms, as we want to treat strains as a vocab for now.
 
-		String VOC_SYN_KEY = StrainUtils.withStrains
-				+ "select tv._Term_key, s.synonym, tv.vocabName"
-				+ " from VOC_Term_View tv, MGI_Synonym s"
-				+ " where tv._Term_key = s._Object_key and tv.isObsolete != 1"
-				+ " and tv._Vocab_key in (125, 4, 5, 8, 46, 90)"
-				+ " and s._MGIType_key = 13 "
-				+ "union "
-				+ "select s._Object_key, s.synonym, 'Strain' "
-				+ "from mgi_synonym s "
-				+ "inner join mgi_synonymtype t on (s._SynonymType_key = t._SynonymType_key and t._MGIType_key = 10) "
-				+ "inner join " + StrainUtils.strainTempTable + " ps on (s._Object_key = ps._Strain_key)";
-
-		// Gather the Data
+		// Gather the data, from the shared scan.
 
-		ResultSet rs_non_ad_syn = executor.executeMGD(VOC_SYN_KEY);
-
-		log.info("Time taken gather result set: " + executor.getTiming());
+		ResultSet rs_non_ad_syn = ScanCache.open(config, executor,
+				ScanCache.VOCAB_SYNONYMS);
 
 		// Parse it
 
 		while (rs_non_ad_syn.next()) {
+
+			// Vocabulary 91 is only used by the token index.
+			if (rs_non_ad_syn.getString("_Vocab_key").equals("91")) {
+				continue;
+			}
+
 			builder.setData(rs_non_ad_syn.getString("synonym"));
 			builder.setRaw_data(rs_non_ad_syn.getString("synonym"));
 			builder.setDb_key(StrainUtils.getDocumentKey(rs_non_ad_syn.getString("_Term_key"), rs_non_ad_syn.getString("vocabName")));
@@ -176,7 +174,7 @@ public class VocabExactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabNote() throws SQLException, InterruptedException {
+	private void doVocabNote() throws Exception {
 
 		// SQL for this subsection
 
@@ -184,46 +182,49 @@ public class VocabExactGatherer extends DatabaseGatherer {
 		// Currently this list includes: GO, MP, Disease Ontology (DO), PIRSH and Interpro.
 		// No notes for strains.
 
-		String VOC_NOTE_KEY = "select tv._Term_key, tv.note, tv.vocabName "
-				+ " from VOC_Term_View tv "
-				+ " where tv.note is not null"
-				+ " and tv.isObsolete != 1"
-				+ " and tv._Vocab_key in (125, 4, 5, 8, 46, 90)"
-				+ " order by tv._Term_key";
-
-		// Gather the data.
+		// Gather the data, from the shared scan.
 
-		ResultSet rs_non_ad_note = executor.executeMGD(VOC_NOTE_KEY);
-
-		log.info("Time taken gather result set: " + executor.getTiming());
+		ResultSet rs_non_ad_note = ScanCache.open(config, executor,
+				ScanCache.VOCAB_NOTES);
 
 		// Parse it
 
-		int place = -1;
+		SortedMergeJoin join = new SortedMergeJoin();
+		SortedMergeJoin.Cursor notes = join.add(rs_non_ad_note, "_Term_key");
 
-		while (rs_non_ad_note.next()) {
-			if (place != rs_non_ad_note.getInt("_Term_key")) {
-				if (place != -1) {
-					builder.setRaw_data(builder.getData());
+		while (join.next()) {
+			boolean found = false;
 
-					// Place the document on the stack.
+			while (notes.next()) {
 
-					documentStore.push(builder.getDocument());
-					builder.clear();
+				// Vocabulary 91 is only used by the token index.
+				if (notes.getString("_Vocab_key").equals("91")) {
+					continue;
 				}
 
-				builder.setDb_key(rs_non_ad_note.getString("_Term_key"));
-				builder.setVocabulary(rs_non_ad_note.getString("vocabName"));
-				builder.setDataType(IndexConstants.VOCAB_NOTE);
-				builder.setDisplay_type(providerMap.get(IndexConstants.VOCAB_NOTE));
-				place = rs_non_ad_note.getInt("_Term_key");
+				if (!found) {
+					builder.setDb_key(notes.getString("_Term_key"));
+					builder.setVocabulary(notes.getString("vocabName"));
+					builder.setDataType(IndexConstants.VOCAB_NOTE);
+					builder.setDisplay_type(providerMap.get(IndexConstants.VOCAB_NOTE));
+					found = true;
+				}
+				builder.appendData(notes.getString("note"));
+			}
+
+			if (found) {
+				builder.setRaw_data(builder.getData());
+
+				// Place the document on the stack.
+
+				documentStore.push(builder.getDocument());
+				builder.clear();
 			}
-			builder.appendData(rs_non_ad_note.getString("note"));
 		}
 
 		// Clean up
 
-		rs_non_ad_note.close();
+		join.close();
 		log.info("Done collecting Vocab Non AD Notes/Definitions");
 
 	}
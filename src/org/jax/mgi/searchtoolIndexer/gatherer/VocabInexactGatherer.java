@@ -62,9 +62,19 @@ public class VocabInexactGatherer extends DatabaseGatherer {
 	 */
 
 	public void runLocal() throws Exception {
-		doVocabTerm();
-		doVocabSynonym();
-		doVocabNote();
+		runSubsections(new Subsection("doVocabTerm") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((VocabInexactGatherer) worker).doVocabTerm();
+			}
+		}, new Subsection("doVocabSynonym") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((VocabInexactGatherer) worker).doVocabSynonym();
+			}
+		}, new Subsection("doVocabNote") {
+			protected void run(DatabaseGatherer worker) throws Exception {
+				((VocabInexactGatherer) worker).doVocabNote();
+			}
+		});
 	}
 
 	/**
@@ -73,7 +83,7 @@ public class VocabInexactGatherer extends DatabaseGatherer {
 	 * @throws SQLException
 	 * @throws InterruptedException
 	 */
-	private void doVocabTerm() throws SQLException, InterruptedException {
+	private void doVocabTerm() throws Exception {
 
 		// SQL for this Subsection
 
@@ -81,25 +91,20 @@ public class VocabInexactGatherer extends DatabaseGatherer {
 		// Currently this list includes: GO, MP, Disease Ontology (DO), InterPro, and PIRSF.
 		// Lower part of the union brings in Strain synonyms, as we want to treat strains as a vocab for now.
 
-		String VOC_TERM_KEY = StrainUtils.withStrains
-				+ " select _Term_key, term, vocabName"
-				+ " from VOC_Term_View"
-				+ " where isObsolete != 1 and _Vocab_key in (125, 4, 5, 8, 46, 90)"
-				+ " union "
-				+ "select t._Strain_key, s.strain, 'Strain' "
-				+ "from " + StrainUtils.strainTempTable + " t, prb_strain s "
-				+ "where t._Strain_key = s._Strain_key";
+		// Gather the data, from the shared scan.
 
-		// Gather the data
-
-		ResultSet rs = executor.executeMGD(VOC_TERM_KEY);
-		
-		log.info("Time taken gather non ad terms result set: " + executor.getTiming());
+		ResultSet rs = ScanCache.open(config, executor,
+				ScanCache.VOCAB_TERMS);
 
 		// Parse it
 
 		while (rs.next()) {
 
+			// Vocabulary 91 is only used by the token index.
+			if (rs.getString("_Vocab_key").equals("91")) {
+				continue;
+			}
+
 			builder.setData(rs.getString("term"));
 			builder.setRaw_data(rs.getString("term"));
 			builder.setDb_key(StrainUtils.getDocumentKey(rs.getString("_Term_key"), rs.getString("vocabName")));
@@ -124,7 +129,7 @@ public class VocabInexactGatherer extends DatabaseGatherer {
 	 * @throws SQLException
 	 * @throws InterruptedException
 	 */
-	private void doVocabSynonym() throws SQLException, InterruptedException {
+	private void doVocabSynonym() throws Exception {
 
 		// SQL for this Subsection
 
@@ -134,28 +139,20 @@ public class VocabInexactGatherer extends DatabaseGatherer {
 		// Currently this list includes: GO, MP, Disease Ontology (DO), Interpro and PIRSF
 		// Lower part of the union brings in Strain synonyms, as we want to treat strains as a vocab for now.
 
-		String VOC_SYN_KEY = StrainUtils.withStrains 
-				+ " select tv._Term_key, s.synonym, tv.vocabName"
-				+ " from VOC_Term_View tv, MGI_Synonym s"
-				+ " where tv._Term_key = s._Object_key and tv.isObsolete != 1 "
-				+ " and tv._Vocab_key in (125, 4, 5, 8, 46, 90)"
-				+ " and s._MGIType_key = 13 "
-				+ "union "
-				+ "select s._Object_key, s.synonym, 'Strain' "
-				+ "from mgi_synonym s "
-				+ "inner join mgi_synonymtype t on (s._SynonymType_key = t._SynonymType_key and t._MGIType_key = 10) "
-				+ "inner join " + StrainUtils.strainTempTable + " ps on (s._Object_key = ps._Strain_key)";
-
-		// gather the data
+		// Gather the data, from the shared scan.
 
-		ResultSet rs_syn = executor.executeMGD(VOC_SYN_KEY);
-		
-		log.info("Time taken gather non ad synonyms result set: " + executor.getTiming());
+		ResultSet rs_syn = ScanCache.open(config, executor,
+				ScanCache.VOCAB_SYNONYMS);
 
 		// parse it
 
 		while (rs_syn.next()) {
 
+			// Vocabulary 91 is only used by the token index.
+			if (rs_syn.getString("_Vocab_key").equals("91")) {
+				continue;
+			}
+
 			builder.setData(rs_syn.getString("synonym"));
 			builder.setRaw_data(rs_syn.getString("synonym"));
 			builder.setDb_key(StrainUtils.getDocumentKey(rs_syn.getString("_Term_key"), rs_syn.getString("vocabName")));
@@ -183,7 +180,7 @@ public class VocabInexactGatherer extends DatabaseGatherer {
 	 * @throws InterruptedException
 	 */
 
-	private void doVocabNote() throws SQLException, InterruptedException {
+	private void doVocabNote() throws Exception {
 
 		// SQL for this Subsection
 
@@ -191,50 +188,52 @@ public class VocabInexactGatherer extends DatabaseGatherer {
 		// Currently this list includes: GO, MP, Disease Ontology (DO), PIRSH and Interpro.
 		// No notes for strains.
 
-		String VOC_NOTE_KEY = "select tv._Term_key, tv.note, tv.vocabName "
-				+ " from VOC_Term_View tv "
-				+ " where tv.note is not null"
-				+ " and tv.isObsolete != 1 "
-				+ " and tv._Vocab_key in (125, 4, 5, 8, 46, 90)"
-				+ " order by tv._Term_key";
-
-		// Gather the data
-
 		// Since notes are compound rows in the database, we have to
 		// construct the searchable field.
 
-		ResultSet rs_note = executor.executeMGD(VOC_NOTE_KEY);
-		
-		log.info("Time taken gather non ad notes/definitions result set: " + executor.getTiming());
+		// Gather the data, from the shared scan.
+
+		ResultSet rs_note = ScanCache.open(config, executor,
+				ScanCache.VOCAB_NOTES);
 
 		// Parse it
 
-		int place = -1;
+		SortedMergeJoin join = new SortedMergeJoin();
+		SortedMergeJoin.Cursor notes = join.add(rs_note, "_Term_key");
 
-		while (rs_note.next()) {
-			if (place != rs_note.getInt("_Term_key")) {
-				if (place != -1) {
-					builder.setRaw_data(builder.getData());
+		while (join.next()) {
+			boolean found = false;
 
-					// Place the document on the stack
+			while (notes.next()) {
 
-					documentStore.push(builder.getDocument());
-					builder.clear();
+				// Vocabulary 91 is only used by the token index.
+				if (notes.getString("_Vocab_key").equals("91")) {
+					continue;
 				}
-				builder.setDb_key(rs_note.getString("_Term_key"));
-				builder.setVocabulary(rs_note.getString("vocabName"));
-				builder.setDataType(IndexConstants.VOCAB_NOTE);
-				builder.setDisplay_type(providerMap.get(IndexConstants.VOCAB_NOTE));
-				place = rs_note.getInt("_Term_key");
+
+				if (!found) {
+					builder.setDb_key(notes.getString("_Term_key"));
+					builder.setVocabulary(notes.getString("vocabName"));
+					builder.setDataType(IndexConstants.VOCAB_NOTE);
+					builder.setDisplay_type(providerMap.get(IndexConstants.VOCAB_NOTE));
+					found = true;
+				}
+				builder.appendData(notes.getString("note"));
 			}
-			builder.appendData(rs_note.getString("note"));
-		}
 
-		documentStore.push(builder.getDocument());
+			if (found) {
+				builder.setRaw_data(builder.getData());
+
+				// Place the document on the stack
+
+				documentStore.push(builder.getDocument());
+				builder.clear();
+			}
+		}
 
 		// Clean up
 
-		rs_note.close();
+		join.close();
 		log.info("Done gathering Vocab Non AD Notes!");
 
 	}
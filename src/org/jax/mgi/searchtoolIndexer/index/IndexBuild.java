@@ -0,0 +1,488 @@
+package org.jax.mgi.searchtoolIndexer.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.jax.mgi.searchtoolIndexer.gatherer.AbstractGatherer;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.DocumentPool;
+import org.jax.mgi.searchtoolIndexer.util.BuildCheckpoint;
+import org.jax.mgi.searchtoolIndexer.util.Metrics;
+import org.jax.mgi.shr.config.IndexCfg;
+import org.jax.mgi.shr.searchtool.MGIAnalyzer;
+import org.jax.mgi.shr.searchtool.MGITokenAnalyzer;
+import org.jax.mgi.shr.searchtool.StemmedMGIAnalyzer;
+
+/**
+ * An IndexBuild is the build of a single index, identified by its index code.
+ * It owns everything that build needs: a gatherer, the document stack that
+ * gatherer fills, an IndexWriter, and the IndexController that empties the
+ * stack into the writer. Nothing is shared between builds, so several of them
+ * can run in the same JVM at once.
+ *
+ * With CHECKPOINTS set, or when resuming, the build commits the index after
+ * each gatherer subsection, so that a build that fails part way through can
+ * be resumed from its last finished subsection.
+ *
+ * @author mhall
+ *
+ * @has A gatherer thread, a consumer (IndexController) thread, and the
+ *      IndexWriter for the index being created.
+ *
+ * @does Sets up the gatherer and writer for an index code, runs the build to
+ *       completion, and keeps track of how long it took, along with the
+ *       Metrics of each part of the build.
+ *
+ */
+
+public class IndexBuild implements Runnable {
+
+	// Index code -> gatherer class, in the order the indexes are built.
+	private static LinkedHashMap<String, String>	gathererMap	= new LinkedHashMap<String, String>();
+
+	// Index code -> directory name under the build directory.
+	private static LinkedHashMap<String, String>	indexNameMap	= new LinkedHashMap<String, String>();
+
+	static {
+		addIndex("g",   "genomeFeatureInexact",    "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureInexactGatherer");
+		addIndex("gd",  "genomeFeatureDisplay",    "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureDisplayGatherer");
+		addIndex("ge",  "genomeFeatureExact",      "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureExactGatherer");
+		addIndex("ga",  "genomeFeatureAccID",      "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureAccIDGatherer");
+		addIndex("gs",  "genomeFeatureSymbol",     "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureSymbolGatherer");
+		addIndex("gve", "genomeFeatureVocabExact", "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureVocabExactGatherer");
+		addIndex("gvd", "genomeFeatureVocabDag",   "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureVocabDagGatherer");
+		addIndex("gva", "genomeFeatureVocabAccID", "org.jax.mgi.searchtoolIndexer.gatherer.GenomeFeatureVocabAccIDGatherer");
+		addIndex("v",   "vocabInexact",            "org.jax.mgi.searchtoolIndexer.gatherer.VocabInexactGatherer");
+		addIndex("vd",  "vocabDisplay",            "org.jax.mgi.searchtoolIndexer.gatherer.VocabDisplayGatherer");
+		addIndex("ve",  "vocabExact",              "org.jax.mgi.searchtoolIndexer.gatherer.VocabExactGatherer");
+		addIndex("va",  "vocabAccID",              "org.jax.mgi.searchtoolIndexer.gatherer.VocabAccIDGatherer");
+		addIndex("t",   "nonIDToken",              "org.jax.mgi.searchtoolIndexer.gatherer.NonIDTokenGatherer");
+		addIndex("od",  "otherDisplay",            "org.jax.mgi.searchtoolIndexer.gatherer.OtherDisplayGatherer");
+		addIndex("o",   "otherExact",              "org.jax.mgi.searchtoolIndexer.gatherer.OtherExactGatherer");
+	}
+
+	private String		code;
+	private File		indexDir;
+	private IndexWriter	writer;
+	private Directory	directory	= null;
+	private Thread		gatherer;
+	private Thread		consumer;
+	private Date		start;
+	private Date		end;
+	private Date		gatherEnd;
+	private Metrics		metrics	= null;
+	private File		metricsDir;
+	private AbstractGatherer	source;
+	private IndexController	controller;
+	private boolean		successful	= false;
+	private BuildCheckpoint	checkpoint	= null;
+
+	private Logger		log	= Logger.getLogger(this.getClass().getName());
+
+	private static void addIndex(String code, String name, String gatherer) {
+		gathererMap.put(code, gatherer);
+		indexNameMap.put(code, name);
+	}
+
+	/**
+	 * Is this a code for an index we know how to build?
+	 *
+	 * @param code
+	 * @return boolean
+	 */
+
+	public static boolean isIndexCode(String code) {
+		return gathererMap.containsKey(code.toLowerCase());
+	}
+
+	/**
+	 * Return every index code, in build order.
+	 *
+	 * @return Set of index codes
+	 */
+
+	public static Set<String> getIndexCodes() {
+		return gathererMap.keySet();
+	}
+
+	/**
+	 * Return the directory an index lives in under a build directory, this
+	 * matches the layout used by the makeIndex_* scripts.
+	 *
+	 * @param buildDir
+	 * @param code
+	 * @return The index directory
+	 */
+
+	public static File getIndexDir(File buildDir, String code) {
+		return new File(new File(buildDir, indexNameMap.get(code.toLowerCase())),
+				"index");
+	}
+
+	/**
+	 * Set up the build of a single index.
+	 *
+	 * @param config
+	 * @param indexDir
+	 *            The directory to create the index in.
+	 * @param indexCode
+	 *            The code of the index to create.
+	 * @throws Exception
+	 */
+
+	public IndexBuild(IndexCfg config, File indexDir, String indexCode)
+			throws Exception {
+		this(config, indexDir, indexCode, false);
+	}
+
+	/**
+	 * Set up the build of a single index, resuming it from the checkpoint of
+	 * an earlier build that failed if asked to.
+	 *
+	 * @param config
+	 * @param indexDir
+	 *            The directory to create the index in.
+	 * @param indexCode
+	 *            The code of the index to create.
+	 * @param resume
+	 *            Carry on from the last checkpoint, if there is one.
+	 * @throws Exception
+	 */
+
+	public IndexBuild(IndexCfg config, File indexDir, String indexCode,
+			boolean resume) throws Exception {
+
+		code = indexCode.toLowerCase();
+		this.indexDir = indexDir;
+
+		if (!gathererMap.containsKey(code)) {
+			throw new IllegalArgumentException("Unknown index code: "
+					+ indexCode);
+		}
+
+		// Set up our specific gatherer for the index we want to create.
+		// We do this via reflection.
+
+		final AbstractGatherer ag = (AbstractGatherer) Class.forName(
+				gathererMap.get(code)).getConstructor(IndexCfg.class)
+				.newInstance(config);
+		source = ag;
+
+		// Note when the gatherer finishes, so the time spent gathering can
+		// be told apart from the time spent finishing the index.
+
+		gatherer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					ag.run();
+				} finally {
+					gatherEnd = new Date();
+				}
+			}
+		}, "gatherer-" + code);
+
+		log.info("Creating " + gathererMap.get(code) + " index in "
+				+ indexDir);
+
+		// Collect the timing and throughput of each part of the build, to
+		// be written to the log directory once it is done.
+
+		if (config.get("METRICS", "true").equalsIgnoreCase("true")) {
+			metrics = new Metrics(code);
+			metricsDir = new File(config.get("LOGDIR", "."));
+			ag.setMetrics(metrics);
+		}
+
+		// An incremental build updates the existing index in place when it
+		// can, otherwise the index is created from scratch.
+
+		RowHashes rowHashes = null;
+		boolean create = true;
+
+		if (config.get("INCREMENTAL_BUILD", "false").equalsIgnoreCase("true")) {
+			rowHashes = new RowHashes(indexDir);
+			create = !rowHashes.canUpdate();
+			log.info("Incremental build, "
+					+ (create ? "creating a new index." : "updating the index."));
+		}
+
+		// Checkpoints need the documents to stay in the order they were
+		// added, in a single writer.
+
+		if (resume
+				|| config.get("CHECKPOINTS", "false").equalsIgnoreCase("true")) {
+			if (rowHashes != null) {
+				log.warn("Incremental builds can't be checkpointed.");
+			} else if (!config.get("WRITE_MODE", "shared").equalsIgnoreCase(
+					"shared")) {
+				log.warn("Only a shared WRITE_MODE can be checkpointed.");
+			} else if (config.get("ORDERING", "lifo").toLowerCase()
+					.startsWith("sorted:")) {
+				log.warn("A sorted ORDERING can't be checkpointed.");
+			} else {
+				checkpoint = new BuildCheckpoint(indexDir, resume);
+				if (checkpoint.isResumed()) {
+					checkpoint.rollBack();
+					create = false;
+				}
+			}
+		}
+
+		// An incremental build only commits once it has finished, so a
+		// failure can leave the existing index untouched.
+
+		if (rowHashes != null) {
+			directory = FSDirectory.getDirectory(indexDir);
+			writer = new IndexWriter(directory, false, getAnalyzer(code),
+					create);
+		} else {
+			writer = new IndexWriter(indexDir, getAnalyzer(code), create);
+		}
+
+		// Let the doc builders recycle documents once they are indexed.
+		// Incremental builds keep some of their documents, so they can't.
+
+		if (config.get("REUSE_DOCUMENTS", "false").equalsIgnoreCase("true")) {
+			if (rowHashes == null) {
+				ag.getDocumentStore().setDocumentPool(new DocumentPool(
+						4 * config.getInt("BATCH_SIZE", 1000)));
+			} else {
+				log.warn("REUSE_DOCUMENTS is ignored for incremental builds.");
+			}
+		}
+
+		// Set the various configurable Lucene values
+
+		// Merge segments on background threads while the Indexers keep
+		// adding documents. The merge policy has to be set before the
+		// settings below, which are passed on to it.
+		ConcurrentMergeScheduler scheduler = new ConcurrentMergeScheduler();
+		scheduler.setMaxThreadCount(config.getInt("MERGE_THREADS", 3));
+		writer.setMergeScheduler(scheduler);
+
+		// Segments larger than MAX_MERGE_MB are left alone by the
+		// background merges, the final merge still takes them in.
+		LogByteSizeMergePolicy policy = new LogByteSizeMergePolicy();
+		String maxMergeMB = config.get("MAX_MERGE_MB", "");
+		if (maxMergeMB.length() > 0) {
+			policy.setMaxMergeMB(Double.parseDouble(maxMergeMB));
+		}
+		writer.setMergePolicy(policy);
+
+		// This controls how many physical files will be created on the
+		// filesystem before a merge occurs.
+		writer.setMergeFactor(new Integer(config.get("MERGE_FACTOR"))
+				.intValue());
+
+		// How many documents will the IndexWriter buffer before flushing
+		// them to disk.
+		writer.setMaxBufferedDocs(new Integer(config.get("MAX_BUFFERED_DOCS"))
+				.intValue());
+
+		// When the index is optimized collapse the files on the
+		// filesystem as much as possible.
+		writer.setUseCompoundFile(new Boolean(config.get("USE_COMPOUND_DOCS"))
+				.booleanValue());
+
+		// Initialize the consumer (IndexController), which empties the
+		// gatherer's stack into the writer.
+		controller = new IndexController(writer,
+				ag.getDocumentStore(), rowHashes);
+		controller.setMetrics(metrics);
+		controller.setSource(ag);
+		consumer = new Thread(controller, "consumer-" + code);
+
+		if (checkpoint != null) {
+			checkpoint.setBuild(writer, ag.getDocumentStore());
+			ag.setCheckpoint(checkpoint);
+		}
+	}
+
+	/*
+	 * Choose the Analyzer for an index code.
+	 */
+
+	private static Analyzer getAnalyzer(String code) {
+
+		// Inexact genes and vocab indexes use a multi
+		// column approach, which means we have to have a more complex
+		// Analyzer type, and AnalyzerWrapper. This allows us to specify
+		// on a per field basis which Analyzer to use.
+		// In this case we use the MGIAnalyzer for the unstemmed datafield
+		// and the StemmedMGIAnalyzer for the stemmed field.
+
+		if (code.equals("g") || code.equals("v")) {
+			PerFieldAnalyzerWrapper aWrapper = new PerFieldAnalyzerWrapper(
+					new StandardAnalyzer());
+			aWrapper.addAnalyzer("data", new MGIAnalyzer());
+			aWrapper.addAnalyzer("sdata", new StemmedMGIAnalyzer());
+			return aWrapper;
+		}
+
+		// Use a special Analyzer, which breaks the input up on white
+		// space, so we can get a listing of all the large tokens
+		// across all of the indexes.
+
+		if (code.equals("t")) {
+			return new MGITokenAnalyzer();
+		}
+
+		// If we aren't in a special analyzer case, use the standard
+		// one instead.
+
+		return new StandardAnalyzer();
+	}
+
+	/**
+	 * Run the build, returning once the index has been optimized and closed.
+	 */
+
+	public void run() {
+		start = new Date();
+
+		// Start the gatherer, which fills the stack, and the consumer,
+		// which takes documents off of it.
+
+		gatherer.start();
+		consumer.start();
+
+		try {
+			consumer.join();
+			gatherer.join();
+		} catch (InterruptedException e) {
+			log.error(e);
+		}
+
+		// A writer opened on a Directory leaves it open.
+
+		if (directory != null) {
+			try {
+				directory.close();
+			} catch (IOException e) {
+				log.error(e);
+			}
+		}
+
+		end = new Date();
+		successful = source.isFinished() && controller.isCompleted();
+		if (successful) {
+			log.info("Finished " + code + " index in " + getTime() + " ms.");
+		} else {
+			log.error("The " + code + " index FAILED after " + getTime()
+					+ " ms, the " + (source.isFinished() ? "indexing"
+							: "gatherer") + " didn't finish.");
+		}
+
+		// Keep the checkpoint of a failed build, so it can be resumed.
+
+		if (checkpoint != null) {
+			if (successful) {
+				checkpoint.remove();
+			} else {
+				log.warn("Run the " + code + " build again with --resume to"
+						+ " carry on from its last checkpoint.");
+			}
+		}
+
+		if (metrics != null) {
+			Metrics.Section section = metrics.section("build");
+			section.add(Metrics.ELAPSED_MS, getTime());
+			section.add("gatherMs", getGatherTime());
+		}
+	}
+
+	/**
+	 * Write the metrics of the finished build to metrics_CODE.json in the
+	 * log directory, if metrics were collected.
+	 */
+
+	public void writeMetrics() {
+		if (metrics == null) {
+			return;
+		}
+		File file = new File(metricsDir, "metrics_" + code + ".json");
+		try {
+			metrics.writeJson(file);
+			log.info("Wrote the " + code + " index metrics to " + file);
+		} catch (IOException e) {
+			log.error("Unable to write " + file);
+			log.error(e);
+		}
+	}
+
+	/**
+	 * The metrics of this build, or null if they aren't being collected.
+	 *
+	 * @return Metrics
+	 */
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Did the build finish, with every document gathered and the index
+	 * merged and closed without an error?
+	 *
+	 * @return boolean
+	 */
+
+	public boolean isSuccessful() {
+		return successful;
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	public File getIndexDir() {
+		return indexDir;
+	}
+
+	public Date getStart() {
+		return start;
+	}
+
+	public Date getEnd() {
+		return end;
+	}
+
+	/**
+	 * How long the build took in milliseconds, or -1 if it hasn't finished.
+	 *
+	 * @return long
+	 */
+
+	public long getTime() {
+		if (start == null || end == null) {
+			return -1;
+		}
+		return end.getTime() - start.getTime();
+	}
+
+	/**
+	 * How long the gatherer ran in milliseconds, or -1 if the build hasn't
+	 * finished. The rest of the build's time was spent emptying the stack
+	 * and optimizing the index after gathering was done.
+	 *
+	 * @return long
+	 */
+
+	public long getGatherTime() {
+		if (start == null || end == null || gatherEnd == null) {
+			return -1;
+		}
+		return gatherEnd.getTime() - start.getTime();
+	}
+}
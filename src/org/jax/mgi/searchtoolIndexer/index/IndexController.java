@@ -1,7 +1,19 @@
 package org.jax.mgi.searchtoolIndexer.index;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.log4j.Logger;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.jax.mgi.searchtoolIndexer.gatherer.AbstractGatherer;
+import org.jax.mgi.searchtoolIndexer.util.Metrics;
+import org.jax.mgi.searchtoolIndexer.util.SharedDocumentStack;
 import org.jax.mgi.shr.config.IndexCfg;
 
 /**
@@ -10,37 +22,206 @@ import org.jax.mgi.shr.config.IndexCfg;
  * until they have completed processing. Once processing is complete, it goes
  * ahead and optimized the index, and then exits.
  * 
+ * The WRITE_MODE configuration item decides where the Indexers write. In
+ * shared mode they all add documents to the one IndexWriter. In ram or disk
+ * mode each Indexer gets its own shard, a private IndexWriter over either a
+ * RAMDirectory or a directory next to the index, so the threads never
+ * contend with each other. The shards are added into the real index before
+ * it is optimized.
+ * 
+ * In an incremental build the Indexers skip unchanged documents, and the
+ * documents that are no longer produced are deleted before optimizing. The
+ * writer of an incremental build doesn't commit until it is closed, so if
+ * the gatherer or an Indexer fails its changes are thrown away, and nothing
+ * is deleted. A failed full build is closed without its final merge.
+ * 
+ * The FINAL_MERGE configuration item decides how far the finished index is
+ * merged: optimize into a single segment, segments:N to merge down to at
+ * most N segments, or none to keep the segments the background merges left.
+ * Incremental builds use INCREMENTAL_FINAL_MERGE instead, which defaults to
+ * segments:10, since optimizing would rewrite the whole index to apply a
+ * few changes.
+ * 
+ * The ORDERING configuration item decides the order documents are added
+ * in. lifo, the default, takes the newest batches off of the stack first,
+ * fifo adds the documents in the order the gatherer pushed them, and
+ * sorted:FIELD adds them in order of a field's value, such as db_key, once
+ * gathering is done. The ordered modes use a single Indexer on the real
+ * index, since several Indexers would interleave their documents, and the
+ * gatherers run their subsections one at a time and build their documents
+ * inline. The sorted mode holds every document on the heap until gathering
+ * is done, and these documents aren't spilled, so QUEUE_MEMORY_BUDGET doesn't
+ * help; the heap has to be large enough for the whole index.
+ * 
+ * The INDEXER_POOL configuration item decides how many Indexers run. fixed
+ * runs NUMBER_OF_THREADS of them for the whole build. adaptive starts with
+ * one, and every second looks at how deep the stack is. An Indexer is added
+ * while the stack keeps growing, or stays nearly full, up to
+ * MAX_INDEXER_THREADS, which defaults to the number of processors. One is
+ * parked while the stack stays empty, so gatherer bound indexes don't keep
+ * idle Indexers around. Each decision is logged.
+ * 
  * @author mhall
  * 
  * @has An Lucene IndexWriter, which consumes Lucene Documents, and places them
- *      into the index.
+ *      into the index. The SharedDocumentStack the documents come from.
  * 
- * @does Controls the creation of the indexers, and then optimizes the resulting
- *       Lucene index.
+ * @does Controls the creation of the indexers, and then merges the resulting
+ *       Lucene index as configured.
  * 
  */
 
 public class IndexController implements Runnable {
 
 	private int	NUMBER_OF_THREADS;
+	private String	WRITE_MODE;
+	private String	FINAL_MERGE;
+	private int		finalSegments	= 1;
+	private String	ORDERING;
+	private String	sortField		= null;
+	private boolean	adaptive		= false;
+	private int		maxThreads;
 	IndexWriter	writer	= null;
+	SharedDocumentStack	stack	= null;
+	RowHashes	rowHashes	= null;
+	Metrics		metrics		= null;
+
+	// How often an adaptive pool looks at the stack, and how many looks in
+	// a row it takes to add or park an Indexer.
+	private static final long	SCALE_INTERVAL_MS	= 1000;
+	private static final int	GROW_SAMPLES		= 2;
+	private static final int	DRAIN_SAMPLES		= 3;
+
+	private Thread			threads[];
+	private Directory		shards[];
+	private IndexWriter		shardWriters[];
+	private boolean			sharded;
+	private Metrics.Section	section		= null;
+	private IndexerGate		gate		= null;
+	private Indexer			indexers[];
+	private AbstractGatherer	source		= null;
+	private AtomicInteger		running		= new AtomicInteger();
+	private volatile boolean	anyFailed	= false;
+	private volatile boolean	completed	= false;
 
 	Logger		log		= Logger.getLogger(this.getClass().getName());
 
 	/**
-	 * Sets up the IndexController, initializing it with a IndexWriter.
+	 * Sets up the IndexController, initializing it with a IndexWriter and the
+	 * stack its Indexers should consume from.
 	 * 
 	 * @param iw
 	 *            A Lucene IndexWriter
+	 * @param sds
+	 *            The SharedDocumentStack for this build
+	 * @param hashes
+	 *            The row hashes of an incremental build, or null.
 	 */
 
-	public IndexController(IndexWriter iw) throws Exception {
+	public IndexController(IndexWriter iw, SharedDocumentStack sds,
+			RowHashes hashes) throws Exception {
 		writer = iw;
+		stack = sds;
+		rowHashes = hashes;
 
 		IndexCfg config = new IndexCfg();
 		NUMBER_OF_THREADS =
 				new Integer(config.get("NUMBER_OF_THREADS")).intValue();
+		WRITE_MODE = config.get("WRITE_MODE", "shared")
+				.toLowerCase();
+
+		if (!WRITE_MODE.equals("shared") && !WRITE_MODE.equals("ram")
+				&& !WRITE_MODE.equals("disk")) {
+			log.error("Unknown WRITE_MODE " + WRITE_MODE
+					+ ", using shared.");
+			WRITE_MODE = "shared";
+		}
+
+		ORDERING = config.get("ORDERING", "lifo").trim();
+
+		if (ORDERING.toLowerCase().startsWith("sorted:")
+				&& ORDERING.length() > 7) {
+			sortField = ORDERING.substring(7).trim();
+			ORDERING = "sorted";
+		} else {
+			ORDERING = ORDERING.toLowerCase();
+			if (!ORDERING.equals("lifo") && !ORDERING.equals("fifo")) {
+				log.error("Unknown ORDERING " + ORDERING + ", using lifo.");
+				ORDERING = "lifo";
+			}
+		}
+
+		// Both ordered modes need the batches in the order they were pushed.
+
+		if (!ORDERING.equals("lifo")) {
+			stack.setFifo(true);
+			if (NUMBER_OF_THREADS > 1 || !WRITE_MODE.equals("shared")) {
+				log.info("ORDERING " + ORDERING
+						+ " uses a single Indexer on the shared writer.");
+			}
+			NUMBER_OF_THREADS = 1;
+			WRITE_MODE = "shared";
+		}
+
+		String pool = config.get("INDEXER_POOL", "fixed").trim().toLowerCase();
+		if (pool.equals("adaptive")) {
+			adaptive = true;
+		} else if (!pool.equals("fixed")) {
+			log.error("Unknown INDEXER_POOL " + pool + ", using fixed.");
+		}
+		maxThreads = config.getInt("MAX_INDEXER_THREADS", 0);
+		if (maxThreads <= 0) {
+			maxThreads = Runtime.getRuntime().availableProcessors();
+		}
+
+		// The ordered modes have a single Indexer, so there is nothing to
+		// adapt.
+
+		if (!ORDERING.equals("lifo")) {
+			adaptive = false;
+		}
+
+		if (rowHashes != null) {
+			FINAL_MERGE = config.get("INCREMENTAL_FINAL_MERGE", "segments:10")
+					.toLowerCase();
+			if (FINAL_MERGE.equals("optimize")) {
+				log.warn("INCREMENTAL_FINAL_MERGE is optimize, so every"
+						+ " incremental build rewrites the whole index.");
+			}
+		} else {
+			FINAL_MERGE = config.get("FINAL_MERGE", "optimize").toLowerCase();
+		}
+
+		if (FINAL_MERGE.startsWith("segments:")) {
+			try {
+				finalSegments = Integer.parseInt(FINAL_MERGE.substring(9));
+			} catch (NumberFormatException e) {
+				finalSegments = 0;
+			}
+			if (finalSegments < 1) {
+				log.error("Bad FINAL_MERGE " + FINAL_MERGE
+						+ ", using optimize.");
+				finalSegments = 1;
+			}
+			FINAL_MERGE = "segments";
+		} else if (!FINAL_MERGE.equals("optimize")
+				&& !FINAL_MERGE.equals("none")) {
+			log.error("Unknown FINAL_MERGE " + FINAL_MERGE
+					+ ", using optimize.");
+			FINAL_MERGE = "optimize";
+		}
+	}
+
+	/**
+	 * Set the metrics the Indexers, and the work done once they finish,
+	 * report to.
+	 * 
+	 * @param m
+	 *            The metrics of the build, or null.
+	 */
 
+	public void setMetrics(Metrics m) {
+		metrics = m;
 	}
 
 	/**
@@ -51,35 +232,387 @@ public class IndexController implements Runnable {
 	 */
 
 	public void run() {
-		Thread threads[] = new Thread[NUMBER_OF_THREADS];
+		int poolSize = adaptive ? maxThreads : NUMBER_OF_THREADS;
+		threads = new Thread[poolSize];
+		indexers = new Indexer[poolSize];
+		sharded = !WRITE_MODE.equals("shared");
+		shards = new Directory[poolSize];
+		shardWriters = new IndexWriter[poolSize];
+		if (metrics != null) {
+			section = metrics.section("indexer");
+		}
 
-		for (int i = 0; i < NUMBER_OF_THREADS; i++) {
-			try {
-				threads[i] = new Thread(new Indexer(writer));
-				threads[i].start();
-			} catch (Exception e) {
-				log.error(e);
-			}
+		int started = NUMBER_OF_THREADS;
+		if (adaptive) {
+			started = 1;
+			gate = new IndexerGate(started);
 		}
 
+		// Count this thread as running while the Indexers start, so one
+		// that fails straight away doesn't fail the stack before the rest
+		// have started.
+
+		running.incrementAndGet();
+		for (int i = 0; i < started; i++) {
+			startIndexer(i);
+		}
+		stopped(null);
+
 		// Wait until all the threads have completed their work, after which
 		// optimize and close the indexwriter.
 
 		try {
 
-			for (int i = 0; i < NUMBER_OF_THREADS; i++) {
-				threads[i].join();
+			if (adaptive) {
+				scale(started);
+			}
+
+			for (int i = 0; i < threads.length; i++) {
+				if (threads[i] != null) {
+					threads[i].join();
+				}
+			}
+
+			long finishStart = System.currentTimeMillis();
+
+			// Combine the shards into the real index.
+
+			if (sharded) {
+				mergeShards(shards, shardWriters);
+			}
+
+			// A failed build never reached some of the documents, so it
+			// can't tell which rows are gone, and isn't worth merging. An
+			// incremental build throws its changes away, leaving the index
+			// as it was.
+
+			if (hasFailed()) {
+				if (rowHashes != null) {
+					log.error("Leaving the index as it was before this"
+							+ " incremental build.");
+					writer.abort();
+				} else {
+					log.error("Skipping the final merge of the partial"
+							+ " index.");
+					writer.close();
+				}
+				return;
+			}
+
+			// Remove anything an incremental build no longer produces.
+
+			if (rowHashes != null) {
+				rowHashes.deleteRemaining(writer);
 			}
 
-			// Optimize the index.
+			// Merge the index down as far as FINAL_MERGE asks.
 
-			writer.optimize();
+			finalMerge();
 
 			// Close the index.
 
 			writer.close();
+
+			if (metrics != null) {
+				metrics.section("finish").add(Metrics.ELAPSED_MS,
+						System.currentTimeMillis() - finishStart);
+			}
+
+			completed = true;
 		} catch (Exception e) {
 			log.error(e);
 		}
 	}
+
+	/*
+	 * Once the last Indexer has stopped, and one of them failed, nothing will
+	 * empty the stack again, so fail it rather than leave the gatherer
+	 * waiting on it for good.
+	 */
+
+	private void stopped(Indexer indexer) {
+		if (indexer != null && indexer.hasFailed()) {
+			anyFailed = true;
+		}
+		if (running.decrementAndGet() == 0 && anyFailed) {
+			log.error("Every Indexer has stopped, failing the build.");
+			stack.setFailed();
+		}
+	}
+
+	/**
+	 * Set the gatherer filling the stack, so that a build whose gatherer
+	 * failed isn't finished off as if every document had been gathered.
+	 * 
+	 * @param gatherer
+	 */
+
+	public void setSource(AbstractGatherer gatherer) {
+		source = gatherer;
+	}
+
+	/*
+	 * Did the gatherer, or any of the Indexers, stop because of an error?
+	 */
+
+	private boolean hasFailed() {
+		boolean failed = false;
+		if (source != null && !source.isFinished()) {
+			log.error("The gatherer failed, documents are missing from the"
+					+ " index.");
+			failed = true;
+		}
+		for (int i = 0; i < indexers.length; i++) {
+			if (indexers[i] != null && indexers[i].hasFailed()) {
+				log.error("Indexer " + i + " failed, documents are"
+						+ " missing from the index.");
+				failed = true;
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Did every Indexer, and the merging and closing of the index, finish
+	 * without an error?
+	 * 
+	 * @return boolean
+	 */
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	/*
+	 * Create and start an Indexer, on its own shard when sharded.
+	 */
+
+	private void startIndexer(int i) {
+		try {
+			Indexer indexer;
+			if (sharded) {
+				shards[i] = createShard(i);
+				shardWriters[i] = createShardWriter(shards[i]);
+				indexer = new Indexer(shardWriters[i], stack, rowHashes, section);
+			} else {
+				indexer = new Indexer(writer, stack, rowHashes, section);
+				indexer.setSortField(sortField);
+			}
+			if (gate != null) {
+				indexer.setGate(gate, i);
+			}
+			indexers[i] = indexer;
+			running.incrementAndGet();
+			final Indexer worker = indexer;
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						worker.run();
+					} finally {
+						stopped(worker);
+					}
+				}
+			}, Thread.currentThread().getName() + "-indexer-" + i);
+			threads[i].start();
+		} catch (Exception e) {
+			log.error(e);
+		}
+	}
+
+	/*
+	 * Grow and shrink the adaptive pool with the depth of the stack, until
+	 * an Indexer finishes, which means the stack has been emptied. Parked
+	 * Indexers are kept, and made active again before any more are started.
+	 */
+
+	private void scale(int started) throws InterruptedException {
+		String name = Thread.currentThread().getName();
+		int active = started;
+		int peak = active;
+		int maxSize = stack.getMaxSize();
+		int last = stack.size();
+		int grew = 0;
+		int drained = 0;
+
+		while (true) {
+			Thread.sleep(SCALE_INTERVAL_MS);
+
+			if (anyFinished(started)) {
+				gate.open();
+				break;
+			}
+
+			int depth = stack.size();
+			boolean backedUp = depth > last
+					|| (maxSize > 0 && depth >= maxSize * 9L / 10);
+			grew = depth > 0 && backedUp ? grew + 1 : 0;
+			drained = depth == 0 ? drained + 1 : 0;
+
+			if (grew >= GROW_SAMPLES && active < threads.length) {
+				if (active == started) {
+					startIndexer(started++);
+				}
+				active++;
+				gate.setActive(active);
+				log.info(name + ": " + depth + " documents waiting, " + last
+						+ " at the last look, running " + active + " Indexers.");
+				grew = 0;
+			} else if (drained >= DRAIN_SAMPLES && active > 1) {
+				active--;
+				gate.setActive(active);
+				log.info(name + ": the stack stayed empty, running " + active
+						+ " Indexers.");
+				drained = 0;
+			}
+			peak = Math.max(peak, active);
+			last = depth;
+		}
+
+		log.info(name + ": used at most " + peak + " of " + threads.length
+				+ " Indexers.");
+		if (section != null) {
+			section.add("peakIndexers", peak);
+		}
+	}
+
+	private boolean anyFinished(int started) {
+		for (int i = 0; i < started; i++) {
+			if (threads[i] == null || !threads[i].isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Finish off the index. optimize merges it into a single segment,
+	 * segments:N merges it down to at most N segments, and none leaves it
+	 * with whatever segments the background merges produced.
+	 */
+
+	private void finalMerge() throws Exception {
+		if (FINAL_MERGE.equals("none")) {
+			log.info("Skipping the final merge.");
+			return;
+		}
+		if (FINAL_MERGE.equals("segments") && finalSegments > 1) {
+			log.info("Merging the index down to " + finalSegments
+					+ " segments.");
+			writer.optimize(finalSegments);
+			return;
+		}
+		writer.optimize();
+	}
+
+	/*
+	 * Create the directory for a single shard, either in memory, or on disk
+	 * beside the index being built. Anything a failed build left in a shard
+	 * on disk is removed first.
+	 */
+
+	private Directory createShard(int number) throws Exception {
+		if (WRITE_MODE.equals("ram")) {
+			return new RAMDirectory();
+		}
+		File dir = new File(getShardRoot(), "shard" + number);
+		if (dir.exists()) {
+			delete(dir);
+		}
+		if (!dir.mkdirs()) {
+			throw new IOException("Unable to create the shard " + dir);
+		}
+		return FSDirectory.getDirectory(dir);
+	}
+
+	/*
+	 * Create a writer for a shard, with the same analyzer and settings as the
+	 * real index.
+	 */
+
+	private IndexWriter createShardWriter(Directory shard) throws Exception {
+		IndexWriter sw = new IndexWriter(shard, writer.getAnalyzer(), true);
+
+		// Merge policies and schedulers belong to a single writer, so the
+		// shard gets its own copies.
+		if (writer.getMergeScheduler() instanceof ConcurrentMergeScheduler) {
+			ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler();
+			cms.setMaxThreadCount(((ConcurrentMergeScheduler) writer
+					.getMergeScheduler()).getMaxThreadCount());
+			sw.setMergeScheduler(cms);
+		}
+		if (writer.getMergePolicy() instanceof LogByteSizeMergePolicy) {
+			LogByteSizeMergePolicy policy = new LogByteSizeMergePolicy();
+			policy.setMaxMergeMB(((LogByteSizeMergePolicy) writer
+					.getMergePolicy()).getMaxMergeMB());
+			sw.setMergePolicy(policy);
+		}
+		sw.setMergeFactor(writer.getMergeFactor());
+		sw.setMaxBufferedDocs(writer.getMaxBufferedDocs());
+		sw.setUseCompoundFile(writer.getUseCompoundFile());
+		return sw;
+	}
+
+	/*
+	 * Shards on disk live in a directory named after the index directory.
+	 */
+
+	private File getShardRoot() {
+		File indexDir = ((FSDirectory) writer.getDirectory()).getFile();
+		return new File(indexDir.getParentFile(), indexDir.getName()
+				+ ".shards");
+	}
+
+	/*
+	 * Close the shard writers, add the shards into the real index, and then
+	 * throw the shards away.
+	 */
+
+	private void mergeShards(Directory shards[], IndexWriter shardWriters[])
+			throws Exception {
+		int count = 0;
+
+		for (int i = 0; i < shardWriters.length; i++) {
+			if (shardWriters[i] != null) {
+				shardWriters[i].close();
+				count++;
+			}
+		}
+
+		Directory closed[] = new Directory[count];
+		count = 0;
+		for (int i = 0; i < shards.length; i++) {
+			if (shardWriters[i] != null) {
+				closed[count++] = shards[i];
+			}
+		}
+
+		log.info("Adding " + closed.length + " shards into the index.");
+		writer.addIndexesNoOptimize(closed);
+
+		for (int i = 0; i < shards.length; i++) {
+			if (shards[i] != null) {
+				shards[i].close();
+			}
+		}
+
+		if (WRITE_MODE.equals("disk")) {
+			delete(getShardRoot());
+		}
+	}
+
+	/*
+	 * Remove a file, or a directory and everything in it.
+	 */
+
+	private void delete(File f) {
+		File children[] = f.listFiles();
+		if (children != null) {
+			for (int i = 0; i < children.length; i++) {
+				delete(children[i]);
+			}
+		}
+		if (!f.delete()) {
+			log.warn("Unable to remove " + f);
+		}
+	}
 }
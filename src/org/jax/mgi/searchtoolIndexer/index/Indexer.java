@@ -1,11 +1,15 @@
 package org.jax.mgi.searchtoolIndexer.index;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.DocumentPool;
+import org.jax.mgi.searchtoolIndexer.util.Metrics;
 import org.jax.mgi.searchtoolIndexer.util.SharedDocumentStack;
 
 /**
@@ -14,10 +18,15 @@ import org.jax.mgi.searchtoolIndexer.util.SharedDocumentStack;
  * 
  * @author mhall
  * @has A Reference to the current IndexWriter, which is uses to add documents
- *      to the queue of items to be indexed.
+ *      to the queue of items to be indexed. In an incremental build, the
+ *      RowHashes used to skip unchanged documents. The Metrics section the
+ *      time spent waiting for documents and adding them is reported to. The
+ *      field to sort the documents by, if any. In an adaptive pool, the gate
+ *      that parks this Indexer while it isn't needed.
  * @does Depopulates the SharedDocumentStack, and adds them to the index, and
  *       knows to stop processing when the stack is empty, and indexing is
- *       complete.
+ *       complete. When sorting, it holds every document until the stack is
+ *       done, and adds them in order of the sort field.
  * 
  */
 
@@ -25,25 +34,67 @@ public class Indexer implements Runnable {
 
 	IndexWriter			writer;
 	SharedDocumentStack	sis;
+	RowHashes			rowHashes;
+	Metrics.Section		section;
+	String				sortField	= null;
+	IndexerGate			gate		= null;
+	volatile boolean	failed		= false;
+	int					number		= 0;
 	Logger				log	= Logger.getLogger(this.getClass().getName());
 
 	/**
-	 * The constructor sets up the internal reference to the IndexWriter, and
-	 * requests a reference to the SharedDocumentStack
+	 * The constructor sets up the internal references to the IndexWriter, and
+	 * to the SharedDocumentStack of the build this Indexer belongs to.
 	 * 
 	 * @param w
+	 * @param stack
+	 * @param hashes
+	 *            The row hashes of an incremental build, or null.
+	 * @param metrics
+	 *            The metrics section to report to, or null.
 	 */
 
-	public Indexer(IndexWriter w) throws Exception {
-		// Make the stack wait times configurable?
-		// IndexCfg config = new IndexCfg();
+	public Indexer(IndexWriter w, SharedDocumentStack stack, RowHashes hashes,
+			Metrics.Section metrics) throws Exception {
 		writer = w;
-		sis = SharedDocumentStack.getSharedDocumentStack();
+		sis = stack;
+		rowHashes = hashes;
+		section = metrics;
 	}
 
 	/**
-	 * Start to remove documents from the stack. When the stack returns a null
-	 * document that means that gathering is complete. So we can then exit.
+	 * Add the documents in order of a field's value, rather than in the order
+	 * they come off of the stack. Whole numbers are compared as numbers, and
+	 * go before any other values, and documents without the field go last. Every
+	 * document is held on the heap until gathering is complete, and since
+	 * they are off of the stack by then, none of them can be spilled.
+	 * 
+	 * @param field
+	 *            The field to sort by, or null to not sort.
+	 */
+
+	public void setSortField(String field) {
+		sortField = field;
+	}
+
+	/**
+	 * Make this Indexer part of an adaptive pool, where it waits at the gate
+	 * before taking each batch.
+	 * 
+	 * @param gate
+	 * @param number
+	 *            This Indexer's number in the pool, from 0.
+	 */
+
+	public void setGate(IndexerGate gate, int number) {
+		this.gate = gate;
+		this.number = number;
+	}
+
+	/**
+	 * Start to remove batches of documents from the stack. When the stack
+	 * returns a null batch that means that gathering is complete. So we can
+	 * then exit.
 	 */
 
 	public void run() {
@@ -52,25 +103,172 @@ public class Indexer implements Runnable {
 		int output_threshold = 0;
 		int output_incrementer = 100000;
 		Date start = new Date();
+		Metrics.Histogram popWait = null;
+		Metrics.Histogram addTime = null;
+		if (section != null) {
+			popWait = section.histogram(Metrics.POP_WAIT);
+			addTime = section.histogram(Metrics.ADD_DOCUMENT);
+		}
 		try {
-			while ((docs = (ArrayList<Document>) sis.pop(10000)) != null) {
-				for(Document doc: docs) {
-					writer.addDocument(doc);
+			long waitStart = System.nanoTime();
+			ArrayList<Document> held = null;
+			if (sortField != null) {
+				held = new ArrayList<Document>();
+			}
+			while ((docs = next()) != null) {
+				if (popWait != null) {
+					popWait.record(System.nanoTime() - waitStart);
+				}
+				try {
+					if (held != null) {
+						// Nothing can be written until every document is in.
+						held.addAll(docs);
+						waitStart = System.nanoTime();
+						continue;
+					}
+					add(docs, addTime);
+				} finally {
+					sis.finished();
 				}
 				count += docs.size();
-				docs.clear();
 				if (count >= output_threshold) {
 					Date end = new Date();
-					int dbs = (int)((double)(count / (end.getTime() - start.getTime())) * 1000);
+					long elapsed = Math.max(1, end.getTime() - start.getTime());
+					long dbs = count * 1000L / elapsed;
 					log.debug(this.hashCode() + " indexed: " + count + " Rate: " + dbs + " dps Remaining: " + sis.size());
 					output_threshold += output_incrementer;
 				}
+				waitStart = System.nanoTime();
+			}
+
+			if (held != null) {
+				log.info("Sorting " + held.size() + " documents by "
+						+ sortField);
+				add(sort(held), addTime);
 			}
 
 		} catch (Exception e) {
+			failed = true;
 			log.error(e);
 		}
 
 	}
 
+	/**
+	 * Did this Indexer stop because of an error, rather than because the
+	 * stack was done?
+	 * 
+	 * @return boolean
+	 */
+
+	public boolean hasFailed() {
+		return failed;
+	}
+
+	/*
+	 * Take the next batch, once the gate lets this Indexer through.
+	 */
+
+	private ArrayList<Document> next() throws InterruptedException {
+		if (gate != null) {
+			gate.awaitTurn(number);
+		}
+		return sis.pop();
+	}
+
+	/*
+	 * Add a batch of documents to the writer, and give them back to the
+	 * builders.
+	 */
+
+	private void add(ArrayList<Document> docs, Metrics.Histogram addTime)
+			throws Exception {
+		int added = 0;
+		for(Document doc: docs) {
+			// Incremental builds skip documents already in the index.
+			if (rowHashes == null || !rowHashes.isUnchanged(doc)) {
+				if (addTime != null) {
+					long addStart = System.nanoTime();
+					writer.addDocument(doc);
+					addTime.record(System.nanoTime() - addStart);
+				} else {
+					writer.addDocument(doc);
+				}
+				added++;
+			}
+		}
+		if (section != null) {
+			section.add(Metrics.DOCUMENTS, added);
+		}
+		// The writer is done with the documents, so the builders can
+		// have them back. Incremental builds may hold on to some.
+		DocumentPool pool = sis.getDocumentPool();
+		if (rowHashes == null && pool != null) {
+			pool.release(docs);
+		}
+	}
+
+	/*
+	 * Put the documents in order of the sort field. The sort is stable, so
+	 * documents with the same value keep the order they were pushed in.
+	 */
+
+	private ArrayList<Document> sort(ArrayList<Document> docs) {
+		SortKey keys[] = new SortKey[docs.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = new SortKey(docs.get(i), sortField);
+		}
+		Arrays.sort(keys, new Comparator<SortKey>() {
+			public int compare(SortKey a, SortKey b) {
+				return a.compareTo(b);
+			}
+		});
+
+		ArrayList<Document> sorted = new ArrayList<Document>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			sorted.add(keys[i].doc);
+		}
+		return sorted;
+	}
+
+	/*
+	 * A document with its sort field's value, parsed once up front.
+	 */
+
+	private static class SortKey {
+
+		Document	doc;
+		String		value;
+		long		number;
+		boolean		numeric	= false;
+
+		SortKey(Document doc, String field) {
+			this.doc = doc;
+			value = doc.get(field);
+			if (value != null) {
+				try {
+					number = Long.parseLong(value.trim());
+					numeric = true;
+				} catch (NumberFormatException e) {
+				}
+			}
+		}
+
+		int compareTo(SortKey other) {
+			if (value == null || other.value == null) {
+				return value == null ? (other.value == null ? 0 : 1) : -1;
+			}
+			if (numeric && other.numeric) {
+				return number < other.number ? -1
+						: (number == other.number ? 0 : 1);
+			}
+
+			// Numbers go before everything else, to keep the order total.
+			if (numeric != other.numeric) {
+				return numeric ? -1 : 1;
+			}
+			return value.compareTo(other.value);
+		}
+	}
+
 }
\ No newline at end of file
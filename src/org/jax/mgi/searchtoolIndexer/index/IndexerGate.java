@@ -0,0 +1,65 @@
+package org.jax.mgi.searchtoolIndexer.index;
+
+/**
+ * Decides which of the Indexers of an adaptive pool may take documents off
+ * of the stack. The Indexers are numbered from 0, and only those numbered
+ * below the active count may carry on, the rest are parked here until the
+ * IndexController makes them active again, or opens the gate for good once
+ * the stack has been emptied.
+ *
+ * @author mhall
+ *
+ * @has The number of active Indexers.
+ *
+ * @does Parks the Indexers that aren't needed, and wakes them when they
+ *       are.
+ *
+ */
+
+public class IndexerGate {
+
+	private int		active;
+	private boolean	open	= false;
+
+	public IndexerGate(int active) {
+		this.active = active;
+	}
+
+	/**
+	 * Wait until the numbered Indexer is active.
+	 *
+	 * @param number
+	 * @throws InterruptedException
+	 */
+
+	public synchronized void awaitTurn(int number) throws InterruptedException {
+		while (!open && number >= active) {
+			wait();
+		}
+	}
+
+	/**
+	 * Set how many Indexers are active.
+	 *
+	 * @param count
+	 */
+
+	public synchronized void setActive(int count) {
+		active = count;
+		notifyAll();
+	}
+
+	public synchronized int getActive() {
+		return active;
+	}
+
+	/**
+	 * Let every Indexer through from now on, so the parked ones can see the
+	 * end of the stack and finish.
+	 */
+
+	public synchronized void open() {
+		open = true;
+		notifyAll();
+	}
+}
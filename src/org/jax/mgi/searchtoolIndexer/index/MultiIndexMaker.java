@@ -0,0 +1,202 @@
+package org.jax.mgi.searchtoolIndexer.index;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.jax.mgi.searchtoolIndexer.util.ConnectionPool;
+import org.jax.mgi.shr.config.IndexCfg;
+
+/**
+ * Builds any number of the search tool indexes in a single JVM. This will
+ * accept command line arguments as follows:
+ *
+ * <br>
+ * MultiIndexMaker [--resume] buildDirectory indexCode [indexCode ...]
+ *
+ * <br>
+ * buildDirectory = Directory the indexes are created under, each index is
+ * placed in the same subdirectory the makeIndex_* scripts use, for example
+ * buildDirectory/genomeFeatureInexact/index. indexCode = One or more of the
+ * index codes IndexMaker accepts, or "all" to build every index. --resume
+ * carries each index on from the last checkpoint of a failed build, if it
+ * has one.
+ *
+ * Up to MAX_CONCURRENT_BUILDS indexes are built at once. Each build has its
+ * own gatherer, document stack and writer, so they don't interfere with each
+ * other.
+ *
+ * @author mhall
+ *
+ * @has A IndexCfg Object, which contains all of the configurable information
+ *      for this script. A list of IndexBuilds, one for each requested index.
+ *
+ * @does Runs the requested index builds, and prints out a timing report for
+ *       each of them along with an overall one.
+ *
+ */
+
+public class MultiIndexMaker {
+
+	private static Logger	log	= Logger.getLogger(MultiIndexMaker.class.getName());
+
+	// Main Method
+
+	public static void main(String[] args) {
+
+		boolean resume = false;
+		if (args.length > 0 && args[0].equals("--resume")) {
+			resume = true;
+			String rest[] = new String[args.length - 1];
+			System.arraycopy(args, 1, rest, 0, rest.length);
+			args = rest;
+		}
+
+		if (args.length < 2) {
+			log.error("You must supply at least two arguments to this script.");
+			log.error("BuildDir is the first, which is the directory the indexes are created under.");
+			log.error("IndexCodes: The codes of the indexes you are trying to create, or all.");
+			System.exit(1);
+		}
+
+		IndexCfg config = null;
+		int maxConcurrentBuilds = 1;
+
+		try {
+			config = new IndexCfg();
+			maxConcurrentBuilds = config.getInt("MAX_CONCURRENT_BUILDS", 1);
+		} catch (Exception e) {
+			log.error(e);
+			System.exit(1);
+		}
+
+		File buildDir = new File(args[0]);
+		List<String> codes = new ArrayList<String>();
+
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equalsIgnoreCase("all")) {
+				codes.addAll(IndexBuild.getIndexCodes());
+			} else if (IndexBuild.isIndexCode(args[i])) {
+				codes.add(args[i].toLowerCase());
+			} else {
+				log.error("You have requested to create an index that doesn't");
+				log.error(" exist: " + args[i]
+						+ "  Please check your arguments and try again.");
+				System.exit(1);
+			}
+		}
+
+		log.info("Building " + codes + " with up to " + maxConcurrentBuilds
+				+ " at once.");
+
+		Date startOverall = new Date();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+				maxConcurrentBuilds));
+		List<BuildTask> tasks = new ArrayList<BuildTask>();
+
+		for (String code : codes) {
+			BuildTask task = new BuildTask(config, buildDir, code, resume);
+			tasks.add(task);
+			pool.execute(task);
+		}
+
+		pool.shutdown();
+
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			log.error(e);
+			System.exit(1);
+		}
+
+		Date endOverall = new Date();
+
+		ConnectionPool.closeAll();
+
+		boolean failed = timeReport(tasks, startOverall, endOverall);
+
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Sets up and runs a single IndexBuild. The build isn't created until the
+	 * task starts, so its connections and writer are only opened once a slot
+	 * is free.
+	 */
+
+	private static class BuildTask implements Runnable {
+
+		private IndexCfg	config;
+		private File		buildDir;
+		private String		code;
+		private boolean		resume;
+		private IndexBuild	build	= null;
+
+		public BuildTask(IndexCfg config, File buildDir, String code,
+				boolean resume) {
+			this.config = config;
+			this.buildDir = buildDir;
+			this.code = code;
+			this.resume = resume;
+		}
+
+		public void run() {
+			try {
+				build = new IndexBuild(config, IndexBuild.getIndexDir(
+						buildDir, code), code, resume);
+				build.run();
+				build.writeMetrics();
+			} catch (Exception e) {
+				log.error("Failed to build the " + code + " index.");
+				log.error(e);
+			}
+		}
+	}
+
+	/*
+	 * Internal method used to print out a time report for each index and for
+	 * the run overall. Returns true if any of the builds failed.
+	 */
+
+	private static boolean timeReport(List<BuildTask> tasks, Date start,
+			Date end) {
+		long timeDiff = end.getTime() - start.getTime();
+		long serialTime = 0;
+		boolean failed = false;
+
+		log.info("=================================================");
+		log.info("Completed Indexing");
+
+		for (BuildTask task : tasks) {
+			if (task.build == null || !task.build.isSuccessful()) {
+				log.info(task.code + ": FAILED");
+				failed = true;
+			} else {
+				log.info(task.code + ": (" + task.build.getTime()
+						+ ") Milliseconds");
+				serialTime += task.build.getTime();
+			}
+		}
+
+		double seconds = (timeDiff / 1000.0);
+		double minutes = seconds / 60.0;
+
+		log.info("Total Time Taken: ");
+		log.info("(" + timeDiff + ") Milliseconds Total");
+		log.info("(" + seconds + ") Seconds Total");
+		log.info("(" + minutes + ") Minutes Total");
+		log.info("(" + serialTime + ") Milliseconds Summed Across Indexes");
+		log.info("=================================================");
+
+		return failed;
+	}
+
+}
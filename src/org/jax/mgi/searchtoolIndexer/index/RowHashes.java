@@ -0,0 +1,237 @@
+package org.jax.mgi.searchtoolIndexer.index;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * RowHashes drives incremental builds. Every document written in incremental
+ * mode carries a row_hash field, an MD5 of all of its field names and values
+ * (unique_key included), indexed but not stored.
+ *
+ * At the start of an incremental build the hashes already in the index are
+ * loaded along with how many documents carry each one. As the new documents
+ * come off of the stack, a document whose hash is still in the index is
+ * unchanged and is skipped, anything else is new or changed and is added.
+ * Whatever is left over at the end was deleted or changed at the source, and
+ * is deleted from the index.
+ *
+ * @author mhall
+ *
+ * @has A map of row hash -> number of documents in the existing index, and
+ *      a copy of any duplicated document that may need to be written back.
+ *
+ * @does Decides which documents need to be written, and removes the ones
+ *       that are no longer produced.
+ *
+ */
+
+public class RowHashes {
+
+	public static final String	ROW_HASH	= "row_hash";
+
+	private static final char[]	HEX			= "0123456789abcdef".toCharArray();
+
+	// Hash -> documents in the index with it, that haven't been matched yet.
+	private HashMap<String, int[]>	remaining	= new HashMap<String, int[]>();
+
+	// Hash -> how many documents the index started out with, for duplicates.
+	private HashMap<String, Integer>	duplicates	= new HashMap<String, Integer>();
+
+	// A copy of each duplicated document, in case some copies are removed.
+	private HashMap<String, Document>	duplicateDocs	= new HashMap<String, Document>();
+
+	private int					existing	= 0;
+	private int					unchanged	= 0;
+	private int					added		= 0;
+
+	private ThreadLocal<MessageDigest>	digest	= new ThreadLocal<MessageDigest>();
+
+	private Logger				log			= Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Load the row hashes out of an existing index. If the index doesn't
+	 * exist, or was built without row hashes, this starts out empty and every
+	 * document will be added.
+	 *
+	 * @param indexDir
+	 * @throws Exception
+	 */
+
+	public RowHashes(File indexDir) throws Exception {
+		if (!IndexReader.indexExists(indexDir)) {
+			return;
+		}
+
+		IndexReader reader = IndexReader.open(indexDir);
+		try {
+			existing = reader.numDocs();
+			TermEnum terms = reader.terms(new Term(ROW_HASH, ""));
+			TermDocs termDocs = reader.termDocs();
+
+			do {
+				Term t = terms.term();
+				if (t == null || !t.field().equals(ROW_HASH)) {
+					break;
+				}
+
+				// docFreq still counts deleted documents.
+				int count = terms.docFreq();
+				if (reader.hasDeletions()) {
+					count = 0;
+					termDocs.seek(t);
+					while (termDocs.next()) {
+						count++;
+					}
+				}
+
+				if (count > 0) {
+					remaining.put(t.text(), new int[] {count});
+					if (count > 1) {
+						duplicates.put(t.text(), Integer.valueOf(count));
+					}
+				}
+			} while (terms.next());
+
+			termDocs.close();
+			terms.close();
+		} finally {
+			reader.close();
+		}
+
+		if (existing > 0 && remaining.isEmpty()) {
+			log.info("The existing index has no row hashes, it will be rebuilt"
+					+ " in full.");
+		} else {
+			log.info("Loaded " + remaining.size() + " row hashes for "
+					+ existing + " documents.");
+		}
+	}
+
+	/**
+	 * Can the existing index be updated in place? It can't if it holds
+	 * documents that were written without row hashes.
+	 *
+	 * @return boolean
+	 */
+
+	public boolean canUpdate() {
+		return existing > 0 && !remaining.isEmpty();
+	}
+
+	/**
+	 * Hash a document, and add the hash to it as the row_hash field.
+	 *
+	 * @param doc
+	 * @return The hash
+	 */
+
+	public String addHash(Document doc) throws Exception {
+		MessageDigest md = digest.get();
+		if (md == null) {
+			md = MessageDigest.getInstance("MD5");
+			digest.set(md);
+		}
+
+		List<?> fields = doc.getFields();
+		for (int i = 0; i < fields.size(); i++) {
+			Fieldable f = (Fieldable) fields.get(i);
+			if (f.name().equals(ROW_HASH)) {
+				continue;
+			}
+			md.update(f.name().getBytes("UTF-8"));
+			md.update((byte) 0);
+			if (f.stringValue() != null) {
+				md.update(f.stringValue().getBytes("UTF-8"));
+			}
+			md.update((byte) 0);
+		}
+
+		byte[] bytes = md.digest();
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		String hash = new String(hex);
+
+		doc.add(new Field(ROW_HASH, hash, Field.Store.NO,
+				Field.Index.UN_TOKENIZED));
+		return hash;
+	}
+
+	/**
+	 * Is a document already in the index? If it is, one of the index's
+	 * copies is marked as used, and the document doesn't need to be written.
+	 *
+	 * @param doc
+	 * @return true if the document is unchanged.
+	 */
+
+	public boolean isUnchanged(Document doc) throws Exception {
+		String hash = addHash(doc);
+		synchronized (this) {
+			int[] count = remaining.get(hash);
+			if (count == null) {
+				added++;
+				return false;
+			}
+			if (duplicates.containsKey(hash) && !duplicateDocs.containsKey(hash)) {
+				duplicateDocs.put(hash, doc);
+			}
+			if (--count[0] == 0) {
+				remaining.remove(hash);
+			}
+			unchanged++;
+			return true;
+		}
+	}
+
+	/**
+	 * Remove every document from the index that wasn't produced by this
+	 * build. This must be called once all of the Indexers have finished.
+	 *
+	 * @param writer
+	 * @throws Exception
+	 */
+
+	public synchronized void deleteRemaining(IndexWriter writer)
+			throws Exception {
+		int deleted = 0;
+
+		for (Map.Entry<String, int[]> entry : remaining.entrySet()) {
+			String hash = entry.getKey();
+			int left = entry.getValue()[0];
+
+			// Lucene can only delete every copy of a duplicated document, so
+			// write back the copies that are still wanted.
+			writer.deleteDocuments(new Term(ROW_HASH, hash));
+			deleted += left;
+
+			Integer total = duplicates.get(hash);
+			if (total != null && left < total.intValue()) {
+				Document doc = duplicateDocs.get(hash);
+				for (int i = 0; i < total.intValue() - left; i++) {
+					writer.addDocument(doc);
+				}
+			}
+		}
+
+		log.info("Incremental build: " + existing + " existing, " + unchanged
+				+ " unchanged, " + added + " added, " + deleted + " deleted.");
+		remaining.clear();
+		duplicateDocs.clear();
+	}
+}
@@ -1,7 +1,11 @@
 package org.jax.mgi.searchtoolIndexer.luceneDocBuilder;
 
+import java.util.List;
+
 import org.apache.log4j.Logger;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.jax.mgi.searchtoolIndexer.util.TextNormalizer;
 
 /**
  * This class is the base class that all LuceneDocBuilders share.
@@ -10,6 +14,10 @@ import org.apache.lucene.document.Document;
  * 
  * @has nothing
  * @does defines a template for all LuceneDocBuilders to implement.
+ * 
+ *       When the thread has a current DocumentPool, documents are taken from
+ *       the pool, and the fields they had last time are given new values
+ *       rather than being created again.
  */
 
 public abstract class AbstractLuceneDocBuilder {
@@ -26,7 +34,14 @@ public abstract class AbstractLuceneDocBuilder {
 	// Common Fields (Shared in > 90% of the indexes)
 
 	protected String		db_key		= "";
-	protected StringBuffer	data		= new StringBuffer("");
+	protected StringBuilder	data		= new StringBuilder("");
+
+	// The fields of a recycled document, and how many have been filled in.
+	private List<?>		reused		= null;
+	private int				fieldCount	= 0;
+
+	// Cleans up the data for the index, without the regex.
+	protected TextNormalizer	normalizer	= new TextNormalizer();
 
 	/**
 	 * Common clear method, which calls a locally defined clearLocal method.
@@ -35,7 +50,7 @@ public abstract class AbstractLuceneDocBuilder {
 
 	public void clear() {
 		this.db_key = "";
-		this.data = new StringBuffer("");
+		this.data.setLength(0);
 		this.hasError = false;
 		clearLocal();
 	}
@@ -56,10 +71,68 @@ public abstract class AbstractLuceneDocBuilder {
 
 	public Document getDocument() {
 		checkErrors();
+		DocumentPool pool = DocumentPool.current();
+		if (pool != null) {
+			doc = pool.acquire(getClass());
+			reused = doc.getFields();
+			fieldCount = 0;
+			prepareDocument();
+
+			// Drop any fields left over from the document's last use.
+			if (fieldCount < reused.size()) {
+				reused.subList(fieldCount, reused.size()).clear();
+			}
+			reused = null;
+			return doc;
+		}
 		doc = new Document();
 		return prepareDocument();
 	}
 
+	/**
+	 * Add a field to the document being prepared. On a recycled document
+	 * this sets the value of the matching field from its last use, if it
+	 * has one.
+	 * 
+	 * @param name
+	 * @param value
+	 * @param store
+	 * @param index
+	 */
+
+	protected void addField(String name, String value, Field.Store store,
+			Field.Index index) {
+		if (reused != null) {
+			if (fieldCount < reused.size()) {
+				Field field = (Field) reused.get(fieldCount);
+				if (value != null && sameLayout(field, name, store, index)) {
+					field.setValue(value);
+					fieldCount++;
+					return;
+				}
+
+				// The layout differs from here on, so start over from here.
+				reused.subList(fieldCount, reused.size()).clear();
+			}
+			fieldCount++;
+		}
+		doc.add(new Field(name, value, store, index));
+	}
+
+	/*
+	 * Was this field created with the same name and settings?
+	 */
+
+	private static boolean sameLayout(Field field, String name,
+			Field.Store store, Field.Index index) {
+		return field.name().equals(name)
+				&& field.isStored() == (store != Field.Store.NO)
+				&& field.isCompressed() == (store == Field.Store.COMPRESS)
+				&& field.isIndexed() == (index != Field.Index.NO)
+				&& field.isTokenized() == (index == Field.Index.TOKENIZED)
+				&& field.getOmitNorms() == (index == Field.Index.NO_NORMS);
+	}
+
 	/**
 	 * Logs an error message is the boolean hasError flag has been set.
 	 */
@@ -125,7 +198,8 @@ public abstract class AbstractLuceneDocBuilder {
 
 	public void setData(String data) {
 		if (data != null) {
-			this.data = new StringBuffer(data);
+			this.data.setLength(0);
+			this.data.append(data);
 		}
 		else {
 			// System.out.println("Setting Error: setData: " + data);
@@ -0,0 +1,145 @@
+package org.jax.mgi.searchtoolIndexer.luceneDocBuilder;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.document.Document;
+
+/**
+ * The DocumentPool lets the doc builders reuse Lucene Documents, along with
+ * their Fields, once the Indexers are done with them.
+ *
+ * A builder can't simply keep one Document and overwrite it for every row,
+ * since its documents sit on the shared document stack until an Indexer
+ * writes them. Instead each builder class has a free list here. The builders
+ * take a Document off of their free list when there is one, and set new
+ * values into its Fields, and the Indexers hand every Document back once the
+ * IndexWriter has added it. Documents the pool didn't hand out are ignored
+ * when they come back.
+ *
+ * Each build has its own pool, kept by its document stack, so builds run at
+ * the same time never share Documents. The builders don't know which stack
+ * they are building for, so the gatherer threads make their build's pool
+ * the current pool of the thread, the same way they do for Metrics
+ * sections.
+ *
+ * Reuse is off unless REUSE_DOCUMENTS is set, and is never used for
+ * incremental builds, which hold on to some of their documents.
+ *
+ * @author mhall
+ *
+ * @has A free list of Documents for each builder class, and a map of every
+ *      Document handed out to the free list it belongs on.
+ *
+ * @does Hands out recycled Documents, and takes them back.
+ *
+ */
+
+public class DocumentPool {
+
+	private static ThreadLocal<DocumentPool>	current		= new ThreadLocal<DocumentPool>();
+
+	// Free Documents kept per builder class, past this they are let go.
+	private int									maxFree;
+
+	private ConcurrentHashMap<Class<?>, FreeList>	freeLists	= new ConcurrentHashMap<Class<?>, FreeList>();
+
+	// Every Document handed out -> the free list it goes back on. Documents
+	// don't override equals, so they are looked up by identity.
+	private ConcurrentHashMap<Document, FreeList>	owners		= new ConcurrentHashMap<Document, FreeList>();
+
+	/**
+	 * @param maxFreeDocuments
+	 *            How many free Documents to keep for each builder class.
+	 */
+
+	public DocumentPool(int maxFreeDocuments) {
+		maxFree = maxFreeDocuments;
+	}
+
+	/**
+	 * The pool the calling thread's builders take their Documents from.
+	 *
+	 * @return The pool, or null when Documents aren't reused.
+	 */
+
+	public static DocumentPool current() {
+		return current.get();
+	}
+
+	/**
+	 * Make a pool the current pool of the calling thread.
+	 *
+	 * @param pool
+	 *            The pool, or null to stop reusing Documents.
+	 * @return The pool that was current before.
+	 */
+
+	public static DocumentPool setCurrent(DocumentPool pool) {
+		DocumentPool previous = current.get();
+		if (pool == null) {
+			current.remove();
+		} else {
+			current.set(pool);
+		}
+		return previous;
+	}
+
+	/**
+	 * Take a free Document for a builder class, or create one that will be
+	 * taken back once it has been indexed.
+	 *
+	 * @param builderClass
+	 * @return A Document, which may still hold the fields of its last use.
+	 */
+
+	Document acquire(Class<?> builderClass) {
+		FreeList list = freeLists.get(builderClass);
+		if (list == null) {
+			freeLists.putIfAbsent(builderClass, new FreeList());
+			list = freeLists.get(builderClass);
+		}
+
+		Document doc = list.documents.poll();
+		if (doc != null) {
+			list.size.decrementAndGet();
+			return doc;
+		}
+
+		doc = new Document();
+		owners.put(doc, list);
+		return doc;
+	}
+
+	/**
+	 * Hand a batch of Documents back, once they have been indexed.
+	 *
+	 * @param docs
+	 */
+
+	public void release(List<Document> docs) {
+		for (Document doc : docs) {
+			FreeList list = owners.get(doc);
+			if (list == null) {
+				continue;
+			}
+			if (list.size.get() >= maxFree) {
+				owners.remove(doc);
+				continue;
+			}
+			list.size.incrementAndGet();
+			list.documents.add(doc);
+		}
+	}
+
+	/*
+	 * The free Documents of one builder class.
+	 */
+
+	private static class FreeList {
+		ConcurrentLinkedQueue<Document>	documents	= new ConcurrentLinkedQueue<Document>();
+		AtomicInteger					size		= new AtomicInteger();
+	}
+}
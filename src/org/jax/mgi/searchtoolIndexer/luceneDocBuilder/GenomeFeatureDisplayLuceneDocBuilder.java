@@ -54,26 +54,26 @@ public class GenomeFeatureDisplayLuceneDocBuilder extends AbstractLuceneDocBuild
 	 */
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_FEATURE_SYMBOL, this.symbol,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_CHROMOSOME, this.chr,
-				Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_FEATURE_NAME, this.name,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_FEATURE_TYPE, this.marker_type,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_DB_KEY, this.db_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_MGI_ID, this.acc_id,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_STRAND, this.strand,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_LOC_DISPLAY, this.locDisplay,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_OBJECT_TYPE, this.objectType,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_BATCH_FORWARD_VALUE, this.batchValue,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_FEATURE_SYMBOL, this.symbol,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_CHROMOSOME, this.chr,
+				Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_FEATURE_NAME, this.name,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_FEATURE_TYPE, this.marker_type,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_DB_KEY, this.db_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_MGI_ID, this.acc_id,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_STRAND, this.strand,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_LOC_DISPLAY, this.locDisplay,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_OBJECT_TYPE, this.objectType,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_BATCH_FORWARD_VALUE, this.batchValue,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 		return doc;
 	}
 
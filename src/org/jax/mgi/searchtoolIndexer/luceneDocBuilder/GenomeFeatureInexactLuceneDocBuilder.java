@@ -23,7 +23,7 @@ public class GenomeFeatureInexactLuceneDocBuilder extends AbstractLuceneDocBuild
 	private String			isCurrent		= "1";
 	private String			organism		= "1";
 	private String			vocabulary		= "";
-	private StringBuffer	raw_data		= new StringBuffer("");
+	private StringBuilder	raw_data		= new StringBuilder("");
 	private String			display_type	= "";
 	private String			unique_key		= "";
 
@@ -36,7 +36,7 @@ public class GenomeFeatureInexactLuceneDocBuilder extends AbstractLuceneDocBuild
 		this.isCurrent = "1";
 		this.organism = "1";
 		this.vocabulary = "";
-		this.raw_data = new StringBuffer("");
+		this.raw_data.setLength(0);
 		this.display_type = "";
 		this.unique_key = "";
 	}
@@ -52,28 +52,32 @@ public class GenomeFeatureInexactLuceneDocBuilder extends AbstractLuceneDocBuild
 
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_DB_KEY, this.db_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_DATA,
-				this.data.toString().replaceAll("[\\W_]", " "),
-				Field.Store.YES, Field.Index.TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_RAW_DATA, this.raw_data.toString(),
-				Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_SDATA,
-				this.data.toString().replaceAll("[\\W_]", " "),
-				Field.Store.YES, Field.Index.TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_DATA_TYPE, this.data_type,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_IS_CURRENT,
-				this.isCurrent, Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_ORGANISM, this.organism,
-				Field.Store.YES, Field.Index.TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_OBJ_TYPE, this.vocabulary,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_TYPE_DISPLAY, this.display_type,
-				Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		// Both data fields index the same words, so only work them out once.
+
+		String words = normalizer.nonWordToSpace(data);
+
+		addField(IndexConstants.COL_DB_KEY, this.db_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_DATA,
+				words,
+				Field.Store.YES, Field.Index.TOKENIZED);
+		addField(IndexConstants.COL_RAW_DATA, this.raw_data.toString(),
+				Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_SDATA,
+				words,
+				Field.Store.YES, Field.Index.TOKENIZED);
+		addField(IndexConstants.COL_DATA_TYPE, this.data_type,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_IS_CURRENT,
+				this.isCurrent, Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_ORGANISM, this.organism,
+				Field.Store.YES, Field.Index.TOKENIZED);
+		addField(IndexConstants.COL_OBJ_TYPE, this.vocabulary,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_TYPE_DISPLAY, this.display_type,
+				Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 		return doc;
 	}
 
@@ -223,7 +227,8 @@ public class GenomeFeatureInexactLuceneDocBuilder extends AbstractLuceneDocBuild
 
 	public void setRaw_data(String raw_data) {
 		if (raw_data != null) {
-			this.raw_data = new StringBuffer(raw_data);
+			this.raw_data.setLength(0);
+			this.raw_data.append(raw_data);
 		}
 		else {
 			this.hasError = true;
@@ -54,33 +54,32 @@ public class GenomeFeatureSymbolLuceneDocBuilder extends AbstractLuceneDocBuilde
 
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_DATA,
-				this.data.toString().replaceAll("\\s+", " ").replaceAll("^\\s", "")
-						.replaceAll("\\s$", "").toLowerCase(),
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DATA,
+				normalizer.collapseWhitespace(this.data),
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
 		// This index uses a raw_data field, but we don't actually transform
 		// the normal data field anymore. (Since this was split out)
 		// As such it remains in for now, but perhaps could be redesigned
 		// at some later point.
 
-		doc.add(new Field(IndexConstants.COL_RAW_DATA, this.raw_data,
-				Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_RAW_DATA, this.raw_data,
+				Field.Store.YES, Field.Index.NO);
 
-		doc.add(new Field(IndexConstants.COL_DATA_TYPE, this.data_type,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DATA_TYPE, this.data_type,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_DB_KEY, this.db_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DB_KEY, this.db_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_TYPE_DISPLAY, this.display_type,
-				Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_TYPE_DISPLAY, this.display_type,
+				Field.Store.YES, Field.Index.NO);
 
-		doc.add(new Field(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_OBJECT_TYPE, this.object_type,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_OBJECT_TYPE, this.object_type,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
 		return doc;
 	}
@@ -18,9 +18,9 @@ import org.jax.mgi.shr.searchtool.IndexConstants;
 
 public class GenomeFeatureVocabDagLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
-	private StringBuffer	gene_ids	= new StringBuffer("");
+	private StringBuilder	gene_ids	= new StringBuilder("");
 	private String			vocabulary	= "";
-	private StringBuffer	child_ids	= new StringBuffer("");
+	private StringBuilder	child_ids	= new StringBuilder("");
 	private String			acc_id		= "";
 	private String			unique_key	= "";
 	private String			object_type	= "";
@@ -30,9 +30,9 @@ public class GenomeFeatureVocabDagLuceneDocBuilder extends AbstractLuceneDocBuil
 	 */
 
 	protected void clearLocal() {
-		gene_ids = new StringBuffer("");
+		gene_ids.setLength(0);
 		vocabulary = "";
-		child_ids = new StringBuffer("");
+		child_ids.setLength(0);
 		acc_id = "";
 		unique_key = "";
 		object_type = "";
@@ -45,12 +45,12 @@ public class GenomeFeatureVocabDagLuceneDocBuilder extends AbstractLuceneDocBuil
 	 */
 
 	protected Document prepareDocument() {
-		doc.add(new Field(IndexConstants.COL_DB_KEY, db_key, Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_VOCABULARY, vocabulary, Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_FEATURE_IDS, gene_ids.toString(), Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_CHILD_IDS, child_ids.toString(), Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_UNIQUE_KEY, unique_key, Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_OBJECT_TYPE, object_type, Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DB_KEY, db_key, Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_VOCABULARY, vocabulary, Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_FEATURE_IDS, gene_ids.toString(), Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_CHILD_IDS, child_ids.toString(), Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_UNIQUE_KEY, unique_key, Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_OBJECT_TYPE, object_type, Field.Store.YES, Field.Index.UN_TOKENIZED);
 		return doc;
 	}
 
@@ -80,7 +80,8 @@ public class GenomeFeatureVocabDagLuceneDocBuilder extends AbstractLuceneDocBuil
 
 	public void setGene_ids(String gene_ids) {
 		if (gene_ids != null) {
-			this.gene_ids = new StringBuffer(gene_ids);
+			this.gene_ids.setLength(0);
+			this.gene_ids.append(gene_ids);
 		}
 		else {
 			this.hasError = true;
@@ -163,7 +164,8 @@ public class GenomeFeatureVocabDagLuceneDocBuilder extends AbstractLuceneDocBuil
 
 	public void setChild_ids(String child_ids) {
 		if (child_ids != null) {
-			this.child_ids = new StringBuffer(child_ids);
+			this.child_ids.setLength(0);
+			this.child_ids.append(child_ids);
 		}
 		else {
 			this.hasError = true;
@@ -50,31 +50,30 @@ public class GenomeFeatureVocabExactLuceneDocBuilder extends AbstractLuceneDocBu
 
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_DATA,
-				this.data.toString().replaceAll("\\s+", " ")
-						.replaceAll("^\\s", "").replaceAll("\\s$", "").toLowerCase(),
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DATA,
+				normalizer.collapseWhitespace(this.data),
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_RAW_DATA, this.raw_data,
-				Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_RAW_DATA, this.raw_data,
+				Field.Store.YES, Field.Index.NO);
 
-		doc.add(new Field(IndexConstants.COL_VOCABULARY, this.vocabulary,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_VOCABULARY, this.vocabulary,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_DATA_TYPE, this.data_type,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DATA_TYPE, this.data_type,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_DB_KEY, this.db_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DB_KEY, this.db_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_TYPE_DISPLAY, this.display_type,
-				Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_TYPE_DISPLAY, this.display_type,
+				Field.Store.YES, Field.Index.NO);
 
-		doc.add(new Field(IndexConstants.COL_PROVIDER, this.provider,
-				Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_PROVIDER, this.provider,
+				Field.Store.YES, Field.Index.NO);
 
-		doc.add(new Field(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
 		return doc;
 	}
@@ -19,6 +19,20 @@ import org.jax.mgi.shr.searchtool.IndexConstants;
 
 public class NonIDTokenLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
+	// Whether the data is a single token the analyzer has already produced.
+	private boolean	preAnalyzed	= false;
+
+	/**
+	 * When set, the data is taken to be one token that the index's analyzer
+	 * has already produced, and is indexed as is rather than analyzed again.
+	 * 
+	 * @param preAnalyzed
+	 */
+
+	public void setPreAnalyzed(boolean preAnalyzed) {
+		this.preAnalyzed = preAnalyzed;
+	}
+
 	/**
 	 * This method is required by the LuceneDocBuilder class.
 	 */
@@ -34,8 +48,9 @@ public class NonIDTokenLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_DATA, this.data.toString(),
-				Field.Store.YES, Field.Index.TOKENIZED));
+		addField(IndexConstants.COL_DATA, this.data.toString(),
+				Field.Store.YES, preAnalyzed ? Field.Index.UN_TOKENIZED
+						: Field.Index.TOKENIZED);
 		return doc;
 	}
 
@@ -42,10 +42,10 @@ public class OtherDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_DATA_TYPE, this.data_type, Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_FEATURE_NAME, this.name, Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_DB_KEY, this.db_key, Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_QUALIFIER1, this.qualifier, Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_DATA_TYPE, this.data_type, Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_FEATURE_NAME, this.name, Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_DB_KEY, this.db_key, Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_QUALIFIER1, this.qualifier, Field.Store.YES, Field.Index.NO);
 		return doc;
 	}
 
@@ -18,13 +18,13 @@ import org.jax.mgi.shr.searchtool.IndexConstants;
 
 public class VocabDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
-	private StringBuffer	gene_ids				= new StringBuffer("");
+	private StringBuilder	gene_ids				= new StringBuilder("");
 	private String			vocabulary				= "";
 	private String			marker_count			= "";
 	private String			annotation_count		= "0";
 	private String			annotation_objects		= "0";
 	private String			annotation_object_type	= "0";
-	private StringBuffer	child_ids				= new StringBuffer("");
+	private StringBuilder	child_ids				= new StringBuilder("");
 	private String			acc_id					= "";
 	private String			type_display			= "";
 
@@ -33,13 +33,13 @@ public class VocabDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 	 */
 
 	protected void clearLocal() {
-		gene_ids = new StringBuffer("");
+		gene_ids.setLength(0);
 		vocabulary = "";
 		marker_count = "0";
 		annotation_count = "0";
 		annotation_objects = "0";
 		annotation_object_type = "0";
-		child_ids = new StringBuffer("");
+		child_ids.setLength(0);
 		acc_id = "";
 		type_display = "";
 	}
@@ -52,21 +52,21 @@ public class VocabDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_DB_KEY, db_key, Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_VOCABULARY, vocabulary, Field.Store.YES, Field.Index.UN_TOKENIZED));
-		doc.add(new Field(IndexConstants.COL_CONTENTS, data.toString(), Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_GENE_IDS, gene_ids.toString(), Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_CHILD_IDS, child_ids.toString(), Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_MARKER_COUNT, marker_count, Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_ANNOT_COUNT, annotation_count, Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_ANNOT_OBJECTS, annotation_objects, Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_ANNOT_OBJECT_TYPE, annotation_object_type, Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_DB_KEY, db_key, Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_VOCABULARY, vocabulary, Field.Store.YES, Field.Index.UN_TOKENIZED);
+		addField(IndexConstants.COL_CONTENTS, data.toString(), Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_GENE_IDS, gene_ids.toString(), Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_CHILD_IDS, child_ids.toString(), Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_MARKER_COUNT, marker_count, Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_ANNOT_COUNT, annotation_count, Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_ANNOT_OBJECTS, annotation_objects, Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_ANNOT_OBJECT_TYPE, annotation_object_type, Field.Store.YES, Field.Index.NO);
 
 		// This is very special in that its a realized field.
 
-		doc.add(new Field(IndexConstants.COL_ANNOT_DISPLAY, getAnnot_display(), Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_ACC_ID, acc_id, Field.Store.YES, Field.Index.NO));
-		doc.add(new Field(IndexConstants.COL_TYPE_DISPLAY, type_display, Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_ANNOT_DISPLAY, getAnnot_display(), Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_ACC_ID, acc_id, Field.Store.YES, Field.Index.NO);
+		addField(IndexConstants.COL_TYPE_DISPLAY, type_display, Field.Store.YES, Field.Index.NO);
 
 		return doc;
 	}
@@ -120,7 +120,8 @@ public class VocabDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
 	public void setGene_ids(String gene_ids) {
 		if (gene_ids != null) {
-			this.gene_ids = new StringBuffer(gene_ids);
+			this.gene_ids.setLength(0);
+			this.gene_ids.append(gene_ids);
 		}
 		else {
 			// System.out.println("Setting Error: setGene_ids: gene_ids: " +
@@ -152,6 +153,20 @@ public class VocabDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 		}
 	}
 
+	/**
+	 * Add a single gene key onto the list, without creating a String for it.
+	 * Commas are inserted automatically.
+	 * 
+	 * @param gene_id
+	 */
+
+	public void appendGene_ids(int gene_id) {
+		if (this.gene_ids.length() != 0) {
+			this.gene_ids.append(",");
+		}
+		this.gene_ids.append(gene_id);
+	}
+
 	/**
 	 * Returns the vocabulary.
 	 * 
@@ -305,7 +320,8 @@ public class VocabDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
 	public void setChild_ids(String child_ids) {
 		if (child_ids != null) {
-			this.child_ids = new StringBuffer(child_ids);
+			this.child_ids.setLength(0);
+			this.child_ids.append(child_ids);
 		}
 		else {
 			// System.out.println("Setting Error: setChild_ids: child_ids: " +
@@ -335,6 +351,20 @@ public class VocabDisplayLuceneDocBuilder extends AbstractLuceneDocBuilder {
 		}
 	}
 
+	/**
+	 * Append a new child key onto the list, without creating a String for it.
+	 * Commas are inserted automatically.
+	 * 
+	 * @param child_id
+	 */
+
+	public void appendChild_ids(int child_id) {
+		if (this.child_ids.length() != 0) {
+			this.child_ids.append(",");
+		}
+		this.child_ids.append(child_id);
+	}
+
 	/**
 	 * Returns the accession id
 	 * 
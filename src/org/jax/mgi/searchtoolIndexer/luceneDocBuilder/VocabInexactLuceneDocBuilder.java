@@ -50,31 +50,35 @@ public class VocabInexactLuceneDocBuilder extends AbstractLuceneDocBuilder {
 
 	protected Document prepareDocument() {
 
-		doc.add(new Field(IndexConstants.COL_DB_KEY, this.db_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		// Both data fields index the same words, so only work them out once.
 
-		doc.add(new Field(IndexConstants.COL_DATA,
-				this.data.toString().replaceAll("[\\W_]", " "),
-				Field.Store.YES, Field.Index.TOKENIZED));
+		String words = normalizer.nonWordToSpace(data);
 
-		doc.add(new Field(IndexConstants.COL_RAW_DATA, this.raw_data,
-				Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_DB_KEY, this.db_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_SDATA,
-				this.data.toString().replaceAll("[\\W_]", " "),
-				Field.Store.YES, Field.Index.TOKENIZED));
+		addField(IndexConstants.COL_DATA,
+				words,
+				Field.Store.YES, Field.Index.TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_VOCABULARY, this.vocabulary,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_RAW_DATA, this.raw_data,
+				Field.Store.YES, Field.Index.NO);
 
-		doc.add(new Field(IndexConstants.COL_DATA_TYPE, this.data_type,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_SDATA,
+				words,
+				Field.Store.YES, Field.Index.TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_TYPE_DISPLAY,
-				this.display_type, Field.Store.YES, Field.Index.NO));
+		addField(IndexConstants.COL_VOCABULARY, this.vocabulary,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
-		doc.add(new Field(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
-				Field.Store.YES, Field.Index.UN_TOKENIZED));
+		addField(IndexConstants.COL_DATA_TYPE, this.data_type,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
+
+		addField(IndexConstants.COL_TYPE_DISPLAY,
+				this.display_type, Field.Store.YES, Field.Index.NO);
+
+		addField(IndexConstants.COL_UNIQUE_KEY, this.unique_key,
+				Field.Store.YES, Field.Index.UN_TOKENIZED);
 
 		return doc;
 	}
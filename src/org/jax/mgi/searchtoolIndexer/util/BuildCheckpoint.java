@@ -0,0 +1,330 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Lets a failed index build be resumed from the last gatherer subsection it
+ * finished, rather than from the start.
+ *
+ * Each time a subsection finishes, the gatherer waits for the Indexers to
+ * write all of its documents, flushes the IndexWriter, which commits them
+ * to the index, and the subsection is added to a manifest beside the index
+ * along with the index's document count at that point. The manifest is
+ * removed once the build has finished. The bounds of any key ranges a
+ * gatherer splits its scans into are kept in the manifest too, so that a
+ * resumed build splits them the same way even after the data has changed.
+ *
+ * A resumed build deletes any documents written after the last checkpoint,
+ * which belong to the subsection that was running when the build failed,
+ * and then appends to the index, skipping the subsections in the manifest.
+ * This relies on the documents keeping the order they were added in, which
+ * holds for a single shared writer that only ever adds documents. It also
+ * relies on document numbers matching the counts in the manifest, so the
+ * deleted documents are merged away straight after the roll back, before a
+ * later merge could renumber the documents behind them.
+ *
+ * @author mhall
+ *
+ * @has The manifest file, the subsections finished so far, the key range
+ *      bounds in use, and the writer and stack of the build being
+ *      checkpointed.
+ *
+ * @does Records finished subsections, and rolls a failed build's index back
+ *       to its last checkpoint.
+ *
+ */
+
+public class BuildCheckpoint {
+
+	private static final String	RANGES		= "ranges\t";
+
+	private File				indexDir;
+	private File				manifest;
+	private HashSet<String>		completed	= new HashSet<String>();
+	private HashMap<String, long[]>	bounds	= new HashMap<String, long[]>();
+
+	// The index's document count at the last checkpoint.
+	private int					documents	= 0;
+
+	private IndexWriter			writer;
+	private SharedDocumentStack	stack;
+
+	private Logger				log			= Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Set up checkpointing for the build of an index. When resuming, the
+	 * subsections already finished are read from the manifest, otherwise
+	 * any manifest left over from an earlier build is thrown away.
+	 *
+	 * @param indexDir
+	 * @param resume
+	 * @throws IOException
+	 */
+
+	public BuildCheckpoint(File indexDir, boolean resume) throws IOException {
+		this.indexDir = indexDir;
+		manifest = new File(indexDir.getParentFile(), indexDir.getName()
+				+ ".checkpoint");
+
+		if (!manifest.exists()) {
+			if (resume) {
+				log.info("No checkpoint in " + manifest
+						+ ", building the index from the start.");
+			}
+			return;
+		}
+		if (!resume) {
+			remove();
+			return;
+		}
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(manifest), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(RANGES)) {
+					readBounds(line);
+					continue;
+				}
+				int tab = line.lastIndexOf('\t');
+				if (line.startsWith("#") || tab < 0) {
+					continue;
+				}
+				completed.add(line.substring(0, tab));
+				documents = Integer.parseInt(line.substring(tab + 1));
+			}
+		} finally {
+			in.close();
+		}
+		log.info("Resuming from " + manifest + ", " + completed.size()
+				+ " subsections and " + documents + " documents are done.");
+	}
+
+	/*
+	 * Read a line of key range bounds, which is the RANGES prefix, the
+	 * table and column, and the bounds separated by commas.
+	 */
+
+	private void readBounds(String line) {
+		String parts[] = line.split("\t", -1);
+		String values[] = parts[2].length() == 0 ? new String[0] : parts[2]
+				.split(",");
+		long range[] = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			range[i] = Long.parseLong(values[i]);
+		}
+		bounds.put(parts[1], range);
+	}
+
+	/**
+	 * Is this build carrying on from the checkpoint of an earlier one?
+	 *
+	 * @return boolean
+	 */
+
+	public boolean isResumed() {
+		return !completed.isEmpty();
+	}
+
+	public File getIndexDir() {
+		return indexDir;
+	}
+
+	/**
+	 * Roll the index back to the last checkpoint, by deleting every document
+	 * added after it and then optimizing the index, so that no deleted
+	 * documents are left to shift the numbers of those added later. This
+	 * must be called before the build's writer is opened, and removes the
+	 * lock the failed build may have left behind.
+	 *
+	 * @throws IOException
+	 */
+
+	public void rollBack() throws IOException {
+		Directory dir = FSDirectory.getDirectory(indexDir);
+		boolean deletions;
+		try {
+			if (IndexReader.isLocked(dir)) {
+				log.warn("Removing the lock left on " + indexDir);
+				IndexReader.unlock(dir);
+			}
+
+			IndexReader reader = IndexReader.open(dir);
+			try {
+				if (reader.maxDoc() < documents) {
+					throw new IOException(indexDir + " has " + reader.maxDoc()
+							+ " documents, but was checkpointed at "
+							+ documents);
+				}
+				int removed = 0;
+				for (int i = documents; i < reader.maxDoc(); i++) {
+					if (!reader.isDeleted(i)) {
+						reader.deleteDocument(i);
+						removed++;
+					}
+				}
+				log.info("Removed " + removed
+						+ " documents written after the last checkpoint.");
+				deletions = reader.hasDeletions();
+			} finally {
+				reader.close();
+			}
+
+			if (deletions) {
+				IndexWriter compactor = new IndexWriter(dir,
+						new WhitespaceAnalyzer(), false);
+				try {
+					compactor.optimize();
+					documents = compactor.docCount();
+				} finally {
+					compactor.close();
+				}
+			}
+		} finally {
+			dir.close();
+		}
+	}
+
+	/**
+	 * Set the writer and stack of the build. A checkpoint waits for the
+	 * stack to be emptied, and then flushes the writer.
+	 *
+	 * @param writer
+	 * @param stack
+	 */
+
+	public void setBuild(IndexWriter writer, SharedDocumentStack stack) {
+		this.writer = writer;
+		this.stack = stack;
+	}
+
+	/**
+	 * Make sure a resumed build is running the same subsections as the one
+	 * that was checkpointed.
+	 *
+	 * @param subsections
+	 *            The names of every subsection of the gatherer.
+	 */
+
+	public void checkSubsections(List<String> subsections) {
+		for (String name : completed) {
+			if (!subsections.contains(name)) {
+				throw new IllegalStateException("The checkpointed subsection "
+						+ name + " isn't part of this build, it has to be"
+						+ " rebuilt without resuming.");
+			}
+		}
+	}
+
+	/**
+	 * The key range bounds the checkpointed build split a scan with.
+	 *
+	 * @param key
+	 *            The table and column the ranges are of.
+	 * @return The bounds, or null if none were recorded.
+	 */
+
+	public synchronized long[] getBounds(String key) {
+		return bounds.get(key);
+	}
+
+	/**
+	 * Record the key range bounds a scan was split with, so a resumed build
+	 * can use the same ones.
+	 *
+	 * @param key
+	 *            The table and column the ranges are of.
+	 * @param range
+	 *            The bounds between the ranges, in order.
+	 * @throws IOException
+	 */
+
+	public synchronized void recordBounds(String key, long range[])
+			throws IOException {
+		StringBuilder line = new StringBuilder(RANGES).append(key).append(
+				'\t');
+		for (int i = 0; i < range.length; i++) {
+			line.append(i == 0 ? "" : ",").append(range[i]);
+		}
+		append(line.toString());
+		bounds.put(key, range);
+	}
+
+	/**
+	 * Has a subsection already been finished and checkpointed?
+	 *
+	 * @param subsection
+	 * @return boolean
+	 */
+
+	public synchronized boolean isComplete(String subsection) {
+		return completed.contains(subsection);
+	}
+
+	/**
+	 * Checkpoint a finished subsection. The calling thread must already have
+	 * flushed its documents onto the stack, and nothing else may be pushing
+	 * documents while this runs.
+	 *
+	 * @param subsection
+	 * @throws Exception
+	 */
+
+	public synchronized void complete(String subsection) throws Exception {
+		stack.awaitDrained();
+		writer.flush();
+		documents = writer.docCount();
+		append(subsection + "\t" + documents);
+		completed.add(subsection);
+		log.info("Checkpointed " + subsection + " at " + documents
+				+ " documents.");
+	}
+
+	/*
+	 * Add a line to the manifest, and sync it, so the manifest never gets
+	 * ahead of the index.
+	 */
+
+	private void append(String line) throws IOException {
+		boolean empty = manifest.length() == 0;
+		FileOutputStream out = new FileOutputStream(manifest, true);
+		try {
+			if (empty) {
+				out.write(("# Subsections of " + indexDir
+						+ " that are done, and the document count after each,"
+						+ " along with the key ranges in use.\n")
+						.getBytes("UTF-8"));
+			}
+			out.write((line + "\n").getBytes("UTF-8"));
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * The build has finished, so there is nothing left to resume.
+	 */
+
+	public void remove() {
+		if (manifest.exists() && !manifest.delete()) {
+			log.warn("Unable to remove " + manifest);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+import org.apache.log4j.Logger;
+import org.jax.mgi.shr.config.IndexCfg;
+
+/**
+ * A small pool of JDBC connections to MGD, shared by every SQLExecutor in
+ * the JVM. Parallel subsections, concurrent index builds, and the lookups
+ * done while setting gatherers up all borrow from it, so they reuse warm
+ * connections rather than each opening their own.
+ *
+ * When no idle connection is left a new one is opened, up to DB_MAX_OPEN
+ * connections at once. Past that, borrowing waits for a connection to be
+ * handed back, for up to DB_BORROW_TIMEOUT seconds before failing, so a
+ * build that runs out of connections fails rather than hanging. With
+ * DB_MAX_OPEN at 0 there is no limit, and borrowing never waits. Up to
+ * DB_POOL_SIZE connections are kept once they are handed back, the rest are
+ * closed.
+ *
+ * @author mhall
+ *
+ * @has The idle connections for each database and user.
+ *
+ * @does Hands out connections, resets them when they come back, and closes
+ *       the ones it has no room for.
+ *
+ */
+
+public class ConnectionPool {
+
+	// One pool per database and user.
+	private static HashMap<String, ConnectionPool>	pools	= new HashMap<String, ConnectionPool>();
+
+	private static Logger			log		= Logger.getLogger(ConnectionPool.class.getName());
+
+	private String					url;
+	private String					user;
+	private String					password;
+	private int						maxIdle;
+	private int						maxOpen;
+	private long					timeoutMs;
+
+	private ArrayDeque<Connection>	idle	= new ArrayDeque<Connection>();
+	private int						opened	= 0;
+
+	private ConnectionPool(String url, String user, String password,
+			int maxIdle, int maxOpen, long timeoutMs) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.maxIdle = maxIdle;
+		this.maxOpen = maxOpen;
+		this.timeoutMs = timeoutMs;
+	}
+
+	/**
+	 * Return the pool for the database and user MGD_JDBC_URL and
+	 * MGI_PUBLICUSER point to, creating it on first use.
+	 *
+	 * @param config
+	 * @return ConnectionPool
+	 * @throws Exception
+	 */
+
+	public static ConnectionPool getPool(IndexCfg config) throws Exception {
+		String url = config.get("MGD_JDBC_URL");
+		String user = config.get("MGI_PUBLICUSER");
+
+		synchronized (pools) {
+			ConnectionPool pool = pools.get(url + " " + user);
+			if (pool == null) {
+				Class.forName(config.get("DB_DRIVER"));
+				pool = new ConnectionPool(url, user, config
+						.get("MGI_PUBLICPASSWORD"), config.getInt(
+						"DB_POOL_SIZE", 8), config.getInt("DB_MAX_OPEN", 0),
+						config.getInt("DB_BORROW_TIMEOUT", 300) * 1000L);
+				pools.put(url + " " + user, pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Borrow a connection, in auto commit mode. It must be handed back with
+	 * release once it is no longer needed. When DB_MAX_OPEN connections are
+	 * already open this waits for one to be handed back.
+	 *
+	 * @return Connection
+	 * @throws SQLException
+	 *             If no connection could be opened, or none was handed back
+	 *             in time.
+	 */
+
+	public Connection borrow() throws SQLException {
+		synchronized (this) {
+			long deadline = System.currentTimeMillis() + timeoutMs;
+			while (true) {
+				while (!idle.isEmpty()) {
+					Connection con = idle.pollFirst();
+					if (!con.isClosed()) {
+						return con;
+					}
+					opened--;
+				}
+				if (maxOpen <= 0 || opened < maxOpen) {
+					break;
+				}
+
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new SQLException("Timed out waiting for one of the "
+							+ maxOpen + " connections to " + url);
+				}
+				try {
+					wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted waiting for a"
+							+ " connection to " + url);
+				}
+			}
+			opened++;
+		}
+
+		try {
+			return DriverManager.getConnection(url, user, password);
+		} catch (SQLException e) {
+			synchronized (this) {
+				opened--;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Hand a borrowed connection back. Any open transaction is committed, and
+	 * the connection is put back into auto commit mode.
+	 *
+	 * @param con
+	 */
+
+	public void release(Connection con) {
+		try {
+			if (con.isClosed()) {
+				synchronized (this) {
+					opened--;
+					notifyAll();
+				}
+				return;
+			}
+			if (!con.getAutoCommit()) {
+				con.commit();
+				con.setAutoCommit(true);
+			}
+			if (con.isReadOnly()) {
+				con.setReadOnly(false);
+			}
+		} catch (SQLException e) {
+			log.warn("Dropping a connection that couldn't be reset: " + e);
+			close(con);
+			return;
+		}
+
+		synchronized (this) {
+			if (idle.size() < maxIdle) {
+				idle.addFirst(con);
+				notifyAll();
+				return;
+			}
+		}
+		close(con);
+	}
+
+	/**
+	 * Close every idle connection, in every pool.
+	 */
+
+	public static void closeAll() {
+		synchronized (pools) {
+			for (ConnectionPool pool : pools.values()) {
+				pool.closeIdle();
+			}
+		}
+	}
+
+	private void closeIdle() {
+		Connection con;
+		while ((con = poll()) != null) {
+			close(con);
+		}
+	}
+
+	private synchronized Connection poll() {
+		return idle.pollFirst();
+	}
+
+	private void close(Connection con) {
+		synchronized (this) {
+			opened--;
+			notifyAll();
+		}
+		try {
+			con.close();
+		} catch (SQLException e) {
+			log.warn(e);
+		}
+	}
+
+	/**
+	 * How many connections this pool has open, whether borrowed or idle.
+	 *
+	 * @return int
+	 */
+
+	public synchronized int getOpened() {
+		return opened;
+	}
+}
@@ -0,0 +1,401 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Fieldable;
+
+/**
+ * Holds the batches of documents that don't fit on a full document stack,
+ * so that the gatherer can keep reading rows while the Indexers catch up.
+ *
+ * Each batch is serialised into a compact form: its field names are written
+ * once per batch, and every field is a name number, a set of flags and its
+ * UTF-8 value. The bytes are kept off of the heap, in direct buffer pages,
+ * until the memory budget is used up, and past that in a temporary file in
+ * the spill directory. Batches are taken back in the order they were added,
+ * whichever of the two they were kept in. The file is emptied each time
+ * every batch in it has been taken, and removed once the spill is closed.
+ *
+ * Pages and the file are only created once something is spilled, and the
+ * pages are reused for as long as the spill is. Every method that touches
+ * them is synchronized, while encode and decode can be run by any thread
+ * without a lock.
+ *
+ * @author mhall
+ *
+ * @has The batches spilled so far, in order, along with the direct buffer
+ *      pages and the file they are kept in.
+ *
+ * @does Serialises batches of documents, stores them in memory or on disk,
+ *       and hands them back in order.
+ *
+ */
+
+public class DocumentSpill {
+
+	private static final int	PAGE_BYTES		= 16 * 1024;
+
+	private static final int	STORED			= 1;
+	private static final int	COMPRESSED		= 2;
+	private static final int	INDEXED			= 4;
+	private static final int	TOKENIZED		= 8;
+	private static final int	OMIT_NORMS		= 16;
+	private static final int	TERM_VECTOR		= 32;
+	private static final int	POSITIONS		= 64;
+	private static final int	OFFSETS			= 128;
+	private static final int	BINARY			= 256;
+
+	private static Logger		log				= Logger.getLogger(DocumentSpill.class.getName());
+
+	// How many pages may be allocated, and the ones not in use.
+	private int					maxPages;
+	private int					allocatedPages	= 0;
+	private ArrayDeque<ByteBuffer>	freePages	= new ArrayDeque<ByteBuffer>();
+
+	private File				dir;
+	private File				file			= null;
+	private RandomAccessFile	raf				= null;
+	private FileChannel			channel			= null;
+	private long				fileEnd			= 0;
+	private int					diskEntries		= 0;
+
+	private ArrayDeque<Entry>	entries			= new ArrayDeque<Entry>();
+
+	private long				spilled			= 0;
+	private long				spilledToDisk	= 0;
+
+	/**
+	 * @param memoryBudget
+	 *            How many bytes of direct buffers to keep spilled batches
+	 *            in.
+	 * @param dir
+	 *            Where to spill batches once the memory budget is used up,
+	 *            or null to stop spilling at that point.
+	 */
+
+	public DocumentSpill(long memoryBudget, File dir) {
+		maxPages = (int) Math.min(Integer.MAX_VALUE, memoryBudget / PAGE_BYTES);
+		this.dir = dir;
+	}
+
+	/**
+	 * Serialise a batch of documents.
+	 *
+	 * @param docs
+	 * @return The bytes, or null if a field holds a Reader or a TokenStream,
+	 *         which can't be serialised.
+	 * @throws IOException
+	 */
+
+	public static byte[] encode(List<Document> docs) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * docs
+				.size());
+		DataOutputStream out = new DataOutputStream(bytes);
+		HashMap<String, Integer> names = new HashMap<String, Integer>();
+
+		out.writeInt(docs.size());
+		for (Document doc : docs) {
+			List<?> fields = doc.getFields();
+			out.writeFloat(doc.getBoost());
+			out.writeInt(fields.size());
+
+			for (int i = 0; i < fields.size(); i++) {
+				Fieldable field = (Fieldable) fields.get(i);
+				if (!field.isBinary() && field.stringValue() == null) {
+					return null;
+				}
+
+				// A name is written out the first time it is used, after
+				// that just its number is.
+
+				Integer number = names.get(field.name());
+				if (number == null) {
+					out.writeShort(names.size());
+					out.writeUTF(field.name());
+					names.put(field.name(), Integer.valueOf(names.size()));
+				} else {
+					out.writeShort(number.intValue());
+				}
+
+				out.writeShort(flags(field));
+				out.writeFloat(field.getBoost());
+				if (field.isBinary()) {
+					byte[] value = field.binaryValue();
+					out.writeInt(value.length);
+					out.write(value);
+				} else {
+					byte[] value = field.stringValue().getBytes("UTF-8");
+					out.writeInt(value.length);
+					out.write(value);
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Turn a serialised batch back into documents.
+	 *
+	 * @param bytes
+	 * @return ArrayList of Documents
+	 * @throws IOException
+	 */
+
+	public static ArrayList<Document> decode(byte[] bytes) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				bytes));
+		ArrayList<String> names = new ArrayList<String>();
+
+		int count = in.readInt();
+		ArrayList<Document> docs = new ArrayList<Document>(count);
+		for (int d = 0; d < count; d++) {
+			Document doc = new Document();
+			doc.setBoost(in.readFloat());
+			int fieldCount = in.readInt();
+
+			for (int i = 0; i < fieldCount; i++) {
+				int number = in.readShort();
+				if (number == names.size()) {
+					names.add(in.readUTF());
+				}
+				String name = names.get(number);
+				int flags = in.readShort();
+				float boost = in.readFloat();
+				byte[] value = new byte[in.readInt()];
+				in.readFully(value);
+
+				Field field;
+				if ((flags & BINARY) != 0) {
+					field = new Field(name, value,
+							(flags & COMPRESSED) != 0 ? Field.Store.COMPRESS
+									: Field.Store.YES);
+				} else {
+					field = new Field(name, new String(value, "UTF-8"),
+							store(flags), index(flags), termVector(flags));
+					field.setOmitNorms((flags & OMIT_NORMS) != 0);
+				}
+				field.setBoost(boost);
+				doc.add(field);
+			}
+			docs.add(doc);
+		}
+		return docs;
+	}
+
+	/**
+	 * Keep a serialised batch, in memory if it fits in what is left of the
+	 * budget, otherwise on disk.
+	 *
+	 * @param bytes
+	 * @return false if it fits in neither, and wasn't kept.
+	 * @throws IOException
+	 */
+
+	public synchronized boolean add(byte[] bytes) throws IOException {
+		int pagesNeeded = (bytes.length + PAGE_BYTES - 1) / PAGE_BYTES;
+
+		if (pagesNeeded <= freePages.size() + maxPages - allocatedPages) {
+			ByteBuffer pages[] = new ByteBuffer[pagesNeeded];
+			for (int i = 0; i < pagesNeeded; i++) {
+				pages[i] = freePages.poll();
+				if (pages[i] == null) {
+					pages[i] = ByteBuffer.allocateDirect(PAGE_BYTES);
+					allocatedPages++;
+				}
+				pages[i].clear();
+				pages[i].put(bytes, i * PAGE_BYTES, Math.min(PAGE_BYTES,
+						bytes.length - i * PAGE_BYTES));
+			}
+			entries.add(new Entry(pages, 0, bytes.length));
+			spilled++;
+			return true;
+		}
+
+		if (dir == null) {
+			return false;
+		}
+
+		if (channel == null) {
+			dir.mkdirs();
+			file = File.createTempFile("documents_", ".spill", dir);
+			file.deleteOnExit();
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+			log.info("Spilling documents to " + file);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		long position = fileEnd;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		entries.add(new Entry(null, fileEnd, bytes.length));
+		diskEntries++;
+		fileEnd = position;
+		spilled++;
+		spilledToDisk++;
+		return true;
+	}
+
+	/**
+	 * Take back the oldest batch.
+	 *
+	 * @return The serialised batch, or null if there are none.
+	 * @throws IOException
+	 */
+
+	public synchronized byte[] take() throws IOException {
+		Entry entry = entries.poll();
+		if (entry == null) {
+			return null;
+		}
+
+		byte[] bytes = new byte[entry.length];
+		if (entry.pages != null) {
+			for (int i = 0; i < entry.pages.length; i++) {
+				ByteBuffer page = entry.pages[i];
+				page.flip();
+				page.get(bytes, i * PAGE_BYTES, page.remaining());
+				freePages.add(page);
+			}
+		} else {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			long position = entry.offset;
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("The spill file " + file
+							+ " ended early.");
+				}
+				position += read;
+			}
+			diskEntries--;
+		}
+
+		// Start the file over once nothing in it is waiting.
+
+		if (channel != null && fileEnd > 0 && diskEntries == 0) {
+			channel.truncate(0);
+			fileEnd = 0;
+		}
+		return bytes;
+	}
+
+	/**
+	 * How many batches are waiting to be taken.
+	 *
+	 * @return int
+	 */
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Remove the spill file, if one was made. The spill can still be used
+	 * afterwards, and will make a new file if it needs one.
+	 */
+
+	public synchronized void close() {
+		if (spilled > 0) {
+			log.info("Spilled " + spilled + " batches of documents, "
+					+ spilledToDisk + " of them to disk.");
+			spilled = 0;
+			spilledToDisk = 0;
+		}
+		if (channel == null) {
+			return;
+		}
+		try {
+			raf.close();
+		} catch (IOException e) {
+			log.error(e);
+		}
+		if (!file.delete()) {
+			log.warn("Unable to remove " + file);
+		}
+		channel = null;
+		raf = null;
+		file = null;
+		fileEnd = 0;
+	}
+
+	private static int flags(Fieldable field) {
+		int flags = 0;
+		flags |= field.isStored() ? STORED : 0;
+		flags |= field.isCompressed() ? COMPRESSED : 0;
+		flags |= field.isIndexed() ? INDEXED : 0;
+		flags |= field.isTokenized() ? TOKENIZED : 0;
+		flags |= field.getOmitNorms() ? OMIT_NORMS : 0;
+		flags |= field.isTermVectorStored() ? TERM_VECTOR : 0;
+		flags |= field.isStorePositionWithTermVector() ? POSITIONS : 0;
+		flags |= field.isStoreOffsetWithTermVector() ? OFFSETS : 0;
+		flags |= field.isBinary() ? BINARY : 0;
+		return flags;
+	}
+
+	private static Field.Store store(int flags) {
+		if ((flags & COMPRESSED) != 0) {
+			return Field.Store.COMPRESS;
+		}
+		return (flags & STORED) != 0 ? Field.Store.YES : Field.Store.NO;
+	}
+
+	private static Field.Index index(int flags) {
+		if ((flags & INDEXED) == 0) {
+			return Field.Index.NO;
+		}
+		if ((flags & TOKENIZED) != 0) {
+			return Field.Index.TOKENIZED;
+		}
+		return (flags & OMIT_NORMS) != 0 ? Field.Index.NO_NORMS
+				: Field.Index.UN_TOKENIZED;
+	}
+
+	private static Field.TermVector termVector(int flags) {
+		if ((flags & TERM_VECTOR) == 0) {
+			return Field.TermVector.NO;
+		}
+		boolean positions = (flags & POSITIONS) != 0;
+		boolean offsets = (flags & OFFSETS) != 0;
+		if (positions && offsets) {
+			return Field.TermVector.WITH_POSITIONS_OFFSETS;
+		}
+		if (positions) {
+			return Field.TermVector.WITH_POSITIONS;
+		}
+		return offsets ? Field.TermVector.WITH_OFFSETS : Field.TermVector.YES;
+	}
+
+	/*
+	 * A spilled batch, either in pages or at an offset in the file.
+	 */
+
+	private static class Entry {
+
+		ByteBuffer	pages[];
+		long		offset;
+		int			length;
+
+		Entry(ByteBuffer pages[], long offset, int length) {
+			this.pages = pages;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a ResultSet, counting the rows read from it and timing how long the
+ * first row took to arrive, for the Metrics section the query was run for.
+ * Every other call is passed straight through.
+ *
+ * @author mhall
+ *
+ * @has The ResultSet being wrapped, and the section it reports to.
+ *
+ * @does Counts rows, and records the time to the first row.
+ *
+ */
+
+class MeteredResultSet implements InvocationHandler {
+
+	private ResultSet		set;
+	private Metrics.Section	section;
+	private AtomicLong		rows;
+	private long			queryStart;
+	private boolean			first	= true;
+
+	private MeteredResultSet(ResultSet set, Metrics.Section section,
+			long queryStart) {
+		this.set = set;
+		this.section = section;
+		this.rows = section.counter(Metrics.ROWS);
+		this.queryStart = queryStart;
+	}
+
+	/**
+	 * Wrap a ResultSet.
+	 *
+	 * @param set
+	 * @param section
+	 * @param queryStart
+	 *            When the query was started, from System.nanoTime().
+	 * @return A ResultSet that reports to the section.
+	 */
+
+	static ResultSet wrap(ResultSet set, Metrics.Section section,
+			long queryStart) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class
+				.getClassLoader(), new Class<?>[] { ResultSet.class },
+				new MeteredResultSet(set, section, queryStart));
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		Object result;
+		try {
+			result = method.invoke(set, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+
+		if (method.getName().equals("next")) {
+			if (first) {
+				first = false;
+				section.record(Metrics.FIRST_ROW, System.nanoTime()
+						- queryStart);
+			}
+			if (Boolean.TRUE.equals(result)) {
+				rows.incrementAndGet();
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,358 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of a single index build. The build is broken into sections,
+ * one for each gatherer subsection, one for the gatherer as a whole, and one
+ * for the Indexer threads. Each section holds named counters and latency
+ * histograms, which any number of threads may record to at once.
+ *
+ * A thread works on behalf of one section at a time, its current section.
+ * Code that doesn't know which build or subsection it is running for, like
+ * the SQLExecutor and the SharedDocumentStack, records to the current
+ * section of its thread, and records nothing when there isn't one.
+ *
+ * At the end of the build the whole thing is written out as JSON, so the
+ * slow subsections can be picked out.
+ *
+ * @author mhall
+ *
+ * @has The sections of the build, in the order they were first used.
+ *
+ * @does Collects counters and histograms for each section, and writes them
+ *       out as JSON.
+ *
+ */
+
+public class Metrics {
+
+	// Counter and histogram names shared between the recording classes.
+
+	public static final String	QUERIES			= "queries";
+	public static final String	ROWS			= "rows";
+	public static final String	DOCUMENTS		= "documents";
+	public static final String	FIELD_BYTES		= "fieldBytes";
+	public static final String	ELAPSED_MS		= "elapsedMs";
+	public static final String	QUERY_LATENCY	= "queryLatency";
+	public static final String	FIRST_ROW		= "timeToFirstRow";
+	public static final String	PUSH_WAIT		= "pushWait";
+	public static final String	POP_WAIT		= "popWait";
+	public static final String	ADD_DOCUMENT	= "addDocument";
+	public static final String	SPILLED			= "spilledDocuments";
+	public static final String	SPILL_BYTES		= "spillBytes";
+
+	private static ThreadLocal<Section>	current	= new ThreadLocal<Section>();
+
+	private String						index;
+	private long						start	= System.currentTimeMillis();
+
+	private ConcurrentHashMap<String, Section>	sections	= new ConcurrentHashMap<String, Section>();
+	private List<Section>						order		= new ArrayList<Section>();
+
+	/**
+	 * Create the metrics for the build of an index.
+	 *
+	 * @param index
+	 *            The index code.
+	 */
+
+	public Metrics(String index) {
+		this.index = index;
+	}
+
+	/**
+	 * Return the named section, creating it on first use.
+	 *
+	 * @param name
+	 * @return Section
+	 */
+
+	public Section section(String name) {
+		Section section = sections.get(name);
+		if (section == null) {
+			synchronized (order) {
+				section = sections.get(name);
+				if (section == null) {
+					section = new Section(name);
+					sections.put(name, section);
+					order.add(section);
+				}
+			}
+		}
+		return section;
+	}
+
+	/**
+	 * The section the calling thread is recording to, or null.
+	 *
+	 * @return Section
+	 */
+
+	public static Section current() {
+		return current.get();
+	}
+
+	/**
+	 * Make a section the current section of the calling thread.
+	 *
+	 * @param section
+	 *            The section, or null to stop recording.
+	 * @return The previous current section, to be restored afterwards.
+	 */
+
+	public static Section setCurrent(Section section) {
+		Section previous = current.get();
+		if (section == null) {
+			current.remove();
+		} else {
+			current.set(section);
+		}
+		return previous;
+	}
+
+	/**
+	 * Write every section out as JSON.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+
+	public void writeJson(File file) throws IOException {
+		Writer out = new FileWriter(file);
+		try {
+			out.write(toJson());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Return every section as a JSON object.
+	 *
+	 * @return String
+	 */
+
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n  \"index\": ").append(quote(index));
+		sb.append(",\n  \"elapsedMs\": ").append(
+				System.currentTimeMillis() - start);
+		sb.append(",\n  \"sections\": {");
+
+		List<Section> copy;
+		synchronized (order) {
+			copy = new ArrayList<Section>(order);
+		}
+		for (int i = 0; i < copy.size(); i++) {
+			sb.append(i == 0 ? "\n" : ",\n");
+			copy.get(i).appendJson(sb);
+		}
+		sb.append("\n  }\n}\n");
+		return sb.toString();
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.US, "%.3f", nanos / 1000000.0);
+	}
+
+	/**
+	 * A named part of the build, with its own counters and histograms.
+	 */
+
+	public static class Section {
+
+		private String		name;
+
+		private ConcurrentHashMap<String, AtomicLong>	counters	= new ConcurrentHashMap<String, AtomicLong>();
+		private ConcurrentHashMap<String, Histogram>	histograms	= new ConcurrentHashMap<String, Histogram>();
+
+		private Section(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Return the named counter, creating it on first use.
+		 *
+		 * @param counter
+		 * @return AtomicLong
+		 */
+
+		public AtomicLong counter(String counter) {
+			AtomicLong value = counters.get(counter);
+			if (value == null) {
+				counters.putIfAbsent(counter, new AtomicLong());
+				value = counters.get(counter);
+			}
+			return value;
+		}
+
+		/**
+		 * Return the named histogram, creating it on first use.
+		 *
+		 * @param histogram
+		 * @return Histogram
+		 */
+
+		public Histogram histogram(String histogram) {
+			Histogram value = histograms.get(histogram);
+			if (value == null) {
+				histograms.putIfAbsent(histogram, new Histogram());
+				value = histograms.get(histogram);
+			}
+			return value;
+		}
+
+		/**
+		 * Add to a counter.
+		 *
+		 * @param counter
+		 * @param amount
+		 */
+
+		public void add(String counter, long amount) {
+			counter(counter).addAndGet(amount);
+		}
+
+		/**
+		 * Record a time in a histogram.
+		 *
+		 * @param histogram
+		 * @param nanos
+		 */
+
+		public void record(String histogram, long nanos) {
+			histogram(histogram).record(nanos);
+		}
+
+		private void appendJson(StringBuilder sb) {
+			sb.append("    ").append(quote(name)).append(": {");
+
+			String separator = "\n";
+			for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(
+					counters).entrySet()) {
+				sb.append(separator).append("      ").append(
+						quote(e.getKey())).append(": ").append(
+						e.getValue().get());
+				separator = ",\n";
+			}
+
+			// Throughput, when there is something to base it on.
+			AtomicLong elapsed = counters.get(ELAPSED_MS);
+			AtomicLong documents = counters.get(DOCUMENTS);
+			if (elapsed != null && documents != null && elapsed.get() > 0) {
+				sb.append(separator).append("      \"documentsPerSecond\": ")
+						.append(documents.get() * 1000 / elapsed.get());
+				separator = ",\n";
+			}
+
+			for (Map.Entry<String, Histogram> e : new TreeMap<String, Histogram>(
+					histograms).entrySet()) {
+				sb.append(separator).append("      ").append(
+						quote(e.getKey())).append(": ");
+				e.getValue().appendJson(sb);
+				separator = ",\n";
+			}
+			sb.append("\n    }");
+		}
+	}
+
+	/**
+	 * A latency histogram, with a bucket for each power of two nanoseconds.
+	 * The percentiles it reports are the upper bound of the bucket they fall
+	 * in, so they are accurate to within a factor of two.
+	 */
+
+	public static class Histogram {
+
+		private AtomicLongArray	buckets	= new AtomicLongArray(64);
+		private AtomicLong		count	= new AtomicLong();
+		private AtomicLong		total	= new AtomicLong();
+		private AtomicLong		max		= new AtomicLong();
+
+		/**
+		 * Record a single time.
+		 *
+		 * @param nanos
+		 */
+
+		public void record(long nanos) {
+			if (nanos < 0) {
+				nanos = 0;
+			}
+			buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+
+			long seen = max.get();
+			while (nanos > seen && !max.compareAndSet(seen, nanos)) {
+				seen = max.get();
+			}
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * The time at or below which a fraction of the recorded times fell.
+		 *
+		 * @param fraction
+		 * @return long nanoseconds
+		 */
+
+		public long percentile(double fraction) {
+			long wanted = (long) Math.ceil(count.get() * fraction);
+			long seen = 0;
+			for (int i = 0; i < 64; i++) {
+				seen += buckets.get(i);
+				if (seen >= wanted && seen > 0) {
+					return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+				}
+			}
+			return max.get();
+		}
+
+		private void appendJson(StringBuilder sb) {
+			long n = count.get();
+			sb.append("{\"count\": ").append(n);
+			sb.append(", \"totalMs\": ").append(millis(total.get()));
+			sb.append(", \"meanMs\": ").append(
+					millis(n == 0 ? 0 : total.get() / n));
+			sb.append(", \"p50Ms\": ").append(millis(percentile(0.5)));
+			sb.append(", \"p90Ms\": ").append(millis(percentile(0.9)));
+			sb.append(", \"p99Ms\": ").append(millis(percentile(0.99)));
+			sb.append(", \"maxMs\": ").append(millis(max.get())).append("}");
+		}
+	}
+}
@@ -52,6 +52,24 @@ public class ProviderHashMap {
     
     protected SQLExecutor executor; 
 
+    // The one shared copy, the providers don't change during a build.
+    private static ProviderHashMap instance = null;
+
+    /**
+     * Return the shared ProviderHashMap, populating it on first use.  It is
+     * only read once populated, so any number of gatherers may share it.
+     * 
+     * @param config
+     * @return ProviderHashMap
+     */
+
+    public static synchronized ProviderHashMap getInstance(IndexCfg config) {
+        if (instance == null) {
+            instance = new ProviderHashMap(config);
+        }
+        return instance;
+    }
+
     /**
      * Constructor, this calls the super class constructor, and then invokes
      * the init method which populates this object.
@@ -130,6 +148,13 @@ public class ProviderHashMap {
 
         providerHash.put("1", "");
 
+        // Hand the connection back to the pool.
+
+        try {
+            executor.cleanup();
+        } catch (Exception e) {
+            log.error(e);
+        }
     }
 
     /**
@@ -0,0 +1,163 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+
+import org.apache.log4j.Logger;
+import org.jax.mgi.shr.config.IndexCfg;
+
+/**
+ * Records the result set of every query run through a SQLExecutor to a
+ * RowFile, or replays them from those files, so that indexes can be rebuilt
+ * without the database.
+ *
+ * Each query's rows are kept in SQL_CAPTURE_DIR, in a file named after the
+ * SHA-1 hash of its SQL text. The text itself is kept in the file's header,
+ * and is checked when the rows are replayed.
+ *
+ * @author mhall
+ *
+ * @has The capture directory, and whether it is being recorded to or
+ *      replayed from.
+ *
+ * @does Saves result sets to files keyed by their query, and opens them
+ *       again as result sets.
+ *
+ */
+
+public class QueryCapture {
+
+	public static final String	RECORD	= "record";
+	public static final String	REPLAY	= "replay";
+
+	private static Logger		log		= Logger.getLogger(QueryCapture.class.getName());
+
+	private File				dir;
+	private boolean				replay;
+
+	private QueryCapture(File dir, boolean replay) {
+		this.dir = dir;
+		this.replay = replay;
+	}
+
+	/**
+	 * Return the capture SQL_CAPTURE_MODE asks for, or null when queries
+	 * should simply be run against the database.
+	 *
+	 * @param config
+	 * @return QueryCapture
+	 * @throws Exception
+	 */
+
+	public static QueryCapture getCapture(IndexCfg config) throws Exception {
+		String mode = config.get("SQL_CAPTURE_MODE", "off").trim();
+		if (mode.equals("") || mode.equals("off")) {
+			return null;
+		}
+		if (!mode.equals(RECORD) && !mode.equals(REPLAY)) {
+			throw new IllegalArgumentException("SQL_CAPTURE_MODE must be off, "
+					+ RECORD + " or " + REPLAY + ", not " + mode);
+		}
+
+		String dir = config.get("SQL_CAPTURE_DIR", "");
+		if (dir.equals("")) {
+			throw new IllegalArgumentException(
+					"SQL_CAPTURE_DIR must be set when SQL_CAPTURE_MODE is "
+							+ mode);
+		}
+		return new QueryCapture(new File(dir), mode.equals(REPLAY));
+	}
+
+	/**
+	 * Whether queries are served from the files rather than the database.
+	 *
+	 * @return boolean
+	 */
+
+	public boolean isReplay() {
+		return replay;
+	}
+
+	/**
+	 * Save every row of a result set to the query's file, closing the result
+	 * set, and return the saved rows.
+	 *
+	 * @param sql
+	 * @param rs
+	 * @return ResultSet
+	 * @throws Exception
+	 */
+
+	public ResultSet record(String sql, ResultSet rs) throws Exception {
+		dir.mkdirs();
+		File file = getFile(sql);
+
+		// Write to a file of our own first, so a query being recorded by two
+		// threads at once never leaves a mixed up file behind.
+
+		File temp = File.createTempFile(file.getName() + "_", ".tmp", dir);
+		RowFile rows = new RowFile(temp);
+		try {
+			rows.write(sql, rs);
+		} catch (Exception e) {
+			temp.delete();
+			throw e;
+		}
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Couldn't rename " + temp + " to "
+						+ file);
+			}
+		}
+		return RowResultSet.open(new RowFile(file));
+	}
+
+	/**
+	 * Open the rows recorded for a query.
+	 *
+	 * @param sql
+	 * @return ResultSet
+	 * @throws Exception
+	 */
+
+	public ResultSet replay(String sql) throws Exception {
+		File file = getFile(sql);
+		if (!file.exists()) {
+			throw new IOException("No rows were recorded in " + dir
+					+ " for the query: " + sql);
+		}
+
+		RowFile rows = new RowFile(file);
+		RowFile.Reader reader = rows.openReader();
+		String recorded = reader.getSql();
+		reader.close();
+		if (!sql.equals(recorded)) {
+			throw new IOException(file + " was recorded for a different"
+					+ " query: " + recorded);
+		}
+
+		log.debug("Replaying " + file);
+		return RowResultSet.open(rows);
+	}
+
+	/*
+	 * The file a query's rows are kept in.
+	 */
+
+	private File getFile(String sql) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		byte[] hash = digest.digest(sql.getBytes("UTF-8"));
+
+		StringBuilder name = new StringBuilder(hash.length * 2 + 5);
+		for (int i = 0; i < hash.length; i++) {
+			name.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+			name.append(Character.forDigit(hash[i] & 0xf, 16));
+		}
+		name.append(".rows");
+		return new File(dir, name.toString());
+	}
+}
@@ -0,0 +1,309 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A RowFile is a compact on disk copy of a query's result set, which can be
+ * replayed any number of times without going back to the database.
+ *
+ * The file starts with a header holding the query and its column names,
+ * followed by groups of rows. Each group is prefixed with its length in bytes
+ * and its row count, and holds its rows one after another, every value
+ * written as a length (-1 for null) followed by its UTF-8 bytes. Readers
+ * memory map one group at a time, so a file of any size can be read with
+ * very little heap.
+ *
+ * @author mhall
+ *
+ * @has A file on disk.
+ *
+ * @does Writes result sets out to a file, and reads them back a row at a
+ *       time.
+ *
+ */
+
+public class RowFile {
+
+	private static final int	MAGIC		= 0x524f5746;
+
+	// Rows are handed to the file in groups of roughly this many bytes.
+	private static final int	GROUP_BYTES	= 4 * 1024 * 1024;
+
+	private File				file;
+
+	public RowFile(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Copy every row of a result set into this file, closing the result set
+	 * when done.
+	 *
+	 * @param sql
+	 *            The query the rows came from, kept in the header.
+	 * @param rs
+	 * @return The number of rows written.
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+
+	public int write(String sql, ResultSet rs) throws IOException,
+			SQLException {
+		int columnCount = rs.getMetaData().getColumnCount();
+		String[] columns = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			columns[i] = rs.getMetaData().getColumnLabel(i + 1);
+		}
+
+		Writer writer = openWriter(sql, columns);
+		String[] row = new String[columnCount];
+		try {
+			while (rs.next()) {
+				for (int i = 0; i < columnCount; i++) {
+					row[i] = rs.getString(i + 1);
+				}
+				writer.addRow(row);
+			}
+		} finally {
+			rs.close();
+			writer.close();
+		}
+		return writer.getRowCount();
+	}
+
+	/**
+	 * Start writing rows to this file.
+	 *
+	 * @param sql
+	 * @param columns
+	 *            The column names.
+	 * @return Writer
+	 * @throws IOException
+	 */
+
+	public Writer openWriter(String sql, String[] columns) throws IOException {
+		return new Writer(sql, columns);
+	}
+
+	/**
+	 * Start reading rows from this file.
+	 *
+	 * @return Reader
+	 * @throws IOException
+	 */
+
+	public Reader openReader() throws IOException {
+		return new Reader();
+	}
+
+	/**
+	 * Appends rows to the file, a group at a time.
+	 */
+
+	public class Writer {
+
+		private DataOutputStream		out;
+		private ByteArrayOutputStream	groupBytes	= new ByteArrayOutputStream();
+		private DataOutputStream		group		= new DataOutputStream(groupBytes);
+		private int						groupRows	= 0;
+		private int						rowCount	= 0;
+		private int						columnCount;
+
+		private Writer(String sql, String[] columns) throws IOException {
+			columnCount = columns.length;
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file), 65536));
+
+			ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+			DataOutputStream header = new DataOutputStream(headerBytes);
+			header.writeInt(MAGIC);
+			writeString(header, sql);
+			header.writeInt(columns.length);
+			for (int i = 0; i < columns.length; i++) {
+				writeString(header, columns[i]);
+			}
+			header.flush();
+
+			out.writeInt(headerBytes.size());
+			headerBytes.writeTo(out);
+		}
+
+		/**
+		 * Add a row, which must have one value per column.
+		 *
+		 * @param row
+		 * @throws IOException
+		 */
+
+		public void addRow(String[] row) throws IOException {
+			for (int i = 0; i < columnCount; i++) {
+				writeString(group, row[i]);
+			}
+			groupRows++;
+			rowCount++;
+			if (groupBytes.size() >= GROUP_BYTES) {
+				writeGroup();
+			}
+		}
+
+		public int getRowCount() {
+			return rowCount;
+		}
+
+		private void writeGroup() throws IOException {
+			if (groupRows == 0) {
+				return;
+			}
+			group.flush();
+			out.writeInt(groupBytes.size());
+			out.writeInt(groupRows);
+			groupBytes.writeTo(out);
+			groupBytes.reset();
+			groupRows = 0;
+		}
+
+		/**
+		 * Write out the last group and close the file.
+		 *
+		 * @throws IOException
+		 */
+
+		public void close() throws IOException {
+			try {
+				writeGroup();
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the rows back, mapping in one group at a time.
+	 */
+
+	public class Reader {
+
+		private RandomAccessFile	raf;
+		private FileChannel			channel;
+		private String				sql;
+		private String[]			columns;
+		private long				position;
+		private ByteBuffer			buffer		= null;
+		private int					groupRows	= 0;
+		private byte[]				scratch		= new byte[256];
+
+		private Reader() throws IOException {
+			raf = new RandomAccessFile(file, "r");
+			channel = raf.getChannel();
+
+			int headerLength = raf.readInt();
+			byte[] headerBytes = new byte[headerLength];
+			raf.readFully(headerBytes);
+
+			DataInputStream header = new DataInputStream(
+					new ByteArrayInputStream(headerBytes));
+			if (header.readInt() != MAGIC) {
+				raf.close();
+				throw new IOException(file + " is not a row file.");
+			}
+			sql = readString(header);
+			columns = new String[header.readInt()];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = readString(header);
+			}
+			position = 4 + headerLength;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public String[] getColumns() {
+			return columns;
+		}
+
+		/**
+		 * Read the next row into the given array, which must have one slot
+		 * per column.
+		 *
+		 * @param row
+		 * @return false once there are no more rows.
+		 * @throws IOException
+		 */
+
+		public boolean next(String[] row) throws IOException {
+			while (groupRows == 0) {
+				if (position >= channel.size()) {
+					return false;
+				}
+				ByteBuffer groupHeader = ByteBuffer.allocate(8);
+				channel.read(groupHeader, position);
+				groupHeader.flip();
+				int length = groupHeader.getInt();
+				groupRows = groupHeader.getInt();
+				MappedByteBuffer mapped = channel.map(
+						FileChannel.MapMode.READ_ONLY, position + 8, length);
+				buffer = mapped;
+				position += 8 + length;
+			}
+
+			for (int i = 0; i < columns.length; i++) {
+				int length = buffer.getInt();
+				if (length < 0) {
+					row[i] = null;
+				} else {
+					if (length > scratch.length) {
+						scratch = new byte[Math.max(length, scratch.length * 2)];
+					}
+					buffer.get(scratch, 0, length);
+					row[i] = new String(scratch, 0, length, "UTF-8");
+				}
+			}
+			groupRows--;
+			return true;
+		}
+
+		public void close() throws IOException {
+			buffer = null;
+			raf.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -0,0 +1,181 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+
+/**
+ * Presents the rows of a RowFile as a forward only java.sql.ResultSet, so
+ * that gatherers can replay saved rows with the same code they use to read
+ * from the database.
+ *
+ * Only the parts of ResultSet the gatherers use are supported: next, close,
+ * wasNull, isAfterLast, findColumn, getMetaData (for the column count and
+ * names only), and the getString, getInt, getLong and getObject getters by
+ * column name or index. Column names are matched
+ * without regard to case, and every value comes back as its string form.
+ * Anything else throws SQLFeatureNotSupportedException.
+ *
+ * @author mhall
+ *
+ * @has A RowFile Reader, and the current row.
+ *
+ * @does Implements ResultSet through a dynamic proxy over a RowFile.
+ *
+ */
+
+public class RowResultSet implements InvocationHandler {
+
+	private RowFile.Reader				reader;
+	private HashMap<String, Integer>	columnIndex	= new HashMap<String, Integer>();
+	private String[]					row;
+	private boolean						hasRow		= false;
+	private boolean						afterLast	= false;
+	private boolean						closed		= false;
+	private boolean						wasNull		= false;
+	private int							rowCount	= 0;
+
+	private RowResultSet(RowFile.Reader reader) {
+		this.reader = reader;
+		String[] columns = reader.getColumns();
+		row = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			String name = columns[i].toLowerCase();
+			if (!columnIndex.containsKey(name)) {
+				columnIndex.put(name, Integer.valueOf(i + 1));
+			}
+		}
+	}
+
+	/**
+	 * Open a RowFile as a ResultSet.
+	 *
+	 * @param file
+	 * @return ResultSet
+	 * @throws Exception
+	 */
+
+	public static ResultSet open(RowFile file) throws Exception {
+		return (ResultSet) Proxy.newProxyInstance(
+				RowResultSet.class.getClassLoader(),
+				new Class<?>[] {ResultSet.class},
+				new RowResultSet(file.openReader()));
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		String name = method.getName();
+
+		if (name.equals("next")) {
+			return Boolean.valueOf(next());
+		} else if (name.equals("getString") || name.equals("getObject")) {
+			return getValue(args[0]);
+		} else if (name.equals("getInt")) {
+			String value = getValue(args[0]);
+			return Integer.valueOf(value == null ? 0 : Integer.parseInt(value));
+		} else if (name.equals("getLong")) {
+			String value = getValue(args[0]);
+			return Long.valueOf(value == null ? 0 : Long.parseLong(value));
+		} else if (name.equals("wasNull")) {
+			return Boolean.valueOf(wasNull);
+		} else if (name.equals("findColumn")) {
+			return Integer.valueOf(findColumn((String) args[0]));
+		} else if (name.equals("isAfterLast")) {
+			return Boolean.valueOf(afterLast);
+		} else if (name.equals("close")) {
+			if (!closed) {
+				closed = true;
+				reader.close();
+			}
+			return null;
+		} else if (name.equals("isClosed")) {
+			return Boolean.valueOf(closed);
+		} else if (name.equals("getStatement")) {
+			return null;
+		} else if (name.equals("getMetaData")) {
+			return getMetaData();
+		} else if (name.equals("toString")) {
+			return "RowResultSet[" + reader.getSql() + "]";
+		} else if (name.equals("hashCode")) {
+			return Integer.valueOf(System.identityHashCode(proxy));
+		} else if (name.equals("equals")) {
+			return Boolean.valueOf(proxy == args[0]);
+		}
+		throw new SQLFeatureNotSupportedException("RowResultSet does not"
+				+ " support " + name);
+	}
+
+	/*
+	 * Metadata giving the column count and names, and nothing else.
+	 */
+
+	private ResultSetMetaData getMetaData() {
+		final String[] columns = reader.getColumns();
+		return (ResultSetMetaData) Proxy.newProxyInstance(
+				RowResultSet.class.getClassLoader(),
+				new Class<?>[] {ResultSetMetaData.class},
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("getColumnCount")) {
+							return Integer.valueOf(columns.length);
+						} else if (name.equals("getColumnLabel")
+								|| name.equals("getColumnName")) {
+							return columns[((Integer) args[0]).intValue() - 1];
+						}
+						throw new SQLFeatureNotSupportedException(
+								"RowResultSet metadata does not support "
+										+ name);
+					}
+				});
+	}
+
+	private boolean next() throws Exception {
+		if (closed) {
+			throw new SQLException("The result set is closed.");
+		}
+		if (afterLast) {
+			return false;
+		}
+		hasRow = reader.next(row);
+		if (hasRow) {
+			rowCount++;
+		} else {
+			// Like JDBC, an empty result set is never after the last row.
+			afterLast = rowCount > 0;
+		}
+		return hasRow;
+	}
+
+	private int findColumn(String name) throws SQLException {
+		Integer index = columnIndex.get(name.toLowerCase());
+		if (index == null) {
+			throw new SQLException("No column named " + name);
+		}
+		return index.intValue();
+	}
+
+	private String getValue(Object column) throws SQLException {
+		if (!hasRow) {
+			throw new SQLException("The result set is not on a row.");
+		}
+		int index;
+		if (column instanceof String) {
+			index = findColumn((String) column);
+		} else {
+			index = ((Integer) column).intValue();
+		}
+		if (index < 1 || index > row.length) {
+			throw new SQLException("No column " + column);
+		}
+		String value = row[index - 1];
+		wasNull = value == null;
+		return value;
+	}
+}
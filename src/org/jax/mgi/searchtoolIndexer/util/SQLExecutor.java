@@ -1,10 +1,11 @@
 package org.jax.mgi.searchtoolIndexer.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Date;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
 
 import org.apache.log4j.Logger;
 import org.jax.mgi.shr.config.IndexCfg;
@@ -13,6 +14,23 @@ import org.jax.mgi.shr.config.IndexCfg;
  * The SQLExecutor class knows how to connect to, and submit queries against
  * the MGD database.
  *
+ * When FETCH_SIZE is configured, queries are run as forward only, read only
+ * cursors inside a transaction, so the driver streams rows in batches of that
+ * size rather than materializing the whole result set before the first row
+ * is returned.
+ *
+ * Connections are borrowed from the shared ConnectionPool when the first
+ * query is run, and handed back by cleanup, along with closing any
+ * statements still open.  Statements whose result sets have been closed are
+ * closed as later queries are run.
+ *
+ * Each query is reported to the Metrics section of the thread running it,
+ * along with the rows later read from its result set.
+ *
+ * SQL_CAPTURE_MODE=record saves the rows of every query to SQL_CAPTURE_DIR
+ * as they are run, and replay serves them from there without connecting to
+ * the database at all.
+ *
  * @has An instance of the IndexCfg object, which is used to setup this object.
  * @does Executes SQL Queries against MGD
  *
@@ -21,12 +39,19 @@ import org.jax.mgi.shr.config.IndexCfg;
 public class SQLExecutor {
 
 	protected Connection conMGD = null;
-	private String user;
-	private String password;
-	private String mgdJDBCUrl;
+	private ConnectionPool pool;
+
+	// Records or replays the queries, null when they simply go to MGD.
+	private QueryCapture capture = null;
 
-	private Date start;
-	private Date end;
+	// The statements still open on the borrowed connection.
+	private ArrayList<OpenQuery> open = new ArrayList<OpenQuery>();
+
+	// How long the last query run by each thread took, in milliseconds.
+	private ThreadLocal<Long> timing = new ThreadLocal<Long>();
+
+	// Rows to fetch per round trip, 0 means the driver loads everything.
+	private int fetchSize = 0;
 
 	// now pulled from configuration, rather than hard-coding Sybase
 	protected String DB_DRIVER = null;
@@ -43,31 +68,71 @@ public class SQLExecutor {
 	public SQLExecutor (IndexCfg config) {
 		try {
 			DB_DRIVER = config.get("DB_DRIVER");
-			Class.forName(DB_DRIVER);
-			user = config.get("MGI_PUBLICUSER");
-			password = config.get("MGI_PUBLICPASSWORD");
-			mgdJDBCUrl = config.get("MGD_JDBC_URL");
+			pool = ConnectionPool.getPool(config);
+			fetchSize = config.getInt("FETCH_SIZE", 0);
+			capture = QueryCapture.getCapture(config);
 		}
 		catch (Exception e) {log.error(e);}
 	}
 
 	/**
-	 * Sets up the connection to the MGD Database.
+	 * Borrows a connection to the MGD Database from the pool.
 	 * @throws SQLException
 	 */
 
 	private void getMGDConnection() throws SQLException {
-		conMGD = DriverManager.getConnection(mgdJDBCUrl, user, password);
+		conMGD = pool.borrow();
+
+		// Cursors only stream inside of a transaction.
+		if (fetchSize > 0) {
+			conMGD.setAutoCommit(false);
+			conMGD.setReadOnly(true);
+		}
 	}
 
 	/**
-	 * Clean up the connections to the database, if they have been initialized.
+	 * Close every statement this executor still has open, and hand the
+	 * connection back to the pool, if one has been borrowed.  A later query
+	 * borrows a connection again.
 	 * @throws SQLException
 	 */
 
-	public void cleanup() throws SQLException {
+	public synchronized void cleanup() throws SQLException {
 		if (conMGD != null) {
-			conMGD.close();
+			for (OpenQuery query : open) {
+				closeQuietly(query.statement);
+			}
+			open.clear();
+			pool.release(conMGD);
+			conMGD = null;
+		}
+	}
+
+	/*
+	 * Close the statements whose result sets have been closed, so that a
+	 * long running gatherer doesn't keep a cursor open for each query.
+	 */
+
+	private void closeFinished() {
+		for (Iterator<OpenQuery> it = open.iterator(); it.hasNext();) {
+			OpenQuery query = it.next();
+			try {
+				if (query.results.isClosed()) {
+					closeQuietly(query.statement);
+					it.remove();
+				}
+			} catch (SQLException e) {
+				closeQuietly(query.statement);
+				it.remove();
+			}
+		}
+	}
+
+	private void closeQuietly(Statement stmt) {
+		try {
+			stmt.close();
+		} catch (SQLException e) {
+			log.warn(e);
 		}
 	}
 
@@ -77,28 +142,89 @@ public class SQLExecutor {
 	 */
 
 	public ResultSet executeMGD (String query) {
+		return executeMGD(query, fetchSize);
+	}
+
+	/**
+	 * Execute a query against MGD with a specific fetch size, setting up the
+	 * connection if needed.  The fetch size only takes effect when streaming
+	 * has been turned on through the FETCH_SIZE configuration item.
+	 * A query that fails throws a RuntimeException, which stops the
+	 * gatherer subsection that ran it.
+	 * @param query
+	 * @param rowsPerFetch
+	 */
+
+	public synchronized ResultSet executeMGD (String query, int rowsPerFetch) {
 
 		ResultSet set;
 
 		try {
-			if (conMGD == null) {
-				getMGDConnection();
+			long start = System.nanoTime();
+
+			if (capture != null && capture.isReplay()) {
+				set = capture.replay(query);
+			} else {
+				if (conMGD == null) {
+					getMGDConnection();
+				}
+				closeFinished();
+
+				Statement stmt = conMGD.createStatement(
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				if (!conMGD.getAutoCommit() && rowsPerFetch > 0) {
+					stmt.setFetchSize(rowsPerFetch);
+				}
+				set = stmt.executeQuery(query);
+				open.add(new OpenQuery(stmt, set));
+
+				if (capture != null) {
+					set = capture.record(query, set);
+				}
 			}
 
-			java.sql.Statement stmt = conMGD.createStatement();
-			start = new Date();
-			set = stmt.executeQuery(query);
-			end = new Date();
+			long took = System.nanoTime() - start;
+			timing.set(took / 1000000);
+
+			// Report to the section this thread is running for, if any.
+			Metrics.Section section = Metrics.current();
+			if (section != null) {
+				section.add(Metrics.QUERIES, 1);
+				section.record(Metrics.QUERY_LATENCY, took);
+				set = MeteredResultSet.wrap(set, section, start);
+			}
 			return set;
 		} catch (Exception e) {
+			// Fail the subsection running the query, rather than the whole
+			// process, so the build can report it and be resumed.
 			log.error(e);
-			System.exit(1);
-			return null;
+			throw new RuntimeException("Query failed: " + query, e);
 		}
 	}
 
+	/**
+	 * How long the last query run by the calling thread took, in
+	 * milliseconds.
+	 * @return long
+	 */
+
 	public long getTiming() {
-		return end.getTime() - start.getTime();
+		Long took = timing.get();
+		return took == null ? 0 : took.longValue();
+	}
+
+	/*
+	 * A statement, and the result set it returned.
+	 */
+
+	private static class OpenQuery {
+		Statement statement;
+		ResultSet results;
+
+		OpenQuery(Statement statement, ResultSet results) {
+			this.statement = statement;
+			this.results = results;
+		}
 	}
 
 }
@@ -1,141 +1,524 @@
 package org.jax.mgi.searchtoolIndexer.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.log4j.Logger;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.jax.mgi.searchtoolIndexer.luceneDocBuilder.DocumentPool;
 
 /**
  * This stack is the repository for all the Lucene documents that are being
- * created during indexing. This is a stateful object, and has a method that
- * both allows the consumers to interrogate the state, as well as the 
- * gatherers to set the state when they have completed their tasks.
- * 
- * The pop, isEmpty() methods are synchronized, so using this
- * object should be thread safe.
- * 
+ * created during the build of a single index. It is a bounded blocking
+ * handoff between the gatherer (producer) and the Indexer threads
+ * (consumers). Several indexes can be built at once, each with its own stack.
+ *
+ * Producers that hit the size limit wait on a condition until a consumer
+ * frees up space, and consumers wait on a condition until a document (or the
+ * end of the stream) arrives, so neither side has to poll.
+ *
+ * Documents move through the stack in batches. Each producing thread fills
+ * its own batch, and only takes the lock when it hands a full batch over.
+ * Consumers take a whole batch at a time, so the lock is taken once per
+ * batch rather than once per document. Producers must call flush() when they
+ * are done, to hand over their last partial batch.
+ *
+ * The end of gathering is signalled by placing a poison pill at the bottom
+ * of the stack. Batches are still handed out last in, first out, and a
+ * consumer only reaches the pill once every batch above it is gone. The
+ * pill is never removed, so every consumer sees it.
+ *
+ * With setFifo the batches are handed out first in, first out instead, so
+ * a single consumer sees the documents in the order they were pushed. The
+ * pill then sits behind the last batch.
+ *
+ * When the stack has a DocumentSpill, a producer that finds it full
+ * serialises its batch into the spill rather than waiting, so gathering
+ * isn't held up by slow Indexers until the spill runs out of room too.
+ * Consumers take batches off of the stack before the spilled ones, which
+ * are the older ones in fifo order, since once anything has been spilled
+ * newer batches are spilled behind it until the spill is empty.
+ *
+ * The stack also keeps the build's DocumentPool, when documents are being
+ * reused, so that the gatherer and Indexer threads of the build share it.
+ *
+ * Consumers call finished once they are done with each batch they take, so
+ * that awaitDrained can tell when every document pushed so far has been
+ * written. If every consumer has died, setFailed makes producers and
+ * awaitDrained throw rather than wait for room that will never come.
+ *
+ * Documents pushed, their size, the time producers spend handing batches
+ * over, and the documents spilled are reported to the producing thread's
+ * Metrics section.
+ *
  * @author mhall
- * @has A stack object, and a Boolean to keep track of state.
- * @does Encapsulates the interaction for a shared stack object, enforcing 
- * synchronization, and keeps track of the state of the processing overall.
- * 
+ * @has A deque of document batches guarded by a single lock, along with the
+ *      conditions used to wake producers and consumers, a thread local
+ *      batch for each producing thread, and the spill, if there is one.
+ * @does Encapsulates the interaction for a shared stack object, enforcing
+ *       synchronization and backpressure, and keeps track of the state of the
+ *       processing overall.
+ *
  */
 
 public class SharedDocumentStack {
 
-    private static SharedDocumentStack theInstance = new SharedDocumentStack();
-    private static Stack<Document>     stack = new Stack<Document>();
-    private Boolean                    gatheringComplete = false;
-    private int max_size = -1;
+    private static Logger log =
+        Logger.getLogger(SharedDocumentStack.class.getName());
+
+    // Marks the end of the stream, it sits below every real batch.
+    private static final ArrayList<Document> POISON_PILL =
+        new ArrayList<Document>();
 
-    // Hidden constructor, access to this object is through the singleton 
-    // get method.
+    private final ArrayDeque<ArrayList<Document>> stack =
+        new ArrayDeque<ArrayList<Document>>();
+    private final ReentrantLock        lock = new ReentrantLock();
+    private final Condition            notFull = lock.newCondition();
+    private final Condition            notEmpty = lock.newCondition();
+    private final Condition            drained = lock.newCondition();
 
-    private SharedDocumentStack() {
-    };
+    // The batch each producing thread is currently filling.
+    private final ThreadLocal<ArrayList<Document>> localBatch =
+        new ThreadLocal<ArrayList<Document>>();
+
+    // Number of documents in the stack, the pill isn't counted.
+    private int size = 0;
+    // Batches taken by consumers that they haven't finished with yet.
+    private int inFlight = 0;
+    // Documents waiting in the spill, which isn't counted towards the size.
+    private int spilled = 0;
+    private DocumentSpill spill = null;
+    private volatile DocumentPool documentPool = null;
+    private int max_size = -1;
+    private int batch_size = 1000;
+    private boolean gatheringComplete = false;
+    private boolean fifo = false;
+    private boolean failed = false;
 
     /**
-     * Singleton access method to gain a reference to the SharedDocumentStack
-     * 
-     * @return SharedDocumentStack
+     * Each index build creates its own stack, which is shared between its
+     * gatherer and its Indexer threads.
      */
 
-    public static SharedDocumentStack getSharedDocumentStack() {
-        return theInstance;
+    public SharedDocumentStack() {
     }
 
     /** Set the maximum number of documents allowed in this stack
      */
     public void setMaxSize (int size) {
-	this.max_size = size;
+        lock.lock();
+        try {
+            this.max_size = size;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Return the maximum number of documents allowed in this stack, or -1
+     * if there is no limit.
+     */
+    public int getMaxSize () {
+        lock.lock();
+        try {
+            return max_size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Set the number of documents a producer collects before handing
+     * them over to the stack.
+     */
+    public void setBatchSize (int size) {
+        if (size > 0) {
+            this.batch_size = size;
+        }
+    }
+
+    /** Hand batches out in the order they were pushed, rather than last
+     * in, first out.  This must be set before any documents are pushed.
+     */
+    public void setFifo (boolean fifo) {
+        lock.lock();
+        try {
+            this.fifo = fifo;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Spill batches that don't fit on the stack, rather than wait for
+     * room.  This must be set before any documents are pushed.
+     *
+     * @param memoryBudget
+     * Bytes of memory to keep spilled batches in, off of the heap.
+     * @param dir
+     * Where to spill batches once the memory is used up, or null.
+     */
+    public void setSpill (long memoryBudget, File dir) {
+        lock.lock();
+        try {
+            if (memoryBudget > 0 || dir != null) {
+                spill = new DocumentSpill(memoryBudget, dir);
+            } else {
+                spill = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Reuse the documents of this build through a pool.
+     *
+     * @param pool
+     * The pool, or null to not reuse documents.
+     */
+    public void setDocumentPool (DocumentPool pool) {
+        documentPool = pool;
+    }
+
+    public DocumentPool getDocumentPool () {
+        return documentPool;
     }
 
     /**
-     * Add a document onto the stack.  If the stack is full, then wait here
-     * until space frees up and it can be added.
-     * 
+     * Add a document to this thread's batch.  When the batch is full it is
+     * placed on the stack, and if the stack is full we wait here until a
+     * consumer frees up space.
+     *
      * @param doc
      * A lucence document to add.
      */
 
     public void push(Document doc) throws InterruptedException {
-    	// if no limit, just add the doc and move on
-    	if (max_size == -1) {
-    		stack.push(doc);
-    	} else {
-    		while (this.size() >= this.max_size) {
-    			// sleep for 100ms to wait for the backlog to clear
-    			Thread.sleep(100);
-    		}
-    		stack.push(doc); 
-    	}
+        Metrics.Section section = Metrics.current();
+        if (section != null) {
+            section.add(Metrics.DOCUMENTS, 1);
+            section.add(Metrics.FIELD_BYTES, fieldBytes(doc));
+        }
+
+        ArrayList<Document> batch = localBatch.get();
+        if (batch == null) {
+            batch = new ArrayList<Document>(batch_size);
+            localBatch.set(batch);
+        }
+        batch.add(doc);
+        if (batch.size() >= batch_size) {
+            localBatch.remove();
+            pushBatch(batch);
+        }
+    }
+
+    /**
+     * Hand this thread's partially filled batch over to the stack.  Every
+     * producing thread must call this once it has pushed its last document.
+     */
+
+    public void flush() throws InterruptedException {
+        ArrayList<Document> batch = localBatch.get();
+        localBatch.remove();
+        if (batch != null && !batch.isEmpty()) {
+            pushBatch(batch);
+        }
     }
 
     /**
-     * Take a document off of the stack, access into this method is
-     * synchronized, so its thread safe.
-     * 
-     * @return A Lucene Document
-     */
-
-    public synchronized ArrayList<Document> pop(int amount) throws InterruptedException {
-        
-        int waittime = 1;
-        
-        ArrayList<Document> ret = new ArrayList<Document>();
-        
-        while (!isComplete() || !isEmpty()) {
-            if (!isEmpty()) {
-            	for(int i = 0; i < amount && !isEmpty(); i++) {
-            		ret.add(stack.pop());
-            	}
-            	return ret;
+     * Place a whole batch on the stack, waiting while there isn't room for
+     * it.  A batch is always accepted by an empty stack, so a batch larger
+     * than the maximum size can't wedge the producer.  When there is a
+     * spill, the batch goes there instead of waiting, as long as the spill
+     * has room for it.
+     */
+
+    private void pushBatch(ArrayList<Document> batch)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        byte[] encoded = null;
+        boolean canSpill = true;
+        boolean wasSpilled = false;
+
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                checkFailed();
+                boolean full = max_size != -1 && size > 0
+                        && size + batch.size() > max_size;
+
+                // In fifo order, nothing may get ahead of a spilled batch.
+                if (!full && !(fifo && spilled > 0)) {
+                    addBatch(batch);
+                    break;
+                }
+
+                if (spill != null && canSpill) {
+                    if (encoded == null) {
+                        encoded = encode(batch);
+                        canSpill = encoded != null;
+                        continue;
+                    }
+                    if (addToSpill(encoded)) {
+                        spilled += batch.size();
+                        wasSpilled = true;
+                        notEmpty.signal();
+                        break;
+                    }
+                }
+                notFull.await();
             }
-            else {
-                Thread.sleep(1000*waittime);
-                if (waittime < 16) {
-                    waittime *= 2;
+        } finally {
+            lock.unlock();
+        }
+
+        // The documents have been copied, so the builders can have them.
+        if (wasSpilled && documentPool != null) {
+            documentPool.release(batch);
+        }
+
+        Metrics.Section section = Metrics.current();
+        if (section != null) {
+            section.record(Metrics.PUSH_WAIT, System.nanoTime() - start);
+            if (wasSpilled) {
+                section.add(Metrics.SPILLED, batch.size());
+                section.add(Metrics.SPILL_BYTES, encoded.length);
+            }
+        }
+    }
+
+    private void addBatch(ArrayList<Document> batch) {
+        if (!fifo) {
+            stack.addFirst(batch);
+        } else if (gatheringComplete) {
+            // Keep the pill behind every batch.
+            stack.pollLast();
+            stack.addLast(batch);
+            stack.addLast(POISON_PILL);
+        } else {
+            stack.addLast(batch);
+        }
+        size += batch.size();
+        notEmpty.signal();
+    }
+
+    /*
+     * Serialise a batch for the spill, letting go of the lock while doing
+     * so.  Returns null if the batch can't be serialised.
+     */
+
+    private byte[] encode(ArrayList<Document> batch) {
+        lock.unlock();
+        try {
+            return DocumentSpill.encode(batch);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.lock();
+        }
+    }
+
+    /*
+     * A spill that can't be written to, say because the disk is full, is
+     * treated as having no room, so the producer waits instead.
+     */
+
+    private boolean addToSpill(byte[] encoded) {
+        try {
+            return spill.add(encoded);
+        } catch (IOException e) {
+            log.error("Unable to spill documents, waiting for room instead.");
+            log.error(e);
+            return false;
+        }
+    }
+
+    /*
+     * The size of a document's field values, at two bytes a character.
+     */
+
+    private static long fieldBytes(Document doc) {
+        long bytes = 0;
+        List<?> fields = doc.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            String value = ((Fieldable) fields.get(i)).stringValue();
+            if (value != null) {
+                bytes += 2 * value.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Take a batch of documents off of the stack, waiting until either a
+     * batch is available or gathering is complete.  This is safe to call
+     * from any number of threads.
+     *
+     * @return A list of Lucene Documents, or null once gathering is complete
+     * and the stack has been emptied.
+     */
+
+    public ArrayList<Document> pop() throws InterruptedException {
+
+        byte[] encoded;
+        lock.lockInterruptibly();
+        try {
+            while (stack.isEmpty() && spilled == 0) {
+                notEmpty.await();
+            }
+            if (!stack.isEmpty() && stack.peekFirst() != POISON_PILL) {
+                ArrayList<Document> ret = stack.pollFirst();
+                size -= ret.size();
+                inFlight++;
+                notFull.signalAll();
+                return ret;
+            }
+            if (spilled == 0) {
+                // Only the pill is left, leave it there for the others.
+                if (spill != null) {
+                    spill.close();
                 }
-            }                
+                return null;
+            }
+            try {
+                encoded = spill.take();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            // A serialised batch starts with its document count.
+            spilled -= ByteBuffer.wrap(encoded).getInt();
+            inFlight++;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        // Turn the spilled batch back into documents without the lock.  A
+        // batch that can't be decoded never reaches the consumer, so it is
+        // finished here, or awaitDrained would wait on it for good.
+        boolean decoded = false;
+        try {
+            ArrayList<Document> docs = DocumentSpill.decode(encoded);
+            decoded = true;
+            return docs;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (!decoded) {
+                finished();
+            }
+        }
+    }
+
+    /**
+     * Tell the stack a consumer is done with the last batch it took.
+     */
+
+    public void finished() {
+        lock.lock();
+        try {
+            inFlight--;
+            if (inFlight == 0 && size == 0 && spilled == 0) {
+                drained.signalAll();
+            }
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
-    
+
+    /**
+     * Wait until every batch on the stack has been taken, and the consumers
+     * are finished with them.  Documents still in a producer's own batch
+     * aren't waited for, so producers should flush first.
+     */
+
+    public void awaitDrained() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size > 0 || spilled > 0 || inFlight > 0) {
+                checkFailed();
+                drained.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set that the consumers have all stopped because of errors, so nothing
+     * will take documents off of the stack again.  Producers waiting for
+     * room, and anything waiting for the stack to drain, are woken up and
+     * throw an IllegalStateException, as does anything pushed from now on.
+     */
+
+    public void setFailed() {
+        lock.lock();
+        try {
+            failed = true;
+            notFull.signalAll();
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Throw if the consumers have failed.  The lock must be held.
+     */
+
+    private void checkFailed() {
+        if (failed) {
+            throw new IllegalStateException("The Indexers have stopped,"
+                    + " no more documents can be indexed.");
+        }
+    }
+
     /**
      * Is the stack empty?
-     * 
+     *
      * @return Boolean
      */
 
     public Boolean isEmpty() {
-        return stack.isEmpty();
+        return size() == 0;
     }
 
     /**
-     * Set that the gathering process is complete.
+     * Set that the gathering process is complete.  This places the poison
+     * pill at the bottom of the stack and wakes up any waiting consumers.
      */
 
     public void setComplete() {
-        gatheringComplete = true;
+        lock.lock();
+        try {
+            if (!gatheringComplete) {
+                gatheringComplete = true;
+                stack.addLast(POISON_PILL);
+                notEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Return the size of the stack.
-     * 
+     *
      * @return Int value for Size
      */
 
     public int size() {
-        return stack.size();
-    }
-
-    /**
-     * Is gathering complete? This is only used internally by the stack.
-     * 
-     * @return Boolean indicating state
-     */
-
-    private boolean isComplete() {
-        return gatheringComplete;
+        lock.lock();
+        try {
+            return size + spilled;
+        } finally {
+            lock.unlock();
+        }
     }
 }
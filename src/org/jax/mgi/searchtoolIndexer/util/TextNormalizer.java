@@ -0,0 +1,240 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Hand written replacements for the regex chains used to clean up text
+ * before it is indexed. Each method makes a single pass over its input into
+ * a reusable buffer, and gives exactly the same result as the regexes it
+ * replaces (the main method checks this against random input).
+ *
+ * A TextNormalizer is not thread safe, each doc builder or gatherer keeps
+ * its own.
+ *
+ * @author mhall
+ *
+ * @has A scratch buffer, which grows to the longest input seen.
+ *
+ * @does Collapses whitespace, replaces non word characters, and strips angle
+ *       brackets.
+ *
+ */
+
+public class TextNormalizer {
+
+	private char[]	buffer	= new char[256];
+
+	/**
+	 * Collapse each run of whitespace to a single space, trim, and lower
+	 * case. The same as:
+	 *
+	 * <br>
+	 * replaceAll("\\s+", " ").replaceAll("^\\s", "").replaceAll("\\s$", "")
+	 * .toLowerCase()
+	 *
+	 * @param text
+	 * @return String
+	 */
+
+	public String collapseWhitespace(CharSequence text) {
+		int length = text.length();
+		char[] out = ensure(length);
+		int count = 0;
+		boolean pending = false;
+
+		// Outside of ASCII, and in some locales inside of it, lower casing
+		// is more than mapping A-Z, so then it is left to String.
+		boolean ascii = !isSpecialLocale();
+
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (isSpace(c)) {
+				pending = true;
+			} else {
+				if (pending && count > 0) {
+					out[count++] = ' ';
+				}
+				pending = false;
+				if (ascii && c >= 'A' && c <= 'Z') {
+					c = (char) (c + ('a' - 'A'));
+				} else if (c > 0x7f) {
+					ascii = false;
+				}
+				out[count++] = c;
+			}
+		}
+
+		// Without MULTILINE, $ also matches just before a line terminator
+		// that ends the input. The whitespace ones were collapsed above, so
+		// only these are left.
+
+		if (count >= 2 && !pending && out[count - 2] == ' '
+				&& (out[count - 1] == '\u0085' || out[count - 1] == '\u2028'
+						|| out[count - 1] == '\u2029')) {
+			out[count - 2] = out[count - 1];
+			count--;
+		}
+
+		if (ascii) {
+			return new String(out, 0, count);
+		}
+		return new String(out, 0, count).toLowerCase();
+	}
+
+	/**
+	 * Replace every character other than an ASCII letter or digit with a
+	 * space. The same as:
+	 *
+	 * <br>
+	 * replaceAll("[\\W_]", " ")
+	 *
+	 * @param text
+	 * @return String
+	 */
+
+	public String nonWordToSpace(CharSequence text) {
+		int length = text.length();
+		char[] out = ensure(length);
+		int count = 0;
+
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+					|| (c >= '0' && c <= '9')) {
+				out[count++] = c;
+			} else {
+				// The regex treats a surrogate pair as one character.
+				out[count++] = ' ';
+				if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(text.charAt(i + 1))) {
+					i++;
+				}
+			}
+		}
+		return new String(out, 0, count);
+	}
+
+	/**
+	 * Remove every angle bracket. The same as:
+	 *
+	 * <br>
+	 * replaceAll("<", "").replaceAll(">", "")
+	 *
+	 * @param text
+	 * @return String
+	 */
+
+	public String stripAngleBrackets(String text) {
+		if (text.indexOf('<') < 0 && text.indexOf('>') < 0) {
+			return text;
+		}
+
+		int length = text.length();
+		char[] out = ensure(length);
+		int count = 0;
+
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c != '<' && c != '>') {
+				out[count++] = c;
+			}
+		}
+		return new String(out, 0, count);
+	}
+
+	private char[] ensure(int length) {
+		if (buffer.length < length) {
+			buffer = new char[Math.max(length, buffer.length * 2)];
+		}
+		return buffer;
+	}
+
+	/*
+	 * The characters \s matches.
+	 */
+
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+				|| c == '\f' || c == '\r';
+	}
+
+	/*
+	 * Turkish and Azeri lower case the ASCII I differently.
+	 */
+
+	private static boolean isSpecialLocale() {
+		String language = Locale.getDefault().getLanguage();
+		return language.equals("tr") || language.equals("az");
+	}
+
+	/**
+	 * Differential test harness, compares each method against the regexes it
+	 * replaces on random input, and exits with an error on any difference.
+	 *
+	 * @param args
+	 *            Optionally the number of strings to try.
+	 */
+
+	public static void main(String[] args) {
+		int tries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+		// Weighted towards the characters the regexes care about.
+		String alphabet = "aZ09_ -.<>\t\n\r\u000B\f\u0085\u2028\u2029"
+				+ "\u00e9\u00c9\u0130\u00a0\ud83d\ude00\ud83d";
+
+		Random random = new Random(1);
+		TextNormalizer normalizer = new TextNormalizer();
+		int failures = 0;
+
+		for (int t = 0; t < tries; t++) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = random.nextInt(12); i > 0; i--) {
+				sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			String s = sb.toString();
+
+			failures += check("collapseWhitespace", s, s.replaceAll("\\s+",
+					" ").replaceAll("^\\s", "").replaceAll("\\s$", "")
+					.toLowerCase(), normalizer.collapseWhitespace(s));
+			failures += check("nonWordToSpace", s, s.replaceAll("[\\W_]",
+					" "), normalizer.nonWordToSpace(s));
+			failures += check("stripAngleBrackets", s, s.replaceAll("<", "")
+					.replaceAll(">", ""), normalizer.stripAngleBrackets(s));
+
+			if (failures > 20) {
+				break;
+			}
+		}
+
+		if (failures > 0) {
+			System.out.println(failures + " differences found.");
+			System.exit(1);
+		}
+		System.out.println("No differences in " + tries + " strings.");
+	}
+
+	private static int check(String method, String input, String expected,
+			String actual) {
+		if (expected.equals(actual)) {
+			return 0;
+		}
+		System.out.println(method + " differs for \"" + escape(input)
+				+ "\": expected \"" + escape(expected) + "\" got \""
+				+ escape(actual) + "\"");
+		return 1;
+	}
+
+	private static String escape(String s) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x20 || c > 0x7e) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,250 @@
+package org.jax.mgi.searchtoolIndexer.util;
+
+/**
+ * A compact set of tokens, used to tell whether a token has been seen
+ * before.
+ *
+ * Rather than keeping a String per token, the characters of every token are
+ * packed one after another into a single growing char array, each prefixed
+ * by its length. The set itself is an open addressing table of offsets into
+ * that array, alongside the hash of each token, so a token costs its
+ * characters plus about twenty bytes, and the garbage collector only ever
+ * sees three arrays.
+ *
+ * Every method is synchronized, so the set can be shared by the threads
+ * gathering an index.
+ *
+ * @author mhall
+ *
+ * @has The packed token characters, and a hash table of offsets into them.
+ *
+ * @does Adds tokens, reporting whether each was new.
+ *
+ */
+
+public class TokenSet {
+
+	// Each token is prefixed by its length, in two chars.
+	private static final int	LENGTH_CHARS	= 2;
+
+	private char[]				chars;
+	private int					used			= 0;
+
+	// Offset of each token's length prefix plus one, 0 for an empty slot.
+	private int[]				slots;
+	private int[]				hashes;
+	private int					size			= 0;
+
+	public TokenSet() {
+		this(1024);
+	}
+
+	/**
+	 * @param expected
+	 *            Roughly how many tokens the set will hold.
+	 */
+
+	public TokenSet(int expected) {
+		int capacity = 16;
+		while (capacity < expected * 2) {
+			capacity <<= 1;
+		}
+		slots = new int[capacity];
+		hashes = new int[capacity];
+		chars = new char[Math.max(256, expected * 8)];
+	}
+
+	/**
+	 * Add a token, given as part of a char array.
+	 *
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @return true if the token was not already in the set.
+	 */
+
+	public synchronized boolean add(char[] buffer, int offset, int length) {
+		int hash = hash(buffer, offset, length);
+		int mask = slots.length - 1;
+
+		int i = hash & mask;
+		while (slots[i] != 0) {
+			if (hashes[i] == hash && matches(slots[i] - 1, buffer, offset, length)) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+
+		slots[i] = store(buffer, offset, length) + 1;
+		hashes[i] = hash;
+		size++;
+
+		// Keep the table at most half full, so probes stay short.
+
+		if (size * 2 > slots.length) {
+			rehash();
+		}
+		return true;
+	}
+
+	/**
+	 * Add a token.
+	 *
+	 * @param token
+	 * @return true if the token was not already in the set.
+	 */
+
+	public boolean add(String token) {
+		return add(token.toCharArray(), 0, token.length());
+	}
+
+	/**
+	 * Whether a token is in the set.
+	 *
+	 * @param token
+	 * @return boolean
+	 */
+
+	public synchronized boolean contains(String token) {
+		char[] buffer = token.toCharArray();
+		int hash = hash(buffer, 0, buffer.length);
+		int mask = slots.length - 1;
+
+		for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+			if (hashes[i] == hash
+					&& matches(slots[i] - 1, buffer, 0, buffer.length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * How many distinct tokens have been added.
+	 *
+	 * @return int
+	 */
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Roughly how many bytes of heap the set is using.
+	 *
+	 * @return long
+	 */
+
+	public synchronized long getMemoryUsed() {
+		return (long) chars.length * 2 + (long) slots.length * 8;
+	}
+
+	/*
+	 * Copy a token onto the end of the packed chars, returning where its
+	 * length prefix starts.
+	 */
+
+	private int store(char[] buffer, int offset, int length) {
+		int needed = used + LENGTH_CHARS + length;
+		if (needed > chars.length) {
+			long grown = Math.max((long) chars.length * 2, needed);
+			if (grown > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("Too many token characters"
+						+ " for a TokenSet.");
+			}
+			char[] larger = new char[(int) grown];
+			System.arraycopy(chars, 0, larger, 0, used);
+			chars = larger;
+		}
+
+		int start = used;
+		chars[used++] = (char) (length >>> 16);
+		chars[used++] = (char) length;
+		System.arraycopy(buffer, offset, chars, used, length);
+		used += length;
+		return start;
+	}
+
+	private boolean matches(int start, char[] buffer, int offset, int length) {
+		if (((chars[start] << 16) | chars[start + 1]) != length) {
+			return false;
+		}
+		start += LENGTH_CHARS;
+		for (int i = 0; i < length; i++) {
+			if (chars[start + i] != buffer[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		int[] oldSlots = slots;
+		int[] oldHashes = hashes;
+		slots = new int[oldSlots.length * 2];
+		hashes = new int[oldSlots.length * 2];
+		int mask = slots.length - 1;
+
+		for (int j = 0; j < oldSlots.length; j++) {
+			if (oldSlots[j] != 0) {
+				int i = oldHashes[j] & mask;
+				while (slots[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				slots[i] = oldSlots[j];
+				hashes[i] = oldHashes[j];
+			}
+		}
+	}
+
+	private static int hash(char[] buffer, int offset, int length) {
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + buffer[offset + i];
+		}
+
+		// Spread the bits, since only the low ones pick the slot.
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	/**
+	 * Test harness for this object.
+	 *
+	 * @param args
+	 */
+
+	public static void main(String[] args) {
+		TokenSet set = new TokenSet(4);
+		java.util.HashSet<String> expected = new java.util.HashSet<String>();
+		java.util.Random random = new java.util.Random(42);
+
+		for (int n = 0; n < 1000000; n++) {
+			int length = random.nextInt(12);
+			char[] token = new char[length];
+			for (int i = 0; i < length; i++) {
+				token[i] = (char) ('a' + random.nextInt(6));
+			}
+			String s = new String(token);
+			if (set.add(token, 0, length) != expected.add(s)) {
+				System.out.println("Mismatch adding " + s);
+				return;
+			}
+		}
+		if (set.size() != expected.size()) {
+			System.out.println("Size " + set.size() + " expected "
+					+ expected.size());
+			return;
+		}
+		for (String s : expected) {
+			if (!set.contains(s)) {
+				System.out.println("Lost " + s);
+				return;
+			}
+		}
+		System.out.println("Passed: " + set.size() + " distinct tokens in "
+				+ set.getMemoryUsed() / 1024 + " KB");
+	}
+}
@@ -18,4 +18,23 @@ public class IndexCfg extends Configurator {
         return getConfigString(item);
     }
 
+    /**
+     * Get a configuration item, falling back to a default when the item
+     * hasn't been configured.
+     */
+
+    public String get(String item, String defaultValue)
+            throws ConfigException {
+        return getConfigString(item, defaultValue);
+    }
+
+    /**
+     * Get an integer configuration item, falling back to a default when the
+     * item hasn't been configured.
+     */
+
+    public int getInt(String item, int defaultValue) throws ConfigException {
+        return getConfigInteger(item, Integer.valueOf(defaultValue)).intValue();
+    }
+
 }